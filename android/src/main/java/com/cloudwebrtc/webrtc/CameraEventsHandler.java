@@ -1,5 +1,8 @@
 package com.cloudwebrtc.webrtc;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
 import org.webrtc.CameraVideoCapturer;
@@ -14,29 +17,88 @@ class CameraEventsHandler implements CameraVideoCapturer.CameraEventsHandler {
         ERROR,
         FREEZED
     }
+
+    /**
+     * Notified once the camera delivered its first frame, failed to open or did not open in
+     * time. Exactly one of the methods is called, on the camera thread or the main thread.
+     */
+    public interface OpenCallback {
+        void onCameraOpened();
+
+        void onCameraOpenFailed(String error);
+    }
+
     private final static String TAG = FlutterWebRTCPlugin.TAG;
-    private CameraState state = CameraState.NEW;
-
-    public void waitForCameraOpen() {
-        Log.d(TAG, "CameraEventsHandler.waitForCameraOpen");
-        while (state != CameraState.OPENED && state != CameraState.ERROR) {
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+    private final Handler timeoutHandler = new Handler(Looper.getMainLooper());
+    private volatile CameraState state = CameraState.NEW;
+    private volatile long openingTimeMs = 0;
+    private volatile long firstFrameTimeMs = 0;
+    private String lastError;
+    private OpenCallback openCallback;
+    private Runnable openTimeout;
+
+    public CameraState getState() {
+        return state;
+    }
+
+    /** {@link SystemClock#elapsedRealtime()} of the last onCameraOpening, or 0. */
+    public long getOpeningTimeMs() {
+        return openingTimeMs;
+    }
+
+    /** {@link SystemClock#elapsedRealtime()} of the last onFirstFrameAvailable, or 0. */
+    public long getFirstFrameTimeMs() {
+        return firstFrameTimeMs;
+    }
+
+    /**
+     * Calls {@code callback} once the camera is open, without blocking the caller. If the
+     * camera is already open or failed, the callback runs right away.
+     */
+    public void whenCameraOpen(OpenCallback callback, long timeoutMs) {
+        CameraState current;
+        String error;
+        synchronized (this) {
+            current = state;
+            error = lastError;
+            if (current != CameraState.OPENED && current != CameraState.ERROR) {
+                openCallback = callback;
+                openTimeout = () -> {
+                    if (takeOpenCallback() == callback) {
+                        Log.w(TAG, "CameraEventsHandler: camera did not open within " + timeoutMs + " ms");
+                        callback.onCameraOpenFailed("Timed out opening camera");
+                    }
+                };
+                timeoutHandler.postDelayed(openTimeout, timeoutMs);
+                return;
             }
         }
+        if (current == CameraState.OPENED) {
+            callback.onCameraOpened();
+        } else {
+            callback.onCameraOpenFailed(error);
+        }
     }
 
-    public void waitForCameraClosed() {
+    /**
+     * Blocks until the camera reports it is closed, failed or the timeout expired.
+     *
+     * @return true if the camera is closed.
+     */
+    public boolean waitForCameraClosed(long timeoutMs) throws InterruptedException {
         Log.d(TAG, "CameraEventsHandler.waitForCameraClosed");
-        while (state != CameraState.CLOSED && state != CameraState.ERROR) {
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (this) {
+            while (state != CameraState.CLOSED && state != CameraState.ERROR) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    Log.w(TAG, "CameraEventsHandler: camera did not close within " + timeoutMs + " ms");
+                    return false;
+                }
+                wait(remaining);
             }
         }
+        return true;
     }
 
     // Camera error handler - invoked when camera can not be opened
@@ -44,41 +106,81 @@ class CameraEventsHandler implements CameraVideoCapturer.CameraEventsHandler {
     @Override
     public void onCameraError(String errorDescription) {
         Log.d(TAG, String.format("CameraEventsHandler.onCameraError: errorDescription=%s", errorDescription));
-        state = CameraState.ERROR;
+        OpenCallback callback;
+        synchronized (this) {
+            lastError = errorDescription;
+            setState(CameraState.ERROR);
+            callback = takeOpenCallback();
+        }
+        if (callback != null) {
+            callback.onCameraOpenFailed(errorDescription);
+        }
     }
 
     // Called when camera is disconnected.
     @Override
     public void onCameraDisconnected() {
         Log.d(TAG, "CameraEventsHandler.onCameraDisconnected");
-        state = CameraState.DISCONNECTED;
+        synchronized (this) {
+            setState(CameraState.DISCONNECTED);
+        }
     }
 
     // Invoked when camera stops receiving frames
     @Override
     public void onCameraFreezed(String errorDescription) {
         Log.d(TAG, String.format("CameraEventsHandler.onCameraFreezed: errorDescription=%s", errorDescription));
-        state = CameraState.FREEZED;
+        synchronized (this) {
+            setState(CameraState.FREEZED);
+        }
     }
 
     // Callback invoked when camera is opening.
     @Override
     public void onCameraOpening(String cameraName) {
         Log.d(TAG, String.format("CameraEventsHandler.onCameraOpening: cameraName=%s", cameraName));
-        state = CameraState.OPENING;
+        openingTimeMs = SystemClock.elapsedRealtime();
+        synchronized (this) {
+            setState(CameraState.OPENING);
+        }
     }
 
     // Callback invoked when first camera frame is available after camera is opened.
     @Override
     public void onFirstFrameAvailable() {
         Log.d(TAG, "CameraEventsHandler.onFirstFrameAvailable");
-        state = CameraState.OPENED;
+        firstFrameTimeMs = SystemClock.elapsedRealtime();
+        OpenCallback callback;
+        synchronized (this) {
+            setState(CameraState.OPENED);
+            callback = takeOpenCallback();
+        }
+        if (callback != null) {
+            callback.onCameraOpened();
+        }
     }
 
     // Callback invoked when camera closed.
     @Override
     public void onCameraClosed() {
-        Log.d(TAG, "CameraEventsHandler.onFirstFrameAvailable");
-        state = CameraState.CLOSED;
+        Log.d(TAG, "CameraEventsHandler.onCameraClosed");
+        synchronized (this) {
+            setState(CameraState.CLOSED);
+        }
+    }
+
+    private void setState(CameraState newState) {
+        state = newState;
+        notifyAll();
+    }
+
+    private synchronized OpenCallback takeOpenCallback() {
+        OpenCallback callback = openCallback;
+        openCallback = null;
+        if (openTimeout != null) {
+            timeoutHandler.removeCallbacks(openTimeout);
+            openTimeout = null;
+        }
+        return callback;
     }
 }
@@ -0,0 +1,241 @@
+package com.cloudwebrtc.webrtc;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+import com.cloudwebrtc.webrtc.utils.EglUtils;
+
+import org.webrtc.CameraEnumerator;
+import org.webrtc.SurfaceTextureHelper;
+import org.webrtc.VideoCapturer;
+import org.webrtc.VideoSource;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Keeps recently used camera capturers and warmed {@link SurfaceTextureHelper}s alive so that
+ * switching between preview and call does not pay for a new capture thread, EGL context and
+ * camera capturer every time.
+ *
+ * Stopped capturers are pooled together with their helper, which the capturer stays bound to.
+ * The {@link VideoSource} is not pooled: it belongs to the track of the previous user, which
+ * may still be attached to a sender, so a reused capturer is initialized with a new source.
+ * Idle entries are evicted after {@link #IDLE_TIMEOUT_MS}.
+ */
+class CapturerPool {
+    private final static String TAG = FlutterWebRTCPlugin.TAG;
+
+    static final int MAX_IDLE_CAPTURERS = 2;
+    static final int MAX_IDLE_HELPERS = 2;
+    static final long IDLE_TIMEOUT_MS = 30000;
+
+    /** A stopped camera capturer with its helper. */
+    static class PooledCapturer {
+        final String cameraName;
+        final VideoCapturer capturer;
+        final SurfaceTextureHelper surfaceTextureHelper;
+        final CameraEventsHandler cameraEventsHandler;
+        long idleSinceMs;
+
+        PooledCapturer(String cameraName, VideoCapturer capturer, SurfaceTextureHelper surfaceTextureHelper,
+                       CameraEventsHandler cameraEventsHandler) {
+            this.cameraName = cameraName;
+            this.capturer = capturer;
+            this.surfaceTextureHelper = surfaceTextureHelper;
+            this.cameraEventsHandler = cameraEventsHandler;
+        }
+    }
+
+    private static class PooledHelper {
+        final SurfaceTextureHelper helper;
+        final long idleSinceMs;
+
+        PooledHelper(SurfaceTextureHelper helper, long idleSinceMs) {
+            this.helper = helper;
+            this.idleSinceMs = idleSinceMs;
+        }
+    }
+
+    private final ArrayDeque<PooledCapturer> idleCapturers = new ArrayDeque<>();
+    private final ArrayDeque<PooledHelper> idleHelpers = new ArrayDeque<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable evictRunnable = this::evictIdle;
+    private int helperThreadCount = 0;
+
+    private long capturerHits = 0;
+    private long capturerMisses = 0;
+    private long helperHits = 0;
+    private long helperMisses = 0;
+    private long capturerCreateMs = 0;
+    private long helperCreateMs = 0;
+    private long timeSavedMs = 0;
+
+    /**
+     * Takes a pooled capturer for {@code cameraName}, or, if no name is given, for the first
+     * pooled camera facing the requested direction.
+     */
+    @Nullable
+    synchronized PooledCapturer takeCapturer(@Nullable String cameraName, boolean isFacing, CameraEnumerator enumerator) {
+        for (Iterator<PooledCapturer> it = idleCapturers.iterator(); it.hasNext(); ) {
+            PooledCapturer pooled = it.next();
+            boolean matches = cameraName != null
+                    ? pooled.cameraName.equals(cameraName)
+                    : enumerator.isFrontFacing(pooled.cameraName) == isFacing;
+            if (matches) {
+                it.remove();
+                capturerHits++;
+                if (capturerMisses > 0) {
+                    timeSavedMs += capturerCreateMs / capturerMisses;
+                }
+                return pooled;
+            }
+        }
+        capturerMisses++;
+        return null;
+    }
+
+    /** Records how long creating a capturer took after {@link #takeCapturer} missed. */
+    synchronized void recordCapturerCreated(long elapsedMs) {
+        capturerCreateMs += elapsedMs;
+    }
+
+    /**
+     * Returns a stopped capturer to the pool. If the pool is full the oldest idle capturer is
+     * disposed instead.
+     */
+    void releaseCapturer(PooledCapturer pooled) {
+        PooledCapturer evicted = null;
+        synchronized (this) {
+            pooled.idleSinceMs = SystemClock.elapsedRealtime();
+            idleCapturers.addLast(pooled);
+            if (idleCapturers.size() > MAX_IDLE_CAPTURERS) {
+                evicted = idleCapturers.pollFirst();
+            }
+        }
+        if (evicted != null) {
+            disposeCapturer(evicted);
+        }
+        scheduleEviction();
+    }
+
+    SurfaceTextureHelper acquireHelper() {
+        synchronized (this) {
+            PooledHelper pooled = idleHelpers.pollLast();
+            if (pooled != null) {
+                helperHits++;
+                if (helperMisses > 0) {
+                    timeSavedMs += helperCreateMs / helperMisses;
+                }
+                return pooled.helper;
+            }
+            helperMisses++;
+        }
+        long startedAtMs = SystemClock.elapsedRealtime();
+        String threadName;
+        synchronized (this) {
+            threadName = TAG + "_texture_camera_thread_" + (helperThreadCount++);
+        }
+        SurfaceTextureHelper helper =
+                SurfaceTextureHelper.create(threadName, EglUtils.getRootEglBaseContext());
+        synchronized (this) {
+            helperCreateMs += SystemClock.elapsedRealtime() - startedAtMs;
+        }
+        return helper;
+    }
+
+    void releaseHelper(SurfaceTextureHelper helper) {
+        helper.stopListening();
+        boolean pooled;
+        synchronized (this) {
+            pooled = idleHelpers.size() < MAX_IDLE_HELPERS;
+            if (pooled) {
+                idleHelpers.addLast(new PooledHelper(helper, SystemClock.elapsedRealtime()));
+            }
+        }
+        if (pooled) {
+            scheduleEviction();
+        } else {
+            helper.dispose();
+        }
+    }
+
+    synchronized ConstraintsMap getStats() {
+        ConstraintsMap params = new ConstraintsMap();
+        params.putLong("capturerHits", capturerHits);
+        params.putLong("capturerMisses", capturerMisses);
+        params.putLong("helperHits", helperHits);
+        params.putLong("helperMisses", helperMisses);
+        long lookups = capturerHits + capturerMisses;
+        params.putDouble("capturerHitRate", lookups == 0 ? 0 : (double) capturerHits / lookups);
+        lookups = helperHits + helperMisses;
+        params.putDouble("helperHitRate", lookups == 0 ? 0 : (double) helperHits / lookups);
+        params.putLong("timeSavedMs", timeSavedMs);
+        params.putInt("idleCapturers", idleCapturers.size());
+        params.putInt("idleHelpers", idleHelpers.size());
+        return params;
+    }
+
+    /** Disposes every idle capturer and helper. */
+    void clear() {
+        handler.removeCallbacks(evictRunnable);
+        List<PooledCapturer> capturers;
+        List<PooledHelper> helpers;
+        synchronized (this) {
+            capturers = new ArrayList<>(idleCapturers);
+            helpers = new ArrayList<>(idleHelpers);
+            idleCapturers.clear();
+            idleHelpers.clear();
+        }
+        for (PooledCapturer pooled : capturers) {
+            pooled.capturer.dispose();
+            pooled.surfaceTextureHelper.dispose();
+        }
+        for (PooledHelper pooled : helpers) {
+            pooled.helper.dispose();
+        }
+    }
+
+    private void scheduleEviction() {
+        handler.removeCallbacks(evictRunnable);
+        handler.postDelayed(evictRunnable, IDLE_TIMEOUT_MS);
+    }
+
+    private void evictIdle() {
+        long now = SystemClock.elapsedRealtime();
+        List<PooledCapturer> capturers = new ArrayList<>();
+        List<PooledHelper> helpers = new ArrayList<>();
+        boolean remaining;
+        synchronized (this) {
+            while (!idleCapturers.isEmpty() && now - idleCapturers.peekFirst().idleSinceMs >= IDLE_TIMEOUT_MS) {
+                capturers.add(idleCapturers.pollFirst());
+            }
+            while (!idleHelpers.isEmpty() && now - idleHelpers.peekFirst().idleSinceMs >= IDLE_TIMEOUT_MS) {
+                helpers.add(idleHelpers.pollFirst());
+            }
+            remaining = !idleCapturers.isEmpty() || !idleHelpers.isEmpty();
+        }
+        for (PooledCapturer pooled : capturers) {
+            Log.d(TAG, "CapturerPool: evicting idle capturer " + pooled.cameraName);
+            disposeCapturer(pooled);
+        }
+        for (PooledHelper pooled : helpers) {
+            pooled.helper.dispose();
+        }
+        if (remaining) {
+            scheduleEviction();
+        }
+    }
+
+    private void disposeCapturer(PooledCapturer pooled) {
+        pooled.capturer.dispose();
+        releaseHelper(pooled.surfaceTextureHelper);
+    }
+}
@@ -0,0 +1,222 @@
+package com.cloudwebrtc.webrtc;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.AnyThreadResult;
+
+import org.webrtc.DataChannel;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.MethodChannel;
+
+/**
+ * Raw frame channel for a single {@link DataChannel}.
+ *
+ * Messages bypass the standard method codec: every frame is a one byte flags header followed
+ * by the payload, in both directions. Outgoing frames are written into pooled direct buffers,
+ * so steady state traffic does not allocate. Frames sent from Dart go through the channel's
+ * {@link DataChannelSendQueue} and are acknowledged once they are handed to SCTP, with an empty
+ * reply, or with a {@link #FLAG_ERROR} frame holding the UTF-8 error message if the send
+ * failed, the error {@code dataChannelSend} reports on the method channel.
+ *
+ * A pipe created to await its receiver holds incoming messages until Dart's control frame
+ * arrives, then sends them as raw frames, or hands them to the {@link Fallback} if Dart
+ * disabled receiving. Messages sent on the event channel before the switch could otherwise
+ * arrive after the first raw frames.
+ */
+class DataChannelBinaryPipe implements BinaryMessenger.BinaryMessageHandler {
+    static final int HEADER_SIZE = 1;
+    /** Payload is binary, otherwise it is UTF-8 text. */
+    static final byte FLAG_BINARY = 0x01;
+    /** Frame is a control frame, its payload byte enables (1) or disables (0) receiving. */
+    static final byte FLAG_CONTROL = 0x02;
+    /** Reply to a frame that was not sent, the payload is the error message. */
+    static final byte FLAG_ERROR = 0x04;
+
+    private static final int MAX_POOLED_BUFFERS = 16;
+    /** Held messages beyond this go to the fallback, in case Dart never answers. */
+    private static final int MAX_PENDING_BYTES = 4 * 1024 * 1024;
+
+    /** Receives the messages that are not delivered as raw frames. */
+    interface Fallback {
+        void onMessage(DataChannel.Buffer buffer);
+    }
+
+    private final BinaryMessenger messenger;
+    private final String channelName;
+    private final DataChannelSendQueue sendQueue;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ConcurrentLinkedQueue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+    private final Fallback fallback;
+    // Guarded by this. Frames held until Dart enables or disables receiving, null once it did.
+    @Nullable private List<ByteBuffer> pending;
+    private int pendingBytes = 0;
+    private boolean receiving = false;
+
+    /**
+     * @param awaitReceiver hold incoming messages until Dart sends its control frame, for
+     *     channels whose Dart side always sends one.
+     */
+    DataChannelBinaryPipe(BinaryMessenger messenger, String peerConnectionId, String flutterId,
+                          DataChannelSendQueue sendQueue, boolean awaitReceiver, Fallback fallback) {
+        this.messenger = messenger;
+        this.sendQueue = sendQueue;
+        this.fallback = fallback;
+        this.pending = awaitReceiver ? new ArrayList<>() : null;
+        this.channelName = "FlutterWebRTC/dataChannelBinary" + peerConnectionId + flutterId;
+        messenger.setMessageHandler(channelName, this);
+    }
+
+    @Override
+    public void onMessage(ByteBuffer message, BinaryMessenger.BinaryReply reply) {
+        if (message == null || message.remaining() < HEADER_SIZE) {
+            reply.reply(errorFrame("dataChannelSend(): empty frame"));
+            return;
+        }
+        byte flags = message.get();
+        if ((flags & FLAG_CONTROL) != 0) {
+            setReceiving(message.hasRemaining() && message.get() != 0);
+            reply.reply(null);
+            return;
+        }
+        sendQueue.send(message.slice(), (flags & FLAG_BINARY) != 0, new AnyThreadResult(new MethodChannel.Result() {
+            @Override
+            public void success(Object o) {
+                reply.reply(null);
+            }
+
+            @Override
+            public void error(String s, String s1, Object o) {
+                reply.reply(errorFrame(s1));
+            }
+
+            @Override
+            public void notImplemented() {
+                reply.reply(errorFrame("dataChannelSend(): not implemented"));
+            }
+        }));
+    }
+
+    /**
+     * Called on the main thread, so the held frames are sent before any frame {@link #deliver}
+     * posts from now on.
+     */
+    private void setReceiving(boolean enabled) {
+        List<ByteBuffer> held;
+        synchronized (this) {
+            receiving = enabled;
+            held = pending;
+            pending = null;
+            pendingBytes = 0;
+        }
+        if (held == null) {
+            return;
+        }
+        for (ByteBuffer frame : held) {
+            if (enabled) {
+                messenger.send(channelName, frame);
+                recycleBuffer(frame);
+            } else {
+                fallBack(frame);
+            }
+        }
+    }
+
+    private void fallBack(ByteBuffer frame) {
+        frame.flip();
+        boolean binary = (frame.get() & FLAG_BINARY) != 0;
+        fallback.onMessage(new DataChannel.Buffer(frame.slice(), binary));
+    }
+
+    /** The engine sends the {@code position()} bytes written, like {@link #deliver}. */
+    private static ByteBuffer errorFrame(@Nullable String message) {
+        byte[] text = (message != null ? message : "dataChannelSend(): send failed").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocateDirect(HEADER_SIZE + text.length);
+        frame.put(FLAG_ERROR);
+        frame.put(text);
+        return frame;
+    }
+
+    /**
+     * Forwards an incoming message to Dart as a raw frame.
+     *
+     * @return false if Dart has not subscribed to raw frames and the caller should fall back
+     *         to the event channel.
+     */
+    boolean deliver(DataChannel.Buffer buffer) {
+        List<ByteBuffer> overflow = null;
+        final ByteBuffer frame;
+        synchronized (this) {
+            if (pending == null && !receiving) {
+                return false;
+            }
+            frame = obtainBuffer(HEADER_SIZE + buffer.data.remaining());
+            writeFrame(frame, buffer.data, buffer.binary);
+            if (pending != null) {
+                pending.add(frame);
+                pendingBytes += frame.position();
+                if (pendingBytes <= MAX_PENDING_BYTES) {
+                    return true;
+                }
+                overflow = pending;
+                pending = null;
+                pendingBytes = 0;
+            }
+        }
+        if (overflow != null) {
+            for (ByteBuffer held : overflow) {
+                fallBack(held);
+            }
+            return true;
+        }
+        // The engine reads frame.position() bytes and copies them before send() returns,
+        // so the buffer can be recycled right away.
+        mainHandler.post(() -> {
+            messenger.send(channelName, frame);
+            recycleBuffer(frame);
+        });
+        return true;
+    }
+
+    /** Writes the header and the remaining bytes of {@code payload}, the frame ends at position(). */
+    static void writeFrame(ByteBuffer frame, ByteBuffer payload, boolean binary) {
+        frame.put(binary ? FLAG_BINARY : 0);
+        frame.put(payload);
+    }
+
+    void dispose() {
+        synchronized (this) {
+            receiving = false;
+            pending = null;
+            pendingBytes = 0;
+        }
+        messenger.setMessageHandler(channelName, null);
+        bufferPool.clear();
+    }
+
+    private ByteBuffer obtainBuffer(int size) {
+        ByteBuffer buffer;
+        while ((buffer = bufferPool.poll()) != null) {
+            if (buffer.capacity() >= size) {
+                buffer.clear();
+                return buffer;
+            }
+        }
+        return ByteBuffer.allocateDirect(Math.max(size, 1024));
+    }
+
+    private void recycleBuffer(ByteBuffer buffer) {
+        if (bufferPool.size() < MAX_POOLED_BUFFERS) {
+            bufferPool.offer(buffer);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.cloudwebrtc.webrtc;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Coalesces data channel messages into batches before they are handed to Dart.
+ *
+ * Messages arrive on the signaling thread and are stored in a fixed size ring. The ring is
+ * flushed on the main looper as a single list, either once it is full or once the oldest
+ * pending message has waited {@code maxLatencyMs}.
+ */
+class DataChannelMessageBatcher {
+    interface BatchSink {
+        /** Called on the main thread. */
+        void onBatch(List<Object> messages);
+    }
+
+    private final Object[] ring;
+    private final long maxLatencyMs;
+    private final BatchSink sink;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable flushRunnable = this::flush;
+
+    private int head = 0;
+    private int count = 0;
+    private long oldestEnqueuedMs = 0;
+
+    private long batches = 0;
+    private long messages = 0;
+    private long totalFlushLatencyMs = 0;
+    private long maxFlushLatencyMs = 0;
+
+    DataChannelMessageBatcher(int maxBatchSize, long maxLatencyMs, BatchSink sink) {
+        this.ring = new Object[Math.max(1, maxBatchSize)];
+        this.maxLatencyMs = Math.max(0, maxLatencyMs);
+        this.sink = sink;
+    }
+
+    /**
+     * Reads the batching options passed to {@code createDataChannel} next to the
+     * {@code RTCDataChannelInit}, returns null if batching was not requested.
+     */
+    static DataChannelMessageBatcher fromConfig(@Nullable ConstraintsMap config, BatchSink sink) {
+        if (config == null || !config.hasKey("batchMaxSize")) {
+            return null;
+        }
+        int maxBatchSize = config.getInt("batchMaxSize");
+        if (maxBatchSize <= 1) {
+            return null;
+        }
+        long maxLatencyMs = config.hasKey("batchMaxLatencyMs") ? config.getInt("batchMaxLatencyMs") : 16;
+        return new DataChannelMessageBatcher(maxBatchSize, maxLatencyMs, sink);
+    }
+
+    synchronized void add(Object message) {
+        if (count == ring.length) {
+            final List<Object> batch = drainLocked();
+            // Posted before the flush of this message is scheduled, so it is delivered first
+            // even with a latency of 0.
+            handler.post(() -> sink.onBatch(batch));
+        }
+        if (count == 0) {
+            oldestEnqueuedMs = SystemClock.elapsedRealtime();
+            handler.postDelayed(flushRunnable, maxLatencyMs);
+        }
+        ring[(head + count) % ring.length] = message;
+        count++;
+    }
+
+    void dispose() {
+        handler.removeCallbacks(flushRunnable);
+        synchronized (this) {
+            drainLocked();
+        }
+    }
+
+    synchronized ConstraintsMap getStats() {
+        ConstraintsMap params = new ConstraintsMap();
+        params.putLong("batches", batches);
+        params.putLong("messages", messages);
+        params.putInt("pending", count);
+        params.putDouble("averageFlushLatencyMs", batches == 0 ? 0 : (double) totalFlushLatencyMs / batches);
+        params.putLong("maxFlushLatencyMs", maxFlushLatencyMs);
+        return params;
+    }
+
+    private void flush() {
+        List<Object> batch;
+        synchronized (this) {
+            batch = drainLocked();
+        }
+        if (batch != null) {
+            sink.onBatch(batch);
+        }
+    }
+
+    private List<Object> drainLocked() {
+        if (count == 0) {
+            return null;
+        }
+        handler.removeCallbacks(flushRunnable);
+        List<Object> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int index = (head + i) % ring.length;
+            batch.add(ring[index]);
+            ring[index] = null;
+        }
+        long latency = SystemClock.elapsedRealtime() - oldestEnqueuedMs;
+        batches++;
+        messages += count;
+        totalFlushLatencyMs += latency;
+        maxFlushLatencyMs = Math.max(maxFlushLatencyMs, latency);
+        head = (head + count) % ring.length;
+        count = 0;
+        return batch;
+    }
+}
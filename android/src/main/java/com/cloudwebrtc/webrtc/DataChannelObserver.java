@@ -8,6 +8,7 @@ import org.webrtc.DataChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.List;
 
 import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.EventChannel;
@@ -18,16 +19,40 @@ class DataChannelObserver implements DataChannel.Observer, EventChannel.StreamHa
     private final DataChannel dataChannel;
 
     private final EventChannel eventChannel;
+    private final DataChannelBinaryPipe binaryPipe;
+    private final DataChannelMessageBatcher batcher;
+    private final DataChannelSendQueue sendQueue;
     private EventChannel.EventSink eventSink;
     private final ArrayList eventQueue = new ArrayList();
 
     DataChannelObserver(BinaryMessenger messenger, String peerConnectionId, String flutterId,
-                        DataChannel dataChannel) {
+                        DataChannel dataChannel, ConstraintsMap options) {
         this.flutterId = flutterId;
         this.dataChannel = dataChannel;
         eventChannel =
                 new EventChannel(messenger, "FlutterWebRTC/dataChannelEvent" + peerConnectionId + flutterId);
         eventChannel.setStreamHandler(this);
+        sendQueue = DataChannelSendQueue.fromConfig(dataChannel, options);
+        batcher = DataChannelMessageBatcher.fromConfig(options, this::sendBatch);
+        // Dart subscribes to raw frames unless it asked for batching.
+        binaryPipe = new DataChannelBinaryPipe(messenger, peerConnectionId, flutterId, sendQueue,
+                batcher == null, this::sendMessage);
+    }
+
+    void dispose() {
+        sendQueue.close();
+        binaryPipe.dispose();
+        if (batcher != null) {
+            batcher.dispose();
+        }
+    }
+
+    DataChannelSendQueue getSendQueue() {
+        return sendQueue;
+    }
+
+    ConstraintsMap getBatchStats() {
+        return batcher != null ? batcher.getStats() : null;
     }
 
     private String dataChannelStateString(DataChannel.State dataChannelState) {
@@ -60,11 +85,13 @@ class DataChannelObserver implements DataChannel.Observer, EventChannel.StreamHa
     
     @Override
     public void onBufferedAmountChange(long amount) {
+        sendQueue.onBufferedAmountChange();
         ConstraintsMap params = new ConstraintsMap();
         params.putString("event", "dataChannelBufferedAmountChange");
         params.putInt("id", dataChannel.id());
         params.putLong("bufferedAmount", dataChannel.bufferedAmount());
         params.putLong("changedAmount", amount);
+        params.putLong("queuedAmount", sendQueue.getQueuedBytes());
         sendEvent(params);
     }
 
@@ -79,9 +106,15 @@ class DataChannelObserver implements DataChannel.Observer, EventChannel.StreamHa
 
     @Override
     public void onMessage(DataChannel.Buffer buffer) {
+        // Batching was asked for explicitly, it wins over the raw frame channel.
+        if (batcher == null && binaryPipe.deliver(buffer)) {
+            return;
+        }
+        sendMessage(buffer);
+    }
+
+    private void sendMessage(DataChannel.Buffer buffer) {
         ConstraintsMap params = new ConstraintsMap();
-        params.putString("event", "dataChannelReceiveMessage");
-        params.putInt("id", dataChannel.id());
 
         byte[] bytes;
         if (buffer.data.hasArray()) {
@@ -99,6 +132,20 @@ class DataChannelObserver implements DataChannel.Observer, EventChannel.StreamHa
             params.putString("data", new String(bytes, StandardCharsets.UTF_8));
         }
 
+        if (batcher != null) {
+            batcher.add(params.toMap());
+            return;
+        }
+        params.putString("event", "dataChannelReceiveMessage");
+        params.putInt("id", dataChannel.id());
+        sendEvent(params);
+    }
+
+    private void sendBatch(List<Object> messages) {
+        ConstraintsMap params = new ConstraintsMap();
+        params.putString("event", "dataChannelReceiveMessages");
+        params.putInt("id", dataChannel.id());
+        params.putArray("messages", new ArrayList<>(messages));
         sendEvent(params);
     }
 
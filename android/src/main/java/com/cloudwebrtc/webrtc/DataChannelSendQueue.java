@@ -0,0 +1,208 @@
+package com.cloudwebrtc.webrtc;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+
+import org.webrtc.DataChannel;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/**
+ * Native send queue for a {@link DataChannel}.
+ *
+ * Chunks are handed to SCTP only while {@code bufferedAmount} stays below the high watermark.
+ * Once it is reached, chunks are kept here and drained again when
+ * {@code onBufferedAmountChange} reports that the buffer fell to the low watermark. The
+ * {@link Result} of every chunk completes when the chunk is actually passed to SCTP, which lets
+ * Dart await sends to get backpressure.
+ *
+ * {@code bufferedAmount()} and {@code send()} block on the signaling thread, which delivers
+ * {@code onBufferedAmountChange} while holding its own locks, so they are never called under
+ * the queue lock. The lock only guards the queue, and a single drainer at a time sends chunks,
+ * which keeps them in order.
+ */
+class DataChannelSendQueue {
+    private final static String TAG = FlutterWebRTCPlugin.TAG;
+
+    static final long DEFAULT_HIGH_WATERMARK = 1024 * 1024;
+    static final long DEFAULT_LOW_WATERMARK = 256 * 1024;
+
+    private static final class PendingChunk {
+        final ByteBuffer data;
+        final int size;
+        final boolean binary;
+        final Result result;
+
+        PendingChunk(ByteBuffer data, boolean binary, Result result) {
+            this.data = data;
+            this.size = data.remaining();
+            this.binary = binary;
+            this.result = result;
+        }
+    }
+
+    private final DataChannel dataChannel;
+    private final long highWatermark;
+    private final long lowWatermark;
+    // Guarded by this.
+    private final ArrayDeque<PendingChunk> pending = new ArrayDeque<>();
+    private long queuedBytes = 0;
+    private boolean closed = false;
+    // A thread is sending chunks, others only request another pass.
+    private boolean draining = false;
+    private boolean drainRequested = false;
+
+    DataChannelSendQueue(DataChannel dataChannel, long highWatermark, long lowWatermark) {
+        this.dataChannel = dataChannel;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = Math.min(lowWatermark, highWatermark);
+    }
+
+    /** Reads the watermarks of the native {@code createDataChannel} options. */
+    static DataChannelSendQueue fromConfig(DataChannel dataChannel, @Nullable ConstraintsMap config) {
+        long high = DEFAULT_HIGH_WATERMARK;
+        long low = DEFAULT_LOW_WATERMARK;
+        if (config != null) {
+            if (config.hasKey("sendHighWatermark")) {
+                high = ((Number) config.toMap().get("sendHighWatermark")).longValue();
+            }
+            if (config.hasKey("sendLowWatermark")) {
+                low = ((Number) config.toMap().get("sendLowWatermark")).longValue();
+            }
+        }
+        return new DataChannelSendQueue(dataChannel, high, low);
+    }
+
+    /**
+     * Sends the chunk now if nothing is queued and the SCTP buffer has room, queues it
+     * otherwise. Direct buffers are assumed to be borrowed from the caller and are copied
+     * before being queued.
+     */
+    void send(ByteBuffer data, boolean binary, Result result) {
+        boolean sendDirectly;
+        synchronized (this) {
+            sendDirectly = !closed && pending.isEmpty() && !draining;
+            if (sendDirectly) {
+                // Makes this thread the drainer, so nothing can overtake the chunk.
+                draining = true;
+            }
+        }
+        if (sendDirectly && dataChannel.bufferedAmount() + data.remaining() <= highWatermark) {
+            sendNow(data, binary, result);
+            drainLoop();
+            return;
+        }
+        if (data.isDirect()) {
+            ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+            copy.put(data);
+            copy.flip();
+            data = copy;
+        }
+        boolean rejected;
+        synchronized (this) {
+            rejected = closed;
+            if (!rejected) {
+                pending.add(new PendingChunk(data, binary, result));
+                queuedBytes += data.remaining();
+            }
+        }
+        if (rejected) {
+            result.error("dataChannelSend", "dataChannelSend(): dataChannel is closed", null);
+        }
+        // The buffer may already have drained to the low watermark, in which case no further
+        // onBufferedAmountChange would wake us up.
+        if (sendDirectly) {
+            drainLoop();
+        } else {
+            drain();
+        }
+    }
+
+    /** Drains queued chunks once the SCTP buffer fell to the low watermark. */
+    void onBufferedAmountChange() {
+        drain();
+    }
+
+    private void drain() {
+        synchronized (this) {
+            drainRequested = true;
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        drainLoop();
+    }
+
+    /** Sends queued chunks while there is room, called by the drainer. */
+    private void drainLoop() {
+        while (true) {
+            PendingChunk chunk;
+            synchronized (this) {
+                drainRequested = false;
+                chunk = closed ? null : pending.peek();
+                if (chunk == null) {
+                    draining = false;
+                    return;
+                }
+            }
+            long buffered = dataChannel.bufferedAmount();
+            if (buffered > lowWatermark && buffered + chunk.size > highWatermark) {
+                synchronized (this) {
+                    if (!drainRequested) {
+                        draining = false;
+                        return;
+                    }
+                }
+                // The buffer changed while it was read, look again.
+                continue;
+            }
+            synchronized (this) {
+                if (pending.peek() != chunk) {
+                    // Failed by close() in the meantime.
+                    continue;
+                }
+                pending.poll();
+                queuedBytes -= chunk.size;
+            }
+            sendNow(chunk.data, chunk.binary, chunk.result);
+        }
+    }
+
+    synchronized long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    synchronized int getQueuedChunks() {
+        return pending.size();
+    }
+
+    /** Fails every queued chunk, called when the data channel is closed. */
+    void close() {
+        ArrayDeque<PendingChunk> dropped;
+        synchronized (this) {
+            closed = true;
+            dropped = new ArrayDeque<>(pending);
+            pending.clear();
+            queuedBytes = 0;
+        }
+        for (PendingChunk chunk : dropped) {
+            chunk.result.error("dataChannelSend", "dataChannelSend(): dataChannel closed before chunk was sent", null);
+        }
+    }
+
+    private void sendNow(ByteBuffer data, boolean binary, Result result) {
+        if (dataChannel.send(new DataChannel.Buffer(data, binary))) {
+            result.success(null);
+        } else {
+            Log.d(TAG, "dataChannelSend() failed, state " + dataChannel.state());
+            result.error("dataChannelSend", "dataChannelSend(): send failed", null);
+        }
+    }
+}
@@ -12,9 +12,9 @@ import org.webrtc.RtpReceiver;
 import org.webrtc.RtpSender;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
 
 import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.EventChannel;
@@ -25,6 +25,7 @@ import io.flutter.plugin.common.MethodChannel.Result;
 import com.cloudwebrtc.webrtc.utils.AnyThreadSink;
 import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
 import com.cloudwebrtc.webrtc.utils.ConstraintsArray;
+import com.cloudwebrtc.webrtc.utils.IdAllocator;
 
 public class FlutterRTCFrameCryptor {
 
@@ -102,9 +103,10 @@ public class FlutterRTCFrameCryptor {
     }
 
     private static final String TAG = "FlutterRTCFrameCryptor";
-    private final Map<String, FrameCryptor> frameCryptos = new HashMap<>();
-    private final Map<String, FrameCryptorStateObserver> frameCryptoObservers = new HashMap<>();
-    private final Map<String, FrameCryptorKeyProvider> keyProviders = new HashMap<>();
+    // Synchronized, cryptors are created on the queue of their peer connection.
+    private final Map<String, FrameCryptor> frameCryptos = Collections.synchronizedMap(new HashMap<>());
+    private final Map<String, FrameCryptorStateObserver> frameCryptoObservers = Collections.synchronizedMap(new HashMap<>());
+    private final Map<String, FrameCryptorKeyProvider> keyProviders = Collections.synchronizedMap(new HashMap<>());
     private final StateProvider stateProvider;
     public FlutterRTCFrameCryptor(StateProvider stateProvider) {
         this.stateProvider = stateProvider;
@@ -184,7 +186,7 @@ public class FlutterRTCFrameCryptor {
                     participantId,
                     frameCryptorAlgorithmFromInt(algorithm),
                     keyProvider);
-            String frameCryptorId = UUID.randomUUID().toString();
+            String frameCryptorId = IdAllocator.nextId();
             frameCryptos.put(frameCryptorId, frameCryptor);
             FrameCryptorStateObserver observer = new FrameCryptorStateObserver(stateProvider.getMessenger(), frameCryptorId);
             frameCryptor.setObserver(observer);
@@ -200,7 +202,7 @@ public class FlutterRTCFrameCryptor {
                     participantId,
                     frameCryptorAlgorithmFromInt(algorithm),
                     keyProvider);
-            String frameCryptorId = UUID.randomUUID().toString();
+            String frameCryptorId = IdAllocator.nextId();
             frameCryptos.put(frameCryptorId, frameCryptor);
             FrameCryptorStateObserver observer = new FrameCryptorStateObserver(stateProvider.getMessenger(), frameCryptorId);
             frameCryptor.setObserver(observer);
@@ -285,7 +287,7 @@ public class FlutterRTCFrameCryptor {
     }
 
     private void frameCryptorFactoryCreateKeyProvider(Map<String, Object> params, @NonNull Result result) {
-        String keyProviderId = UUID.randomUUID().toString();
+        String keyProviderId = IdAllocator.nextId();
         Map<String, Object> keyProviderOptions = (Map<String, Object>) params.get("keyProviderOptions");
         boolean sharedKey = (boolean) keyProviderOptions.get("sharedKey");
         int ratchetWindowSize = (int) keyProviderOptions.get("ratchetWindowSize");
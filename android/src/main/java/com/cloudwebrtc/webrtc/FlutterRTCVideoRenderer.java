@@ -117,6 +117,7 @@ public class FlutterRTCVideoRenderer implements EventChannel.StreamHandler {
 
     public void setId(int id) {
         this.id = id;
+        surfaceTextureRenderer.setTextureId(id);
     }
 
     @Override
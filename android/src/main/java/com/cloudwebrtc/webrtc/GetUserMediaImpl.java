@@ -18,8 +18,10 @@ import android.os.Build.VERSION;
 import android.os.Build.VERSION_CODES;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.ResultReceiver;
+import android.os.SystemClock;
 import android.provider.MediaStore;
 import android.util.Log;
 import android.util.Pair;
@@ -37,15 +39,16 @@ import com.cloudwebrtc.webrtc.record.AudioChannel;
 import com.cloudwebrtc.webrtc.record.AudioSamplesInterceptor;
 import com.cloudwebrtc.webrtc.record.MediaRecorderImpl;
 import com.cloudwebrtc.webrtc.record.OutputAudioSamplesInterceptor;
+import com.cloudwebrtc.webrtc.record.RecorderSettings;
 import com.cloudwebrtc.webrtc.utils.Callback;
 import com.cloudwebrtc.webrtc.utils.ConstraintsArray;
 import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
-import com.cloudwebrtc.webrtc.utils.EglUtils;
 import com.cloudwebrtc.webrtc.utils.MediaConstraintsUtils;
 import com.cloudwebrtc.webrtc.utils.ObjectType;
 import com.cloudwebrtc.webrtc.utils.PermissionUtils;
 import com.cloudwebrtc.webrtc.video.LocalVideoTrack;
 import com.cloudwebrtc.webrtc.video.VideoCapturerInfo;
+import com.cloudwebrtc.webrtc.video.camera.CameraCapabilityIndex;
 
 import org.webrtc.AudioSource;
 import org.webrtc.AudioTrack;
@@ -55,6 +58,7 @@ import org.webrtc.Camera1Helper;
 import org.webrtc.Camera2Capturer;
 import org.webrtc.Camera2Enumerator;
 import org.webrtc.Camera2Helper;
+import org.webrtc.CameraEnumerationAndroid.CaptureFormat;
 import org.webrtc.CameraEnumerator;
 import org.webrtc.CameraVideoCapturer;
 import org.webrtc.MediaConstraints;
@@ -84,6 +88,8 @@ public class GetUserMediaImpl {
     private static final int DEFAULT_WIDTH = 1280;
     private static final int DEFAULT_HEIGHT = 720;
     private static final int DEFAULT_FPS = 30;
+    private static final long CAMERA_OPEN_TIMEOUT_MS = 10000;
+    private static final long CAMERA_CLOSE_TIMEOUT_MS = 3000;
 
     private static final String PERMISSION_AUDIO = Manifest.permission.RECORD_AUDIO;
     private static final String PERMISSION_VIDEO = Manifest.permission.CAMERA;
@@ -101,12 +107,18 @@ public class GetUserMediaImpl {
     private final Map<String, SurfaceTextureHelper> mSurfaceTextureHelpers = new HashMap<>();
     private final StateProvider stateProvider;
     private final Context applicationContext;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private HandlerThread cameraThread;
+    private Handler cameraHandler;
+    private CameraEnumerator cameraEnumerator;
+    final CapturerPool capturerPool = new CapturerPool();
 
     static final int minAPILevel = Build.VERSION_CODES.LOLLIPOP;
 
     final AudioSamplesInterceptor inputSamplesInterceptor = new AudioSamplesInterceptor();
     private OutputAudioSamplesInterceptor outputSamplesInterceptor = null;
     JavaAudioDeviceModule audioDeviceModule;
+    // Guarded by this, recordings of remote tracks start on the queue of their peer connection.
     private final SparseArray<MediaRecorderImpl> mediaRecorders = new SparseArray<>();
     private AudioDeviceInfo preferredInput = null;
     private boolean isTorchOn;
@@ -227,6 +239,7 @@ public class GetUserMediaImpl {
     GetUserMediaImpl(StateProvider stateProvider, Context applicationContext) {
         this.stateProvider = stateProvider;
         this.applicationContext = applicationContext;
+        CameraCapabilityIndex.instance.register(applicationContext);
     }
 
     static private void resultError(String method, String error, Result result) {
@@ -415,7 +428,7 @@ public class GetUserMediaImpl {
      */
     void getUserMedia(
             final ConstraintsMap constraints, final Result result, final MediaStream mediaStream) {
-
+        final long startedAtMs = SystemClock.elapsedRealtime();
         final ArrayList<String> requestPermissions = new ArrayList<>();
 
         if (constraints.hasKey("audio")) {
@@ -461,7 +474,7 @@ public class GetUserMediaImpl {
 
         /// Only systems pre-M, no additional permission request is needed.
         if (VERSION.SDK_INT < VERSION_CODES.M) {
-            getUserMedia(constraints, result, mediaStream, requestPermissions);
+            getUserMedia(constraints, result, mediaStream, requestPermissions, startedAtMs);
             return;
         }
 
@@ -472,7 +485,7 @@ public class GetUserMediaImpl {
                     public void invoke(Object... args) {
                         List<String> grantedPermissions = (List<String>) args[0];
 
-                        getUserMedia(constraints, result, mediaStream, grantedPermissions);
+                        getUserMedia(constraints, result, mediaStream, grantedPermissions, startedAtMs);
                     }
                 },
                 /* errorCallback */ new Callback() {
@@ -533,9 +546,7 @@ public class GetUserMediaImpl {
         PeerConnectionFactory pcFactory = stateProvider.getPeerConnectionFactory();
         VideoSource videoSource = pcFactory.createVideoSource(true);
 
-        String threadName = Thread.currentThread().getName() + "_texture_screen_thread";
-        SurfaceTextureHelper surfaceTextureHelper =
-                SurfaceTextureHelper.create(threadName, EglUtils.getRootEglBaseContext());
+        SurfaceTextureHelper surfaceTextureHelper = capturerPool.acquireHelper();
         videoCapturer.initialize(
                 surfaceTextureHelper, applicationContext, videoSource.getCapturerObserver());
 
@@ -558,6 +569,7 @@ public class GetUserMediaImpl {
 
         String trackId = stateProvider.getNextTrackUUID();
         mVideoCapturers.put(trackId, info);
+        mSurfaceTextureHelpers.put(trackId, surfaceTextureHelper);
 
         displayTrack = pcFactory.createVideoTrack(trackId, videoSource);
 
@@ -601,37 +613,106 @@ public class GetUserMediaImpl {
      * Implements {@code getUserMedia} with the knowledge that the necessary permissions have already
      * been granted. If the necessary permissions have not been granted yet, they will NOT be
      * requested.
+     *
+     * The camera is created and started on the camera thread while the audio track is created
+     * here, and the {@code Result} is completed once the camera delivered its first frame. The
+     * result carries a {@code timings} map with the duration of each phase.
      */
     private void getUserMedia(
             ConstraintsMap constraints,
             Result result,
             MediaStream mediaStream,
-            List<String> grantedPermissions) {
-        ConstraintsMap[] trackParams = new ConstraintsMap[2];
-
-        // If we fail to create either, destroy the other one and fail.
-        if ((grantedPermissions.contains(PERMISSION_AUDIO)
-                && (trackParams[0] = getUserAudio(constraints, mediaStream)) == null)
-                || (grantedPermissions.contains(PERMISSION_VIDEO)
-                && (trackParams[1] = getUserVideo(constraints, mediaStream)) == null)) {
-            for (MediaStreamTrack track : mediaStream.audioTracks) {
-                if (track != null) {
-                    track.dispose();
-                }
-            }
-            for (MediaStreamTrack track : mediaStream.videoTracks) {
-                if (track != null) {
-                    track.dispose();
-                }
+            List<String> grantedPermissions,
+            long startedAtMs) {
+        final long grantedAtMs = SystemClock.elapsedRealtime();
+        final ConstraintsMap[] trackParams = new ConstraintsMap[2];
+        final ConstraintsMap timings = new ConstraintsMap();
+        timings.putLong("permissionMs", grantedAtMs - startedAtMs);
+
+        final boolean wantsVideo = grantedPermissions.contains(PERMISSION_VIDEO);
+        if (wantsVideo) {
+            getCameraHandler().post(() -> {
+                final PendingVideo pending = startUserVideo(constraints);
+                // Posted after the audio track below, so both are ready when this runs.
+                mainHandler.post(() -> {
+                    if (trackParams[0] == null && grantedPermissions.contains(PERMISSION_AUDIO)) {
+                        // Audio failed and the call was already completed.
+                        disposePendingVideo(pending);
+                        return;
+                    }
+                    if (pending == null) {
+                        failUserMedia(mediaStream, trackParams, "Failed to create new track.", result);
+                        return;
+                    }
+                    timings.putLong("capturerCreateMs", pending.capturerCreateMs);
+                    trackParams[1] = addUserVideoTrack(pending, mediaStream);
+                    awaitFirstFrame(pending, mediaStream, trackParams, timings, startedAtMs, result);
+                });
+            });
+        }
+
+        if (grantedPermissions.contains(PERMISSION_AUDIO)) {
+            long audioStartedAtMs = SystemClock.elapsedRealtime();
+            // If we fail to create either, destroy the other one and fail.
+            if ((trackParams[0] = getUserAudio(constraints, mediaStream)) == null) {
+                // XXX The following does not follow the getUserMedia() algorithm
+                // specified by
+                // https://www.w3.org/TR/mediacapture-streams/#dom-mediadevices-getusermedia
+                // with respect to distinguishing the various causes of failure.
+                failUserMedia(mediaStream, trackParams, "Failed to create new track.", result);
+                return;
             }
-            // XXX The following does not follow the getUserMedia() algorithm
-            // specified by
-            // https://www.w3.org/TR/mediacapture-streams/#dom-mediadevices-getusermedia
-            // with respect to distinguishing the various causes of failure.
-            resultError("getUserMedia", "Failed to create new track.", result);
-            return;
+            timings.putLong("audioMs", SystemClock.elapsedRealtime() - audioStartedAtMs);
+        }
+
+        if (!wantsVideo) {
+            timings.putLong("totalMs", SystemClock.elapsedRealtime() - startedAtMs);
+            completeUserMedia(mediaStream, trackParams, timings, result);
         }
+    }
+
+    private void awaitFirstFrame(
+            final PendingVideo pending,
+            final MediaStream mediaStream,
+            final ConstraintsMap[] trackParams,
+            final ConstraintsMap timings,
+            final long startedAtMs,
+            final Result result) {
+        final CameraEventsHandler events = pending.info.cameraEventsHandler;
+        // Complete the call from the camera callback instead of blocking until the first frame.
+        events.whenCameraOpen(new CameraEventsHandler.OpenCallback() {
+            @Override
+            public void onCameraOpened() {
+                mainHandler.post(() -> {
+                    long openingAtMs = events.getOpeningTimeMs();
+                    long firstFrameAtMs = events.getFirstFrameTimeMs();
+                    // A pooled camera can report times from before this capture; skip those.
+                    if (openingAtMs >= pending.captureStartedAtMs) {
+                        // startCapture until the camera starts opening.
+                        timings.putLong("cameraStartMs", openingAtMs - pending.captureStartedAtMs);
+                        if (firstFrameAtMs >= openingAtMs) {
+                            // Camera opening until its first frame.
+                            timings.putLong("cameraOpenMs", firstFrameAtMs - openingAtMs);
+                        }
+                    }
+                    if (firstFrameAtMs >= pending.captureStartedAtMs) {
+                        // startCapture until the first frame.
+                        timings.putLong("firstFrameMs", firstFrameAtMs - pending.captureStartedAtMs);
+                    }
+                    timings.putLong("totalMs", SystemClock.elapsedRealtime() - startedAtMs);
+                    completeUserMedia(mediaStream, trackParams, timings, result);
+                });
+            }
+
+            @Override
+            public void onCameraOpenFailed(String error) {
+                mainHandler.post(() -> failUserMedia(mediaStream, trackParams, "Failed to open camera: " + error, result));
+            }
+        }, CAMERA_OPEN_TIMEOUT_MS);
+    }
 
+    private void completeUserMedia(
+            MediaStream mediaStream, ConstraintsMap[] trackParams, ConstraintsMap timings, Result result) {
         ConstraintsArray audioTracks = new ConstraintsArray();
         ConstraintsArray videoTracks = new ConstraintsArray();
         ConstraintsMap successResult = new ConstraintsMap();
@@ -648,15 +729,67 @@ public class GetUserMediaImpl {
         }
 
         String streamId = mediaStream.getId();
-        Log.d(TAG, "MediaStream id: " + streamId);
+        Log.d(TAG, "MediaStream id: " + streamId + ", timings: " + timings);
         stateProvider.putLocalStream(streamId, mediaStream);
 
         successResult.putString("streamId", streamId);
         successResult.putArray("audioTracks", audioTracks.toArrayList());
         successResult.putArray("videoTracks", videoTracks.toArrayList());
+        successResult.putMap("timings", timings.toMap());
         result.success(successResult.toMap());
     }
 
+    private void failUserMedia(MediaStream mediaStream, ConstraintsMap[] trackParams, String error, Result result) {
+        if (trackParams[1] != null) {
+            removeVideoCapturer(trackParams[1].getString("id"));
+        }
+        for (MediaStreamTrack track : mediaStream.audioTracks) {
+            if (track != null) {
+                track.dispose();
+            }
+        }
+        for (MediaStreamTrack track : mediaStream.videoTracks) {
+            if (track != null) {
+                track.dispose();
+            }
+        }
+        resultError("getUserMedia", error, result);
+    }
+
+    private synchronized CameraEnumerator getCameraEnumerator() {
+        if (cameraEnumerator == null) {
+            if (Camera2Enumerator.isSupported(applicationContext)) {
+                Log.d(TAG, "Creating video capturer using Camera2 API.");
+                cameraEnumerator = new Camera2Enumerator(applicationContext);
+            } else {
+                Log.d(TAG, "Creating video capturer using Camera1 API.");
+                cameraEnumerator = new Camera1Enumerator(false);
+            }
+        }
+        return cameraEnumerator;
+    }
+
+    private synchronized Handler getCameraHandler() {
+        if (cameraHandler == null) {
+            cameraThread = new HandlerThread(TAG + "CameraThread");
+            cameraThread.start();
+            cameraHandler = new Handler(cameraThread.getLooper());
+        }
+        return cameraHandler;
+    }
+
+    /**
+     * Releases the pooled capturers and stops the camera thread once its pending work ran.
+     */
+    synchronized void dispose() {
+        capturerPool.clear();
+        if (cameraThread != null) {
+            cameraThread.quitSafely();
+            cameraThread = null;
+            cameraHandler = null;
+        }
+    }
+
     private boolean isFacing = true;
 
     /**
@@ -696,7 +829,15 @@ public class GetUserMediaImpl {
         return null;
     }
 
-    private ConstraintsMap getUserVideo(ConstraintsMap constraints, MediaStream mediaStream) {
+    /**
+     * Creates, initializes and starts the camera capturer. Runs on the camera thread and only
+     * touches thread safe objects; the track itself is created by {@link #addUserVideoTrack}.
+     *
+     * @return the started camera or <tt>null</tt> if no capturer could be created.
+     */
+    @Nullable
+    private PendingVideo startUserVideo(ConstraintsMap constraints) {
+        long startedAtMs = SystemClock.elapsedRealtime();
         ConstraintsMap videoConstraintsMap = null;
         ConstraintsMap videoConstraintsMandatory = null;
         if (constraints.getType("video") == ObjectType.Map) {
@@ -715,28 +856,59 @@ public class GetUserMediaImpl {
         //   see:
         // https://developer.android.com/reference/android/hardware/camera2/CameraCharacteristics.html#INFO_SUPPORTED_HARDWARE_LEVEL
         // TODO Enable camera2 enumerator
-        CameraEnumerator cameraEnumerator;
-
-        if (Camera2Enumerator.isSupported(applicationContext)) {
-            Log.d(TAG, "Creating video capturer using Camera2 API.");
-            cameraEnumerator = new Camera2Enumerator(applicationContext);
-        } else {
-            Log.d(TAG, "Creating video capturer using Camera1 API.");
-            cameraEnumerator = new Camera1Enumerator(false);
-        }
+        CameraEnumerator cameraEnumerator = getCameraEnumerator();
 
+        PendingVideo pending = new PendingVideo();
         String facingMode = getFacingMode(videoConstraintsMap);
-        isFacing = facingMode == null || !facingMode.equals("environment");
+        pending.isFacing = facingMode == null || !facingMode.equals("environment");
         String deviceId = getSourceIdConstraint(videoConstraintsMap);
-        CameraEventsHandler cameraEventsHandler = new CameraEventsHandler();
-        Pair<String, VideoCapturer> result = createVideoCapturer(cameraEnumerator, isFacing, deviceId, cameraEventsHandler);
 
-        if (result == null) {
-            return null;
-        }
+        VideoCapturer videoCapturer;
+        VideoSource videoSource;
+        SurfaceTextureHelper surfaceTextureHelper;
+        CameraEventsHandler cameraEventsHandler;
+        CapturerPool.PooledCapturer pooled = capturerPool.takeCapturer(
+                deviceId != null && !deviceId.equals("") ? deviceId : null, pending.isFacing, cameraEnumerator);
+        if (pooled != null) {
+            Log.d(TAG, "Reusing pooled capturer for camera " + pooled.cameraName);
+            deviceId = pooled.cameraName;
+            videoCapturer = pooled.capturer;
+            surfaceTextureHelper = pooled.surfaceTextureHelper;
+            cameraEventsHandler = pooled.cameraEventsHandler;
+            // The previous source belongs to the track of the previous user, which must not
+            // receive frames of this one.
+            videoSource = stateProvider.getPeerConnectionFactory().createVideoSource(false);
+            videoCapturer.initialize(
+                    surfaceTextureHelper, applicationContext, videoSource.getCapturerObserver());
+        } else {
+            long createStartedAtMs = SystemClock.elapsedRealtime();
+            cameraEventsHandler = new CameraEventsHandler();
+            Pair<String, VideoCapturer> result = createVideoCapturer(cameraEnumerator, pending.isFacing, deviceId, cameraEventsHandler);
+
+            if (result == null) {
+                return null;
+            }
+
+            deviceId = result.first;
+            videoCapturer = result.second;
+
+            PeerConnectionFactory pcFactory = stateProvider.getPeerConnectionFactory();
+            videoSource = pcFactory.createVideoSource(false);
+            long createMs = SystemClock.elapsedRealtime() - createStartedAtMs;
+            surfaceTextureHelper = capturerPool.acquireHelper();
+
+            if (surfaceTextureHelper == null) {
+                Log.e(TAG, "surfaceTextureHelper is null");
+                videoCapturer.dispose();
+                videoSource.dispose();
+                return null;
+            }
 
-        deviceId = result.first;
-        VideoCapturer videoCapturer = result.second;
+            createStartedAtMs = SystemClock.elapsedRealtime();
+            videoCapturer.initialize(
+                    surfaceTextureHelper, applicationContext, videoSource.getCapturerObserver());
+            capturerPool.recordCapturerCreated(createMs + SystemClock.elapsedRealtime() - createStartedAtMs);
+        }
 
         if (facingMode == null && cameraEnumerator.isFrontFacing(deviceId)) {
             facingMode = "user";
@@ -745,21 +917,7 @@ public class GetUserMediaImpl {
         }
         // else, leave facingMode as it was
 
-        PeerConnectionFactory pcFactory = stateProvider.getPeerConnectionFactory();
-        VideoSource videoSource = pcFactory.createVideoSource(false);
-        String threadName = Thread.currentThread().getName() + "_texture_camera_thread";
-        SurfaceTextureHelper surfaceTextureHelper =
-                SurfaceTextureHelper.create(threadName, EglUtils.getRootEglBaseContext());
-
-        if (surfaceTextureHelper == null) {
-            Log.e(TAG, "surfaceTextureHelper is null");
-            return null;
-        }
-
-        videoCapturer.initialize(
-                surfaceTextureHelper, applicationContext, videoSource.getCapturerObserver());
-
-        VideoCapturerInfoEx info = new VideoCapturerInfoEx();
+        VideoCapturerInfoEx info = pending.info;
 
         Integer videoWidth = getConstrainInt(videoConstraintsMap, "width");
         int targetWidth = videoWidth != null
@@ -790,36 +948,56 @@ public class GetUserMediaImpl {
 
         // Find actual capture format.
         Size actualSize = null;
+        CaptureFormat.FramerateRange actualFramerate = null;
         if (videoCapturer instanceof Camera1Capturer) {
             int cameraId = Camera1Helper.getCameraId(deviceId);
             actualSize = Camera1Helper.findClosestCaptureFormat(cameraId, targetWidth, targetHeight);
+            actualFramerate = Camera1Helper.findClosestFramerateRange(cameraId, targetFps);
         } else if (videoCapturer instanceof Camera2Capturer) {
             CameraManager cameraManager = (CameraManager) applicationContext.getSystemService(Context.CAMERA_SERVICE);
             actualSize = Camera2Helper.findClosestCaptureFormat(cameraManager, deviceId, targetWidth, targetHeight);
+            actualFramerate = Camera2Helper.findClosestFramerateRange(cameraManager, deviceId, targetFps);
         }
 
         if (actualSize != null) {
             info.width = actualSize.width;
             info.height = actualSize.height;
         }
+        if (actualFramerate != null) {
+            info.fps = Math.min(targetFps, actualFramerate.max / 1000);
+        }
 
         info.cameraEventsHandler = cameraEventsHandler;
+        info.videoSource = videoSource;
+        pending.videoSource = videoSource;
+        pending.surfaceTextureHelper = surfaceTextureHelper;
+        pending.facingMode = facingMode;
+        pending.captureStartedAtMs = SystemClock.elapsedRealtime();
+        pending.capturerCreateMs = pending.captureStartedAtMs - startedAtMs;
         videoCapturer.startCapture(targetWidth, targetHeight, targetFps);
 
-        cameraEventsHandler.waitForCameraOpen();
+        Log.d(TAG, "Target: " + targetWidth + "x" + targetHeight + "@" + targetFps + ", Actual: " + info.width + "x" + info.height + "@" + info.fps);
+        return pending;
+    }
 
+    /**
+     * Registers a camera started by {@link #startUserVideo} and creates its track. Must be
+     * called on the main thread.
+     */
+    private ConstraintsMap addUserVideoTrack(PendingVideo pending, MediaStream mediaStream) {
+        VideoCapturerInfoEx info = pending.info;
+        isFacing = pending.isFacing;
 
         String trackId = stateProvider.getNextTrackUUID();
         mVideoCapturers.put(trackId, info);
-        mSurfaceTextureHelpers.put(trackId, surfaceTextureHelper);
+        mSurfaceTextureHelpers.put(trackId, pending.surfaceTextureHelper);
 
-        Log.d(TAG, "Target: " + targetWidth + "x" + targetHeight + "@" + targetFps + ", Actual: " + info.width + "x" + info.height + "@" + info.fps);
-
-        VideoTrack track = pcFactory.createVideoTrack(trackId, videoSource);
+        PeerConnectionFactory pcFactory = stateProvider.getPeerConnectionFactory();
+        VideoTrack track = pcFactory.createVideoTrack(trackId, pending.videoSource);
         mediaStream.addTrack(track);
 
         LocalVideoTrack localVideoTrack = new LocalVideoTrack(track);
-        videoSource.setVideoProcessor(localVideoTrack);
+        pending.videoSource.setVideoProcessor(localVideoTrack);
 
         stateProvider.putLocalTrack(track.id(),localVideoTrack);
 
@@ -833,35 +1011,55 @@ public class GetUserMediaImpl {
         trackParams.putBoolean("remote", false);
 
         ConstraintsMap settings = new ConstraintsMap();
-        settings.putString("deviceId", deviceId);
+        settings.putString("deviceId", info.cameraName);
         settings.putString("kind", "videoinput");
         settings.putInt("width", info.width);
         settings.putInt("height", info.height);
         settings.putInt("frameRate", info.fps);
-        if (facingMode != null) settings.putString("facingMode", facingMode);
+        if (pending.facingMode != null) settings.putString("facingMode", pending.facingMode);
         trackParams.putMap("settings", settings.toMap());
 
         return trackParams;
     }
 
+    private void disposePendingVideo(@Nullable PendingVideo pending) {
+        if (pending == null) {
+            return;
+        }
+        try {
+            pending.info.capturer.stopCapture();
+        } catch (InterruptedException e) {
+            Log.e(TAG, "disposePendingVideo() Failed to stop video capturer");
+        }
+        pending.info.capturer.dispose();
+        pending.videoSource.dispose();
+        capturerPool.releaseHelper(pending.surfaceTextureHelper);
+    }
+
     void removeVideoCapturer(String id) {
         VideoCapturerInfoEx info = mVideoCapturers.get(id);
         if (info != null) {
+            boolean closed = false;
             try {
                 info.capturer.stopCapture();
                 if (info.cameraEventsHandler != null) {
-                    info.cameraEventsHandler.waitForCameraClosed();
+                    closed = info.cameraEventsHandler.waitForCameraClosed(CAMERA_CLOSE_TIMEOUT_MS)
+                            && info.cameraEventsHandler.getState() == CameraEventsHandler.CameraState.CLOSED;
                 }
             } catch (InterruptedException e) {
                 Log.e(TAG, "removeVideoCapturer() Failed to stop video capturer");
             } finally {
-                info.capturer.dispose();
                 mVideoCapturers.remove(id);
-                SurfaceTextureHelper helper = mSurfaceTextureHelpers.get(id);
-                if (helper != null) {
-                    helper.stopListening();
-                    helper.dispose();
-                    mSurfaceTextureHelpers.remove(id);
+                SurfaceTextureHelper helper = mSurfaceTextureHelpers.remove(id);
+                if (closed && !info.isScreenCapture && helper != null) {
+                    // Keep the stopped camera around, reopening it is much cheaper than creating it.
+                    capturerPool.releaseCapturer(new CapturerPool.PooledCapturer(
+                            info.cameraName, info.capturer, helper, info.cameraEventsHandler));
+                } else {
+                    info.capturer.dispose();
+                    if (helper != null) {
+                        capturerPool.releaseHelper(helper);
+                    }
                 }
             }
         }
@@ -910,21 +1108,14 @@ public class GetUserMediaImpl {
     }
 
     void switchCamera(String id, Result result) {
-        VideoCapturer videoCapturer = mVideoCapturers.get(id).capturer;
-        if (videoCapturer == null) {
+        final VideoCapturerInfoEx info = mVideoCapturers.get(id);
+        if (info == null || info.capturer == null) {
             resultError("switchCamera", "Video capturer not found for id: " + id, result);
             return;
         }
+        VideoCapturer videoCapturer = info.capturer;
 
-        CameraEnumerator cameraEnumerator;
-
-        if (Camera2Enumerator.isSupported(applicationContext)) {
-            Log.d(TAG, "Creating video capturer using Camera2 API.");
-            cameraEnumerator = new Camera2Enumerator(applicationContext);
-        } else {
-            Log.d(TAG, "Creating video capturer using Camera1 API.");
-            cameraEnumerator = new Camera1Enumerator(false);
-        }
+        CameraEnumerator cameraEnumerator = getCameraEnumerator();
         // if sourceId given, use specified sourceId first
         final String[] deviceNames = cameraEnumerator.getDeviceNames();
         for (String name : deviceNames) {
@@ -935,6 +1126,7 @@ public class GetUserMediaImpl {
                             @Override
                             public void onCameraSwitchDone(boolean b) {
                                 isFacing = !isFacing;
+                                info.cameraName = name;
                                 result.success(b);
                             }
 
@@ -957,37 +1149,74 @@ public class GetUserMediaImpl {
      * @param audioChannel channel for recording or null
      * @throws Exception lot of different exceptions, pass back to dart layer to print them at least
      */
-    void startRecordingToFile(
-            String path, Integer id, @Nullable VideoTrack videoTrack, @Nullable AudioChannel audioChannel)
+    synchronized void startRecordingToFile(
+            String path, Integer id, @Nullable VideoTrack videoTrack, @Nullable AudioChannel audioChannel,
+            RecorderSettings settings)
             throws Exception {
         AudioSamplesInterceptor interceptor = null;
+        AudioSamplesInterceptor mixedInterceptor = null;
         if (audioChannel == AudioChannel.INPUT) {
             interceptor = inputSamplesInterceptor;
+            if (settings.mixAudioChannels) {
+                mixedInterceptor = getOutputSamplesInterceptor();
+            }
         } else if (audioChannel == AudioChannel.OUTPUT) {
-            if (outputSamplesInterceptor == null) {
-                outputSamplesInterceptor = new OutputAudioSamplesInterceptor(audioDeviceModule);
+            interceptor = getOutputSamplesInterceptor();
+            if (settings.mixAudioChannels) {
+                mixedInterceptor = inputSamplesInterceptor;
             }
-            interceptor = outputSamplesInterceptor;
         }
-        MediaRecorderImpl mediaRecorder = new MediaRecorderImpl(id, videoTrack, interceptor);
+        MediaRecorderImpl mediaRecorder =
+                new MediaRecorderImpl(id, videoTrack, interceptor, mixedInterceptor, settings);
+        mediaRecorder.setSegmentListener((recorderId, segmentPath, index, durationUs, sizeBytes) -> {
+            FlutterWebRTCPlugin plugin = FlutterWebRTCPlugin.sharedSingleton;
+            if (plugin == null) {
+                return;
+            }
+            ConstraintsMap params = new ConstraintsMap();
+            params.putString("event", "onRecorderSegment");
+            params.putInt("recorderId", recorderId);
+            params.putString("path", segmentPath);
+            params.putInt("index", index);
+            params.putLong("durationMs", durationUs / 1000);
+            params.putLong("size", sizeBytes);
+            plugin.sendEvent(params.toMap());
+        });
         mediaRecorder.startRecording(new File(path));
         mediaRecorders.append(id, mediaRecorder);
     }
 
-    void stopRecording(Integer id) {
+    private AudioSamplesInterceptor getOutputSamplesInterceptor() {
+        if (outputSamplesInterceptor == null) {
+            outputSamplesInterceptor = new OutputAudioSamplesInterceptor(audioDeviceModule);
+        }
+        return outputSamplesInterceptor;
+    }
+
+    @Nullable
+    synchronized ConstraintsMap getRecorderStats(Integer id) {
+        MediaRecorderImpl mediaRecorder = mediaRecorders.get(id);
+        return mediaRecorder != null ? mediaRecorder.getStats() : null;
+    }
+
+    synchronized void stopRecording(Integer id) {
         MediaRecorderImpl mediaRecorder = mediaRecorders.get(id);
         if (mediaRecorder != null) {
             mediaRecorder.stopRecording();
             mediaRecorders.remove(id);
             File file = mediaRecorder.getRecordFile();
-            if (file != null) {
+            // Segmented recordings never write the base path and may delete old segments, so
+            // they are left to the app.
+            if (file != null && !mediaRecorder.isSegmented()) {
                 ContentValues values = new ContentValues(3);
-                values.put(MediaStore.Video.Media.TITLE, file.getName());
-                values.put(MediaStore.Video.Media.MIME_TYPE, "video/mp4");
-                values.put(MediaStore.Video.Media.DATA, file.getAbsolutePath());
+                values.put(MediaStore.MediaColumns.TITLE, file.getName());
+                values.put(MediaStore.MediaColumns.MIME_TYPE, mediaRecorder.getMimeType());
+                values.put(MediaStore.MediaColumns.DATA, file.getAbsolutePath());
                 applicationContext
                         .getContentResolver()
-                        .insert(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, values);
+                        .insert(mediaRecorder.hasVideo()
+                                ? MediaStore.Video.Media.EXTERNAL_CONTENT_URI
+                                : MediaStore.Audio.Media.EXTERNAL_CONTENT_URI, values);
             }
         }
     }
@@ -1012,6 +1241,21 @@ public class GetUserMediaImpl {
 
     public static class VideoCapturerInfoEx extends VideoCapturerInfo  {
         public CameraEventsHandler cameraEventsHandler;
+        public VideoSource videoSource;
+    }
+
+    /**
+     * A camera that was started on the camera thread and still has to be turned into a track on
+     * the main thread.
+     */
+    private static class PendingVideo {
+        final VideoCapturerInfoEx info = new VideoCapturerInfoEx();
+        VideoSource videoSource;
+        SurfaceTextureHelper surfaceTextureHelper;
+        String facingMode;
+        boolean isFacing;
+        long capturerCreateMs;
+        long captureStartedAtMs;
     }
 
     public VideoCapturerInfoEx getCapturerInfo(String trackId) {
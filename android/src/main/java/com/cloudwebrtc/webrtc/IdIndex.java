@@ -0,0 +1,60 @@
+package com.cloudwebrtc.webrtc;
+
+import androidx.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Peer connection owning a remote track or stream id.
+ *
+ * Entries are added from the observer callbacks on the signaling thread and read on the main
+ * thread, so lookups by id do not have to visit every peer connection.
+ */
+class IdIndex {
+    private final Map<String, String> trackOwners = new ConcurrentHashMap<>();
+    private final Map<String, String> streamOwners = new ConcurrentHashMap<>();
+
+    void putTrack(String trackId, String peerConnectionId) {
+        trackOwners.put(trackId, peerConnectionId);
+    }
+
+    void removeTrack(String trackId) {
+        trackOwners.remove(trackId);
+    }
+
+    @Nullable
+    String getTrackOwner(String trackId) {
+        return trackOwners.get(trackId);
+    }
+
+    void putStream(String streamId, String peerConnectionId) {
+        streamOwners.put(streamId, peerConnectionId);
+    }
+
+    @Nullable
+    String getStreamOwner(String streamId) {
+        return streamOwners.get(streamId);
+    }
+
+    /** Drops all ids of a disposed peer connection. */
+    void removeOwner(String peerConnectionId) {
+        removeValue(trackOwners, peerConnectionId);
+        removeValue(streamOwners, peerConnectionId);
+    }
+
+    private static void removeValue(Map<String, String> owners, String peerConnectionId) {
+        Iterator<String> it = owners.values().iterator();
+        while (it.hasNext()) {
+            if (peerConnectionId.equals(it.next())) {
+                it.remove();
+            }
+        }
+    }
+
+    void clear() {
+        trackOwners.clear();
+        streamOwners.clear();
+    }
+}
@@ -6,14 +6,16 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.graphics.SurfaceTexture;
-import android.hardware.Camera;
 import android.hardware.Camera.CameraInfo;
 import android.media.MediaRecorder;
 import android.media.AudioAttributes;
 import android.media.AudioDeviceInfo;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.util.LongSparseArray;
+import android.util.SparseArray;
 import android.view.Surface;
 
 import androidx.annotation.NonNull;
@@ -27,18 +29,25 @@ import com.cloudwebrtc.webrtc.audio.AudioUtils;
 import com.cloudwebrtc.webrtc.audio.LocalAudioTrack;
 import com.cloudwebrtc.webrtc.audio.PlaybackSamplesReadyCallbackAdapter;
 import com.cloudwebrtc.webrtc.audio.RecordSamplesReadyCallbackAdapter;
+import com.cloudwebrtc.webrtc.audio.SnapshotCallbackList;
 import com.cloudwebrtc.webrtc.record.AudioChannel;
+import com.cloudwebrtc.webrtc.record.FrameCaptureSession;
 import com.cloudwebrtc.webrtc.record.FrameCapturer;
+import com.cloudwebrtc.webrtc.record.FrameSnapshotRenderer;
+import com.cloudwebrtc.webrtc.record.RecorderSettings;
 import com.cloudwebrtc.webrtc.utils.AnyThreadResult;
 import com.cloudwebrtc.webrtc.utils.Callback;
 import com.cloudwebrtc.webrtc.utils.ConstraintsArray;
 import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
 import com.cloudwebrtc.webrtc.utils.EglUtils;
+import com.cloudwebrtc.webrtc.utils.IdAllocator;
 import com.cloudwebrtc.webrtc.utils.ObjectType;
 import com.cloudwebrtc.webrtc.utils.PermissionUtils;
+import com.cloudwebrtc.webrtc.utils.PluginMetrics;
 import com.cloudwebrtc.webrtc.utils.Utils;
 import com.cloudwebrtc.webrtc.video.VideoCapturerInfo;
 // import com.cloudwebrtc.webrtc.video.camera.CameraUtils;
+import com.cloudwebrtc.webrtc.video.camera.CameraCapabilityIndex;
 import com.cloudwebrtc.webrtc.video.camera.Point;
 import com.cloudwebrtc.webrtc.video.LocalVideoTrack;
 import com.twilio.audioswitch.AudioDevice;
@@ -48,7 +57,6 @@ import org.webrtc.CryptoOptions;
 import org.webrtc.DtmfSender;
 import org.webrtc.EglBase;
 import org.webrtc.IceCandidate;
-import org.webrtc.Logging;
 import org.webrtc.MediaConstraints;
 import org.webrtc.MediaConstraints.KeyValuePair;
 import org.webrtc.MediaStream;
@@ -83,11 +91,10 @@ import java.io.File;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.UUID;
 
 import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.EventChannel;
@@ -99,15 +106,33 @@ import io.flutter.view.TextureRegistry.SurfaceTextureEntry;
 
 public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
   static public final String TAG = "FlutterWebRTCPlugin";
-
-  private final Map<String, PeerConnectionObserver> mPeerConnectionObservers = new HashMap<>();
+  // How long dispose() waits for calls running on the worker threads.
+  private static final long DISPOSE_TIMEOUT_MS = 2000;
+
+  // Synchronized, calls on peer connections run on the worker threads of the dispatcher.
+  private final Map<String, PeerConnectionObserver> mPeerConnectionObservers = Collections.synchronizedMap(new HashMap<>());
+  // Guarded by mPeerConnectionObservers, no connection is added once set.
+  private boolean disposed = false;
+  private final MethodDispatcher dispatcher = new MethodDispatcher();
+  private final IdIndex idIndex = new IdIndex();
+  // Periodic "onPluginMetrics" event, only touched on the main thread.
+  private final Handler metricsHandler = new Handler(Looper.getMainLooper());
+  private final Runnable metricsRunnable = this::sendPluginMetrics;
+  private long metricsIntervalMs = 0;
+  private boolean metricsResetOnSend = false;
   private final BinaryMessenger messenger;
   private final Context context;
   private final TextureRegistry textures;
   private PeerConnectionFactory mFactory;
-  private final Map<String, MediaStream> localStreams = new HashMap<>();
-  private final Map<String, LocalTrack> localTracks = new HashMap<>();
+  private final Map<String, MediaStream> localStreams = Collections.synchronizedMap(new HashMap<>());
+  private final Map<String, LocalTrack> localTracks = Collections.synchronizedMap(new HashMap<>());
+  // Audio tracks of localTracks for the record samples callback, which must not take a lock.
+  private final SnapshotCallbackList<LocalAudioTrack> localAudioTracks =
+          new SnapshotCallbackList<>(new LocalAudioTrack[0]);
   private final LongSparseArray<FlutterRTCVideoRenderer> renders = new LongSparseArray<>();
+  // Guarded by itself, sessions of remote tracks are started on the queue of their connection.
+  private final SparseArray<FrameCaptureSession> frameCaptureSessions = new SparseArray<>();
+  private int nextFrameCaptureSessionId = 0;
 
   public RecordSamplesReadyCallbackAdapter recordSamplesReadyCallbackAdapter;
 
@@ -139,6 +164,30 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     this.messenger = messenger;
   }
 
+  private void sendPluginMetrics() {
+    if (metricsIntervalMs <= 0) {
+      return;
+    }
+    metricsHandler.postDelayed(metricsRunnable, metricsIntervalMs);
+    FlutterWebRTCPlugin plugin = FlutterWebRTCPlugin.sharedSingleton;
+    if (plugin == null) {
+      return;
+    }
+    ConstraintsMap params = new ConstraintsMap();
+    params.putString("event", "onPluginMetrics");
+    params.putMap("metrics", PluginMetrics.instance.snapshot().toMap());
+    if (metricsResetOnSend) {
+      // Every event then covers one interval.
+      PluginMetrics.instance.reset();
+    }
+    plugin.sendEvent(params.toMap());
+  }
+
+  private void stopPluginMetricsEvents() {
+    metricsIntervalMs = 0;
+    metricsHandler.removeCallbacks(metricsRunnable);
+  }
+
   static private void resultError(String method, String error, Result result) {
     String errorMsg = method + "(): " + error;
     result.error(method, errorMsg, null);
@@ -146,19 +195,40 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
   }
 
   void dispose() {
-    for (final MediaStream mediaStream : localStreams.values()) {
+    if (!dispatcher.shutdownAndWait(DISPOSE_TIMEOUT_MS)) {
+      Log.w(TAG, "dispose(): calls still running after " + DISPOSE_TIMEOUT_MS + " ms");
+    }
+    synchronized (mPeerConnectionObservers) {
+      disposed = true;
+    }
+    stopPluginMetricsEvents();
+    for (final MediaStream mediaStream : new ArrayList<>(localStreams.values())) {
       streamDispose(mediaStream);
       mediaStream.dispose();
     }
     localStreams.clear();
-    for (final LocalTrack track : localTracks.values()) {
-      track.dispose();
+    for (final String trackId : new ArrayList<>(localTracks.keySet())) {
+      LocalTrack track = removeLocalTrack(trackId);
+      if (track != null) {
+        track.dispose();
+      }
     }
-    localTracks.clear();
-    for (final PeerConnectionObserver connection : mPeerConnectionObservers.values()) {
+    for (final PeerConnectionObserver connection : new ArrayList<>(mPeerConnectionObservers.values())) {
       peerConnectionDispose(connection);
     }
     mPeerConnectionObservers.clear();
+    if (getUserMediaImpl != null) {
+      getUserMediaImpl.dispose();
+    }
+    synchronized (frameCaptureSessions) {
+      for (int i = 0; i < frameCaptureSessions.size(); i++) {
+        frameCaptureSessions.valueAt(i).stop();
+      }
+      frameCaptureSessions.clear();
+    }
+    FrameSnapshotRenderer.releaseInstance();
+    StatsEngine.releaseInstance();
+    idIndex.clear();
   }
   private void initialize(boolean bypassVoiceProcessing, int networkIgnoreMask, boolean forceSWCodec, List<String> forceSWCodecList,
   @Nullable ConstraintsMap androidAudioConfiguration) {
@@ -223,10 +293,8 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     recordSamplesReadyCallbackAdapter.addCallback(new JavaAudioDeviceModule.SamplesReadyCallback() {
       @Override
       public void onWebRtcAudioRecordSamplesReady(JavaAudioDeviceModule.AudioSamples audioSamples) {
-        for(LocalTrack track : localTracks.values()) {
-          if (track instanceof LocalAudioTrack) {
-            ((LocalAudioTrack) track).onWebRtcAudioRecordSamplesReady(audioSamples);
-          }
+        for (LocalAudioTrack track : localAudioTracks.snapshot()) {
+          track.onWebRtcAudioRecordSamplesReady(audioSamples);
         }
       }
     });
@@ -279,8 +347,16 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
 
   @Override
   public void onMethodCall(MethodCall call, @NonNull Result notSafeResult) {
-
     final AnyThreadResult result = new AnyThreadResult(notSafeResult);
+    String peerConnectionId = call.arguments instanceof Map ? call.argument("peerConnectionId") : null;
+    if (peerConnectionId != null && !mPeerConnectionObservers.containsKey(peerConnectionId)) {
+      // "local" tracks or a disposed connection, nothing to keep in order with.
+      peerConnectionId = null;
+    }
+    dispatcher.dispatch(call.method, peerConnectionId, result, () -> handleMethodCall(call, result));
+  }
+
+  private void handleMethodCall(MethodCall call, AnyThreadResult result) {
     switch (call.method) {
       case "initialize": {
         int networkIgnoreMask = Options.ADAPTER_TYPE_UNKNOWN;
@@ -351,6 +427,10 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
         Map<String, Object> configuration = call.argument("configuration");
         String peerConnectionId = peerConnectionInit(new ConstraintsMap(configuration),
                 new ConstraintsMap((constraints)));
+        if (peerConnectionId == null) {
+          resultError("createPeerConnection", "plugin was disposed", result);
+          break;
+        }
         ConstraintsMap res = new ConstraintsMap();
         res.putString("peerConnectionId", peerConnectionId);
         result.success(res.toMap());
@@ -387,7 +467,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
         List<Object> audioTracks = new ArrayList<>();
         List<Object> videoTracks = new ArrayList<>();
         for (AudioTrack track : stream.audioTracks) {
-          localTracks.put(track.id(), new LocalAudioTrack(track));
+          putLocalTrack(track.id(), new LocalAudioTrack(track));
           Map<String, Object> trackMap = new HashMap<>();
           trackMap.put("enabled", track.enabled());
           trackMap.put("id", track.id());
@@ -398,7 +478,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
           audioTracks.add(trackMap);
         }
         for (VideoTrack track : stream.videoTracks) {
-          localTracks.put(track.id(), new LocalVideoTrack(track));
+          putLocalTrack(track.id(), new LocalVideoTrack(track));
           Map<String, Object> trackMap = new HashMap<>();
           trackMap.put("enabled", track.enabled());
           trackMap.put("id", track.id());
@@ -444,10 +524,10 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
         String tone = call.argument("tone");
         int duration = call.argument("duration");
         int gap = call.argument("gap");
-        PeerConnection peerConnection = getPeerConnection(peerConnectionId);
-        if (peerConnection != null) {
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco != null && pco.getPeerConnection() != null) {
           RtpSender audioSender = null;
-          for (RtpSender sender : peerConnection.getSenders()) {
+          for (RtpSender sender : pco.getRtpSenders()) {
 
             if (sender != null && sender.track() != null && sender.track().kind().equals("audio")) {
               audioSender = sender;
@@ -472,14 +552,20 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
       case "getStats": {
         String peerConnectionId = call.argument("peerConnectionId");
         String trackId = call.argument("trackId");
-        peerConnectionGetStats(trackId, peerConnectionId, result);
+        StatsEngine.Query query = StatsEngine.Query.fromArguments(
+            call.argument("types"), call.argument("members"), call.argument("delta"),
+            call.argument("format"));
+        peerConnectionGetStats(trackId, peerConnectionId, query, result);
         break;
       }
       case "createDataChannel": {
         String peerConnectionId = call.argument("peerConnectionId");
         String label = call.argument("label");
         Map<String, Object> dataChannelDict = call.argument("dataChannelDict");
-        createDataChannel(peerConnectionId, label, new ConstraintsMap(dataChannelDict), result);
+        // Native options that are not part of RTCDataChannelInit, e.g. batching.
+        Map<String, Object> options = call.argument("options");
+        createDataChannel(peerConnectionId, label, new ConstraintsMap(dataChannelDict),
+                options != null ? new ConstraintsMap(options) : null, result);
         break;
       }
       case "dataChannelSend": {
@@ -494,8 +580,18 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
             String data = call.argument("data");
             byteBuffer = ByteBuffer.wrap(data.getBytes(StandardCharsets.UTF_8));
         }
-        dataChannelSend(peerConnectionId, dataChannelId, byteBuffer, isBinary);
-        result.success(null);
+        dataChannelSend(peerConnectionId, dataChannelId, byteBuffer, isBinary, result);
+        break;
+      }
+      case "dataChannelGetQueuedAmount": {
+        String peerConnectionId = call.argument("peerConnectionId");
+        String dataChannelId = call.argument("dataChannelId");
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco == null || pco.getPeerConnection() == null) {
+          resultError("dataChannelGetQueuedAmount", "peerConnection is null", result);
+        } else {
+          pco.dataChannelGetQueuedAmount(dataChannelId, result);
+        }
         break;
       }
       case "dataChannelClose": {
@@ -505,6 +601,17 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
         result.success(null);
         break;
       }
+      case "dataChannelGetBatchStats": {
+        String peerConnectionId = call.argument("peerConnectionId");
+        String dataChannelId = call.argument("dataChannelId");
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco == null || pco.getPeerConnection() == null) {
+          resultError("dataChannelGetBatchStats", "peerConnection is null", result);
+        } else {
+          pco.dataChannelGetBatchStats(dataChannelId, result);
+        }
+        break;
+      }
       case "streamDispose": {
         String streamId = call.argument("streamId");
         streamDispose(streamId);
@@ -547,6 +654,40 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
         result.success(null);
         break;
       }
+      case "startStatsSampler": {
+        String peerConnectionId = call.argument("peerConnectionId");
+        Map<String, Object> options = call.argument("options");
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco == null || pco.getPeerConnection() == null) {
+          resultError("startStatsSampler", "peerConnection is null", result);
+          break;
+        }
+        pco.startStatsSampler(StatsSampler.Options.fromMap(options != null ? new ConstraintsMap(options) : null));
+        result.success(null);
+        break;
+      }
+      case "stopStatsSampler": {
+        String peerConnectionId = call.argument("peerConnectionId");
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco != null) {
+          pco.stopStatsSampler();
+        }
+        result.success(null);
+        break;
+      }
+      case "getStatsHistory": {
+        String peerConnectionId = call.argument("peerConnectionId");
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco == null) {
+          resultError("getStatsHistory", "peerConnection is null", result);
+          break;
+        }
+        ConstraintsArray samples = pco.getStatsHistory();
+        ConstraintsMap params = new ConstraintsMap();
+        params.putArray("samples", samples != null ? samples.toArrayList() : new ArrayList<>());
+        result.success(params.toMap());
+        break;
+      }
       case "restartIce": {
         String peerConnectionId = call.argument("peerConnectionId");
         restartIce(peerConnectionId);
@@ -751,8 +892,10 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
             audioChannel = AudioChannel.values()[(Integer) call.argument("audioChannel")];
           }
           Integer recorderId = call.argument("recorderId");
+          Map<String, Object> options = call.argument("options");
+          RecorderSettings settings = RecorderSettings.fromMap(options != null ? new ConstraintsMap(options) : null);
           if (videoTrack != null || audioChannel != null) {
-            getUserMediaImpl.startRecordingToFile(path, recorderId, videoTrack, audioChannel);
+            getUserMediaImpl.startRecordingToFile(path, recorderId, videoTrack, audioChannel, settings);
             result.success(null);
           } else {
             resultError("startRecordToFile", "No tracks", result);
@@ -766,6 +909,53 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
         getUserMediaImpl.stopRecording(recorderId);
         result.success(null);
         break;
+      case "getRecorderStats": {
+        Integer recorderId = call.argument("recorderId");
+        ConstraintsMap stats = getUserMediaImpl.getRecorderStats(recorderId);
+        if (stats != null) {
+          result.success(stats.toMap());
+        } else {
+          resultError("getRecorderStats", "Recorder not found", result);
+        }
+        break;
+      }
+      case "getMethodLatencies": {
+        result.success(dispatcher.getLatencies().toMap());
+        break;
+      }
+      case "resetMethodLatencies": {
+        dispatcher.resetLatencies();
+        result.success(null);
+        break;
+      }
+      case "getPluginMetrics": {
+        Boolean reset = call.argument("reset");
+        ConstraintsMap metrics = PluginMetrics.instance.snapshot();
+        if (reset != null && reset) {
+          PluginMetrics.instance.reset();
+        }
+        result.success(metrics.toMap());
+        break;
+      }
+      case "startPluginMetricsEvents": {
+        Integer intervalMs = call.argument("intervalMs");
+        Boolean reset = call.argument("reset");
+        stopPluginMetricsEvents();
+        metricsIntervalMs = Math.max(100, intervalMs != null ? intervalMs : 5000);
+        metricsResetOnSend = reset != null && reset;
+        metricsHandler.postDelayed(metricsRunnable, metricsIntervalMs);
+        result.success(null);
+        break;
+      }
+      case "stopPluginMetricsEvents": {
+        stopPluginMetricsEvents();
+        result.success(null);
+        break;
+      }
+      case "getCapturerPoolStats": {
+        result.success(getUserMediaImpl.capturerPool.getStats().toMap());
+        break;
+      }
       case "captureFrame": {
         String path = call.argument("path");
         String videoTrackId = call.argument("trackId");
@@ -773,7 +963,11 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
         if (videoTrackId != null) {
           MediaStreamTrack track = getTrackForId(videoTrackId, peerConnectionId);
           if (track instanceof VideoTrack) {
-            new FrameCapturer((VideoTrack) track, new File(path), result);
+            FrameSnapshotRenderer.Options options = FrameSnapshotRenderer.Options.from(
+                    call.argument("format"), call.argument("quality"),
+                    call.argument("maxWidth"), call.argument("maxHeight"));
+            // Without a path the encoded image is returned as bytes.
+            new FrameCapturer((VideoTrack) track, path != null ? new File(path) : null, options, result);
           } else {
             resultError("captureFrame", "It's not video track", result);
           }
@@ -782,6 +976,47 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
         }
         break;
       }
+      case "startFrameCapture": {
+        String videoTrackId = call.argument("trackId");
+        String peerConnectionId = call.argument("peerConnectionId");
+        MediaStreamTrack track = videoTrackId != null ? getTrackForId(videoTrackId, peerConnectionId) : null;
+        if (!(track instanceof VideoTrack)) {
+          resultError("startFrameCapture", "It's not video track", result);
+          break;
+        }
+        Integer intervalMs = call.argument("intervalMs");
+        Integer everyNthFrame = call.argument("everyNthFrame");
+        FrameSnapshotRenderer.Options options = FrameSnapshotRenderer.Options.from(
+                call.argument("format"), call.argument("quality"),
+                call.argument("maxWidth"), call.argument("maxHeight"));
+        FrameCaptureSession session;
+        synchronized (frameCaptureSessions) {
+          session = new FrameCaptureSession(messenger, nextFrameCaptureSessionId++,
+                  (VideoTrack) track, intervalMs != null ? intervalMs : 0,
+                  everyNthFrame != null ? everyNthFrame : 0, options);
+          frameCaptureSessions.put(session.getId(), session);
+        }
+        session.start();
+        ConstraintsMap params = new ConstraintsMap();
+        params.putInt("sessionId", session.getId());
+        result.success(params.toMap());
+        break;
+      }
+      case "stopFrameCapture": {
+        int sessionId = call.argument("sessionId");
+        FrameCaptureSession session;
+        synchronized (frameCaptureSessions) {
+          session = frameCaptureSessions.get(sessionId);
+          frameCaptureSessions.remove(sessionId);
+        }
+        if (session == null) {
+          resultError("stopFrameCapture", "session not found: " + sessionId, result);
+          break;
+        }
+        session.stop();
+        result.success(session.getStats().toMap());
+        break;
+      }
       case "getLocalDescription": {
         String peerConnectionId = call.argument("peerConnectionId");
         PeerConnection peerConnection = getPeerConnection(peerConnectionId);
@@ -1340,6 +1575,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     return conf;
   }
 
+  @Nullable
   public String peerConnectionInit(ConstraintsMap configuration, ConstraintsMap constraints) {
     String peerConnectionId = getNextStreamUUID();
     RTCConfiguration conf = parseRTCConfiguration(configuration);
@@ -1350,8 +1586,15 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
             parseMediaConstraints(constraints),
             observer);
     observer.setPeerConnection(peerConnection);
-    mPeerConnectionObservers.put(peerConnectionId, observer);
-    return peerConnectionId;
+    synchronized (mPeerConnectionObservers) {
+      if (!disposed) {
+        mPeerConnectionObservers.put(peerConnectionId, observer);
+        return peerConnectionId;
+      }
+    }
+    // dispose() ran while the connection was created, it would never be closed otherwise.
+    peerConnectionDispose(observer);
+    return null;
   }
 
   @Override
@@ -1362,22 +1605,65 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
 
   @Override
   public boolean putLocalTrack(String trackId, LocalTrack track) {
-    localTracks.put(trackId, track);
+    synchronized (localTracks) {
+      LocalTrack previous = localTracks.put(trackId, track);
+      if (previous instanceof LocalAudioTrack) {
+        localAudioTracks.remove((LocalAudioTrack) previous);
+      }
+      if (track instanceof LocalAudioTrack) {
+        localAudioTracks.add((LocalAudioTrack) track);
+      }
+    }
     return true;
   }
 
+  @Nullable
+  private LocalTrack removeLocalTrack(String trackId) {
+    synchronized (localTracks) {
+      LocalTrack track = localTracks.remove(trackId);
+      if (track instanceof LocalAudioTrack) {
+        localAudioTracks.remove((LocalAudioTrack) track);
+      }
+      return track;
+    }
+  }
+
   @Override
   public LocalTrack getLocalTrack(String trackId) {
     return localTracks.get(trackId);
   }
 
   public MediaStreamTrack getRemoteTrack(String trackId) {
-    for (Entry<String, PeerConnectionObserver> entry : mPeerConnectionObservers.entrySet()) {
-      PeerConnectionObserver pco = entry.getValue();
-      MediaStreamTrack track = pco.remoteTracks.get(trackId);
-      if (track == null) {
-        track = pco.getTransceiversTrack(trackId);
+    return findRemoteTrack(trackId, null);
+  }
+
+  /**
+   * Looks the track up at the connection the index knows as its owner, then at the receivers
+   * of the other connections for tracks that were never announced by an event.
+   *
+   * Receivers are only refreshed for a call naming {@code peerConnectionId}, which runs on the
+   * queue of that connection: a refresh disposes the RTP objects of the previous one.
+   */
+  @Nullable
+  private MediaStreamTrack findRemoteTrack(String trackId, @Nullable String peerConnectionId) {
+    if (peerConnectionId != null) {
+      PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+      return pco != null ? pco.getRemoteTrack(trackId) : null;
+    }
+    String ownerId = idIndex.getTrackOwner(trackId);
+    if (ownerId != null) {
+      PeerConnectionObserver owner = mPeerConnectionObservers.get(ownerId);
+      MediaStreamTrack track = owner != null ? owner.getKnownRemoteTrack(trackId) : null;
+      if (track != null) {
+        return track;
       }
+    }
+    List<PeerConnectionObserver> observers;
+    synchronized (mPeerConnectionObservers) {
+      observers = new ArrayList<>(mPeerConnectionObservers.values());
+    }
+    for (PeerConnectionObserver pco : observers) {
+      MediaStreamTrack track = pco.getKnownRemoteTrack(trackId);
       if (track != null) {
         return track;
       }
@@ -1387,24 +1673,12 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
 
   @Override
   public String getNextStreamUUID() {
-    String uuid;
-
-    do {
-      uuid = UUID.randomUUID().toString();
-    } while (getStreamForId(uuid, "") != null);
-
-    return uuid;
+    return IdAllocator.nextId();
   }
 
   @Override
   public String getNextTrackUUID() {
-    String uuid;
-
-    do {
-      uuid = UUID.randomUUID().toString();
-    } while (getTrackForId(uuid, null) != null);
-
-    return uuid;
+    return IdAllocator.nextId();
   }
 
   @Override
@@ -1417,6 +1691,11 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     return mPeerConnectionObservers.get(peerConnectionId);
   }
 
+  @Override
+  public IdIndex getIdIndex() {
+    return idIndex;
+  }
+
   @Nullable
   @Override
   public Activity getActivity() {
@@ -1436,20 +1715,12 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
 
   MediaStream getStreamForId(String id, String peerConnectionId) {
     MediaStream stream = null;
-    if (peerConnectionId.length() > 0) {
-      PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+    String ownerId = peerConnectionId.length() > 0 ? peerConnectionId : idIndex.getStreamOwner(id);
+    if (ownerId != null) {
+      PeerConnectionObserver pco = mPeerConnectionObservers.get(ownerId);
       if (pco != null) {
         stream = pco.remoteStreams.get(id);
       }
-    } else {
-      for (Entry<String, PeerConnectionObserver> entry : mPeerConnectionObservers
-              .entrySet()) {
-        PeerConnectionObserver pco = entry.getValue();
-        stream = pco.remoteStreams.get(id);
-        if (stream != null) {
-          break;
-        }
-      }
     }
     if (stream == null) {
       stream = localStreams.get(id);
@@ -1460,28 +1731,10 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
 
   public MediaStreamTrack getTrackForId(String trackId, String peerConnectionId) {
     LocalTrack localTrack = localTracks.get(trackId);
-    MediaStreamTrack mediaStreamTrack = null;
-    if (localTrack == null) {
-      for (Entry<String, PeerConnectionObserver> entry : mPeerConnectionObservers.entrySet()) {
-        if (peerConnectionId != null && entry.getKey().compareTo(peerConnectionId) != 0)
-          continue;
-
-        PeerConnectionObserver pco = entry.getValue();
-        mediaStreamTrack = pco.remoteTracks.get(trackId);
-
-        if (mediaStreamTrack == null) {
-          mediaStreamTrack = pco.getTransceiversTrack(trackId);
-        }
-
-        if (mediaStreamTrack != null) {
-          break;
-        }
-      }
-    } else {
-      mediaStreamTrack = localTrack.track;
+    if (localTrack != null) {
+      return localTrack.track;
     }
-
-    return mediaStreamTrack;
+    return findRemoteTrack(trackId, peerConnectionId);
   }
 
 
@@ -1519,9 +1772,9 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
 
   public void getSources(Result result) {
     ConstraintsArray array = new ConstraintsArray();
-    String[] names = new String[Camera.getNumberOfCameras()];
+    int cameraCount = CameraCapabilityIndex.instance.getCamera1Count();
 
-    for (int i = 0; i < Camera.getNumberOfCameras(); ++i) {
+    for (int i = 0; i < cameraCount; ++i) {
       ConstraintsMap info = getCameraInfo(i);
       if (info != null) {
         array.pushMap(info);
@@ -1595,7 +1848,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     if (track instanceof LocalVideoTrack) {
       getUserMediaImpl.removeVideoCapturer(trackId);
     }
-    localTracks.remove(trackId);
+    removeLocalTrack(trackId);
   }
 
   public void mediaStreamTrackSetEnabled(final String id, final boolean enabled, String peerConnectionId) {
@@ -1611,7 +1864,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
   }
 
   public void mediaStreamTrackSetVolume(final String id, final double volume, String peerConnectionId) {
-    MediaStreamTrack track = getTrackForId(id, null);
+    MediaStreamTrack track = getTrackForId(id, peerConnectionId);
     if (track instanceof AudioTrack) {
       Log.d(TAG, "setVolume(): " + id + "," + volume);
       try {
@@ -1682,7 +1935,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
       return;
     }
     track.setEnabled(false); // should we do this?
-    localTracks.remove(_trackId);
+    removeLocalTrack(_trackId);
     if (track.kind().equals("audio")) {
       stream.removeTrack((AudioTrack) track.track);
     } else if (track.kind().equals("video")) {
@@ -1692,12 +1945,8 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
   }
 
   public ConstraintsMap getCameraInfo(int index) {
-    CameraInfo info = new CameraInfo();
-
-    try {
-      Camera.getCameraInfo(index, info);
-    } catch (Exception e) {
-      Logging.e("CameraEnumerationAndroid", "getCameraInfo failed on index " + index, e);
+    CameraInfo info = CameraCapabilityIndex.instance.getCamera1Info(index);
+    if (info == null) {
       return null;
     }
     ConstraintsMap params = new ConstraintsMap();
@@ -1915,14 +2164,18 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
   }
 
   public void peerConnectionGetStats(String trackId, String id, final Result result) {
+    peerConnectionGetStats(trackId, id, StatsEngine.Query.ALL, result);
+  }
+
+  void peerConnectionGetStats(String trackId, String id, StatsEngine.Query query, final Result result) {
     PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
     if (pco == null || pco.getPeerConnection() == null) {
       resultError("peerConnectionGetStats", "peerConnection is null", result);
     } else {
       if(trackId == null || trackId.isEmpty()) {
-        pco.getStats(result);
+        pco.getStats(query, result);
       } else {
-        pco.getStatsForTrack(trackId, result);
+        pco.getStatsForTrack(trackId, query, result);
       }
     }
   }
@@ -1984,13 +2237,13 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
   public void streamDispose(final MediaStream stream) {
     List<VideoTrack> videoTracks = stream.videoTracks;
     for (VideoTrack track : videoTracks) {
-      localTracks.remove(track.id());
+      removeLocalTrack(track.id());
       getUserMediaImpl.removeVideoCapturer(track.id());
       stream.removeTrack(track);
     }
     List<AudioTrack> audioTracks = stream.audioTracks;
     for (AudioTrack track : audioTracks) {
-      localTracks.remove(track.id());
+      removeLocalTrack(track.id());
       stream.removeTrack(track);
     }
   }
@@ -2014,7 +2267,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
   }
 
   public void createDataChannel(final String peerConnectionId, String label, ConstraintsMap config,
-                                Result result) {
+                                @Nullable ConstraintsMap options, Result result) {
     // Forward to PeerConnectionObserver which deals with DataChannels
     // because DataChannel is owned by PeerConnection.
     PeerConnectionObserver pco
@@ -2022,20 +2275,20 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     if (pco == null || pco.getPeerConnection() == null) {
       Log.d(TAG, "createDataChannel() peerConnection is null");
     } else {
-      pco.createDataChannel(label, config, result);
+      pco.createDataChannel(label, config, options, result);
     }
   }
 
   public void dataChannelSend(String peerConnectionId, String dataChannelId, ByteBuffer bytebuffer,
-                              Boolean isBinary) {
+                              Boolean isBinary, Result result) {
     // Forward to PeerConnectionObserver which deals with DataChannels
     // because DataChannel is owned by PeerConnection.
     PeerConnectionObserver pco
             = mPeerConnectionObservers.get(peerConnectionId);
     if (pco == null || pco.getPeerConnection() == null) {
-      Log.d(TAG, "dataChannelSend() peerConnection is null");
+      resultError("dataChannelSend", "peerConnection is null", result);
     } else {
-      pco.dataChannelSend(dataChannelId, bytebuffer, isBinary);
+      pco.dataChannelSend(dataChannelId, bytebuffer, isBinary, result);
     }
   }
 
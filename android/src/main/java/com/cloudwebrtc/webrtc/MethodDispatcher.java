@@ -0,0 +1,269 @@
+package com.cloudwebrtc.webrtc;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+import com.cloudwebrtc.webrtc.utils.PluginMetrics;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/**
+ * Decides on which thread a method call of {@link MethodCallHandlerImpl} runs.
+ *
+ * <ul>
+ *   <li>{@link Category#MAIN}: everything touching textures, the activity, audio routing,
+ *   capturers or data channels runs inline on the main thread as before.</li>
+ *   <li>{@link Category#SIGNALING}: calls naming an existing peer connection, most of which block
+ *   on the WebRTC signaling thread, run on the worker pool through one serial queue per peer
+ *   connection, so the calls of a connection keep their order. This includes the track, capture
+ *   and frame cryptor calls that look up a sender or receiver: {@code getSenders()},
+ *   {@code getReceivers()} and {@code getTransceivers()} dispose the wrappers they returned
+ *   before, so RTP objects of a connection are only used from its queue.</li>
+ *   <li>{@link Category#WORKER}: slow calls without a peer connection run on the worker pool.</li>
+ * </ul>
+ *
+ * Calls off the main thread complete their {@link Result} through the
+ * {@link com.cloudwebrtc.webrtc.utils.AnyThreadResult} the handler already uses. Queue delay and
+ * run time of every method are recorded in {@link PluginMetrics} histograms.
+ */
+class MethodDispatcher {
+    private static final String TAG = FlutterWebRTCPlugin.TAG;
+
+    enum Category {
+        MAIN,
+        SIGNALING,
+        WORKER
+    }
+
+    // Calls naming a peer connection that stay on main: the data channel calls keep their order
+    // with the binary data channel messages, which are handled on main, and touch no RTP objects.
+    private static final Set<String> MAIN_METHODS = new HashSet<>(Arrays.asList(
+            "createDataChannel",
+            "dataChannelSend",
+            "dataChannelClose",
+            "dataChannelGetQueuedAmount",
+            "dataChannelGetBatchStats"));
+
+    private static final Set<String> WORKER_METHODS = new HashSet<>(Arrays.asList(
+            "createPeerConnection",
+            "getSources",
+            "getRtpSenderCapabilities",
+            "getRtpReceiverCapabilities"));
+
+    /** Runs tasks one after the other on the worker pool. */
+    private final class SerialQueue {
+        final String key;
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        boolean active = false;
+
+        SerialQueue(String key) {
+            this.key = key;
+        }
+
+        // All methods are called with the dispatcher locked.
+        void add(Runnable task) {
+            tasks.add(task);
+            if (!active) {
+                scheduleNext();
+            }
+        }
+
+        void scheduleNext() {
+            final Runnable task = tasks.poll();
+            if (task == null) {
+                active = false;
+                queues.remove(key);
+                return;
+            }
+            active = true;
+            try {
+                workers.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        synchronized (MethodDispatcher.this) {
+                            scheduleNext();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Shut down, drop what is left.
+                pending.add(-(tasks.size() + 1));
+                tasks.clear();
+                active = false;
+                queues.remove(key);
+            }
+        }
+    }
+
+    /** Registry histograms of one method. */
+    private static final class MethodLatency {
+        final PluginMetrics.Histogram queueUs;
+        final PluginMetrics.Histogram runUs;
+
+        MethodLatency(String method) {
+            queueUs = PluginMetrics.instance.histogram("method." + method + ".queueUs");
+            runUs = PluginMetrics.instance.histogram("method." + method + ".runUs");
+        }
+
+        ConstraintsMap toMap() {
+            ConstraintsMap params = new ConstraintsMap();
+            params.putLong("count", runUs.getCount());
+            params.putLong("meanUs", runUs.getMean());
+            params.putLong("p50Us", runUs.getQuantile(0.5));
+            params.putLong("p90Us", runUs.getQuantile(0.9));
+            params.putLong("p99Us", runUs.getQuantile(0.99));
+            params.putLong("maxUs", runUs.getMax());
+            params.putLong("meanQueueUs", queueUs.getMean());
+            params.putLong("maxQueueUs", queueUs.getMax());
+            return params;
+        }
+    }
+
+    private final ExecutorService workers;
+    // Guarded by this.
+    private final Map<String, SerialQueue> queues = new HashMap<>();
+    private final Map<String, MethodLatency> latencies = new HashMap<>();
+    private final PluginMetrics.Counter calls = PluginMetrics.instance.counter("method.calls");
+    private final PluginMetrics.Counter failures = PluginMetrics.instance.counter("method.failures");
+    private final PluginMetrics.Gauge pending = PluginMetrics.instance.gauge("method.pending");
+
+    MethodDispatcher() {
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        final AtomicInteger threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(threads,
+                r -> new Thread(r, "FlutterWebRTC-worker-" + threadCount.incrementAndGet()));
+    }
+
+    /**
+     * @param peerConnectionId id of an existing peer connection named by the call, null otherwise.
+     *     Calls naming no connection only report an error, they stay on main.
+     */
+    static Category categoryOf(String method, @Nullable String peerConnectionId) {
+        if (peerConnectionId != null && !MAIN_METHODS.contains(method)) {
+            return Category.SIGNALING;
+        }
+        return WORKER_METHODS.contains(method) ? Category.WORKER : Category.MAIN;
+    }
+
+    /**
+     * Runs {@code call} on the thread of its category. Called on the main thread.
+     *
+     * @param result completed with an error if {@code call} throws off the main thread.
+     */
+    void dispatch(String method, @Nullable String peerConnectionId, Result result, Runnable call) {
+        final long enqueuedNs = SystemClock.elapsedRealtimeNanos();
+        calls.increment();
+        Category category = categoryOf(method, peerConnectionId);
+        if (category == Category.MAIN) {
+            try {
+                call.run();
+            } finally {
+                record(method, enqueuedNs, enqueuedNs);
+            }
+            return;
+        }
+        if (workers.isShutdown()) {
+            result.error(method, method + "(): plugin was disposed", null);
+            return;
+        }
+        Runnable task = () -> {
+            long startNs = SystemClock.elapsedRealtimeNanos();
+            pending.add(-1);
+            try {
+                call.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, method + "() failed", e);
+                failures.increment();
+                result.error(method, method + "(): " + e.getMessage(), null);
+            } finally {
+                record(method, enqueuedNs, startNs);
+            }
+        };
+        pending.add(1);
+        try {
+            if (category == Category.SIGNALING) {
+                synchronized (this) {
+                    SerialQueue queue = queues.get(peerConnectionId);
+                    if (queue == null) {
+                        queue = new SerialQueue(peerConnectionId);
+                        queues.put(peerConnectionId, queue);
+                    }
+                    queue.add(task);
+                }
+            } else {
+                workers.execute(task);
+            }
+        } catch (RejectedExecutionException e) {
+            pending.add(-1);
+            result.error(method, method + "(): plugin was disposed", null);
+        }
+    }
+
+    private void record(String method, long enqueuedNs, long startNs) {
+        long endNs = SystemClock.elapsedRealtimeNanos();
+        MethodLatency latency;
+        synchronized (this) {
+            latency = latencies.get(method);
+            if (latency == null) {
+                latency = new MethodLatency(method);
+                latencies.put(method, latency);
+            }
+        }
+        latency.queueUs.record((startNs - enqueuedNs) / 1000);
+        latency.runUs.record((endNs - startNs) / 1000);
+    }
+
+    /** Histogram summary per method name. */
+    synchronized ConstraintsMap getLatencies() {
+        ConstraintsMap params = new ConstraintsMap();
+        for (Map.Entry<String, MethodLatency> entry : latencies.entrySet()) {
+            params.putMap(entry.getKey(), entry.getValue().toMap().toMap());
+        }
+        return params;
+    }
+
+    synchronized void resetLatencies() {
+        for (MethodLatency latency : latencies.values()) {
+            latency.queueUs.reset();
+            latency.runUs.reset();
+        }
+    }
+
+    /**
+     * Drops queued calls, interrupts running ones and waits up to {@code timeoutMs} for them to
+     * return, so the caller can tear down what they use. Accepts no new calls afterwards.
+     *
+     * @return false if a call was still running after the timeout.
+     */
+    boolean shutdownAndWait(long timeoutMs) {
+        synchronized (this) {
+            for (SerialQueue queue : queues.values()) {
+                pending.add(-queue.tasks.size());
+                queue.tasks.clear();
+            }
+        }
+        pending.add(-workers.shutdownNow().size());
+        try {
+            return workers.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -8,6 +8,8 @@ import com.cloudwebrtc.webrtc.audio.AudioSwitchManager;
 import com.cloudwebrtc.webrtc.utils.AnyThreadSink;
 import com.cloudwebrtc.webrtc.utils.ConstraintsArray;
 import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+import com.cloudwebrtc.webrtc.utils.IdAllocator;
+import com.cloudwebrtc.webrtc.utils.PluginMetrics;
 import com.cloudwebrtc.webrtc.utils.Utils;
 
 import io.flutter.plugin.common.BinaryMessenger;
@@ -15,7 +17,6 @@ import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodChannel.Result;
 
 import java.lang.reflect.Field;
-import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -23,9 +24,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
 
 import org.webrtc.AudioTrack;
 import org.webrtc.CandidatePairChangeEvent;
@@ -35,7 +34,6 @@ import org.webrtc.IceCandidate;
 import org.webrtc.MediaStream;
 import org.webrtc.MediaStreamTrack;
 import org.webrtc.PeerConnection;
-import org.webrtc.RTCStats;
 import org.webrtc.RTCStatsReport;
 import org.webrtc.RtpCapabilities;
 import org.webrtc.RtpParameters;
@@ -47,16 +45,19 @@ import org.webrtc.VideoTrack;
 class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.StreamHandler {
   private final static String TAG = FlutterWebRTCPlugin.TAG;
   private final Map<String, DataChannel> dataChannels = new HashMap<>();
+  private final Map<String, DataChannelObserver> dataChannelObservers = new HashMap<>();
   private final BinaryMessenger messenger;
   private final String id;
   private PeerConnection peerConnection;
   private final PeerConnection.RTCConfiguration configuration;
   final Map<String, MediaStream> remoteStreams = new HashMap<>();
   final Map<String, MediaStreamTrack> remoteTracks = new HashMap<>();
-  final Map<String, RtpTransceiver> transceivers = new HashMap<>();
   private final StateProvider stateProvider;
   private final EventChannel eventChannel;
   private EventChannel.EventSink eventSink;
+  private final StatsEngine.Session statsSession = new StatsEngine.Session();
+  @Nullable private StatsSampler statsSampler;
+  private RtpObjectIndex rtpIndex;
 
   PeerConnectionObserver(PeerConnection.RTCConfiguration configuration, StateProvider stateProvider, BinaryMessenger messenger, String id) {
     this.configuration = configuration;
@@ -90,6 +91,9 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
 
   void setPeerConnection(PeerConnection peerConnection) {
     this.peerConnection = peerConnection;
+    rtpIndex = new RtpObjectIndex(peerConnection,
+        configuration.sdpSemantics == PeerConnection.SdpSemantics.UNIFIED_PLAN,
+        stateProvider::getNextStreamUUID);
   }
 
   void restartIce() {
@@ -97,19 +101,26 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   }
 
   void close() {
+    stopStatsSampler();
     peerConnection.close();
     remoteStreams.clear();
     remoteTracks.clear();
     dataChannels.clear();
+    for (DataChannelObserver observer : dataChannelObservers.values()) {
+      observer.dispose();
+    }
+    dataChannelObservers.clear();
   }
 
   void dispose() {
     this.close();
+    rtpIndex.clear();
+    stateProvider.getIdIndex().removeOwner(id);
     peerConnection.dispose();
     eventChannel.setStreamHandler(null);
   }
 
-  void createDataChannel(String label, ConstraintsMap config, Result result) {
+  void createDataChannel(String label, ConstraintsMap config, @Nullable ConstraintsMap options, Result result) {
     DataChannel.Init init = new DataChannel.Init();
     if (config != null) {
       if (config.hasKey("id")) {
@@ -136,7 +147,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     String flutterId = getNextDataChannelUUID();
     if (dataChannel != null) {
       dataChannels.put(flutterId, dataChannel);
-      registerDataChannelObserver(flutterId, dataChannel);
+      registerDataChannelObserver(flutterId, dataChannel, options);
 
       ConstraintsMap params = new ConstraintsMap();
       params.putInt("id", dataChannel.id());
@@ -153,122 +164,68 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     if (dataChannel != null) {
       dataChannel.close();
       dataChannels.remove(dataChannelId);
+      DataChannelObserver observer = dataChannelObservers.remove(dataChannelId);
+      if (observer != null) {
+        observer.dispose();
+      }
     } else {
       Log.d(TAG, "dataChannelClose() dataChannel is null");
     }
   }
 
-  void dataChannelSend(String dataChannelId, ByteBuffer byteBuffer, Boolean isBinary) {
-    DataChannel dataChannel = dataChannels.get(dataChannelId);
-    if (dataChannel != null) {
-      DataChannel.Buffer buffer = new DataChannel.Buffer(byteBuffer, isBinary);
-      dataChannel.send(buffer);
+  void dataChannelSend(String dataChannelId, ByteBuffer byteBuffer, Boolean isBinary, Result result) {
+    DataChannelObserver observer = dataChannelObservers.get(dataChannelId);
+    if (observer != null) {
+      observer.getSendQueue().send(byteBuffer, isBinary, result);
     } else {
-      Log.d(TAG, "dataChannelSend() dataChannel is null");
+      resultError("dataChannelSend", "dataChannel is null", result);
     }
   }
 
-  RtpTransceiver getRtpTransceiverById(String id) {
-    RtpTransceiver transceiver = transceivers.get(id);
-    if (null == transceiver) {
-      List<RtpTransceiver> transceivers = peerConnection.getTransceivers();
-      for (RtpTransceiver t : transceivers) {
-        if (id.equals(t.getMid())) {
-          transceiver = t;
-        }
-      }
+  void dataChannelGetQueuedAmount(String dataChannelId, Result result) {
+    DataChannelObserver observer = dataChannelObservers.get(dataChannelId);
+    if (observer == null) {
+      resultError("dataChannelGetQueuedAmount", "dataChannel is null", result);
+      return;
     }
-    return transceiver;
+    ConstraintsMap params = new ConstraintsMap();
+    params.putLong("bufferedAmount", dataChannels.get(dataChannelId).bufferedAmount());
+    params.putLong("queuedAmount", observer.getSendQueue().getQueuedBytes());
+    params.putInt("queuedChunks", observer.getSendQueue().getQueuedChunks());
+    result.success(params.toMap());
   }
 
-  RtpSender getRtpSenderById(String id) {
-    List<RtpSender> senders = peerConnection.getSenders();
-    for (RtpSender sender : senders) {
-      if (id.equals(sender.id())) {
-        return sender;
-      }
+  void dataChannelGetBatchStats(String dataChannelId, Result result) {
+    DataChannelObserver observer = dataChannelObservers.get(dataChannelId);
+    if (observer == null) {
+      resultError("dataChannelGetBatchStats", "dataChannel is null", result);
+      return;
     }
-    return null;
+    ConstraintsMap stats = observer.getBatchStats();
+    result.success(stats != null ? stats.toMap() : null);
   }
 
-  RtpReceiver getRtpReceiverById(String id) {
-    List<RtpReceiver> receivers = peerConnection.getReceivers();
-    for (RtpReceiver receiver : receivers) {
-      if (id.equals(receiver.id())) {
-        return receiver;
-      }
-    }
-    return null;
+  RtpTransceiver getRtpTransceiverById(String id) {
+    return rtpIndex.getTransceiver(id);
   }
 
-  void handleStatsReport(RTCStatsReport rtcStatsReport, Result result) {
-      Map<String, RTCStats>    reports = rtcStatsReport.getStatsMap();
-      ConstraintsMap params = new ConstraintsMap();
-      ConstraintsArray stats = new ConstraintsArray();
-
-      for (RTCStats report : reports.values()) {
-          ConstraintsMap report_map = new ConstraintsMap();
-
-          report_map.putString("id", report.getId());
-          report_map.putString("type", report.getType());
-          report_map.putDouble("timestamp", report.getTimestampUs());
-
-          Map<String, Object> values = report.getMembers();
-          ConstraintsMap v_map = new ConstraintsMap();
-          for (String key : values.keySet()) {
-              Object v = values.get(key);
-              if(v instanceof String) {
-                  v_map.putString(key, (String)v);
-              } else if(v instanceof String[]) {
-                  ConstraintsArray arr = new ConstraintsArray();
-                  for(String s : (String[])v) {
-                      arr.pushString(s);
-                  }
-                  v_map.putArray(key, arr.toArrayList());
-              } else if(v instanceof Integer) {
-                  v_map.putInt(key, (Integer)v);
-              } else if(v instanceof Long) {
-                  v_map.putLong(key, (Long)v);
-              } else if(v instanceof Double) {
-                  v_map.putDouble(key, (Double)v);
-              } else if(v instanceof Boolean) {
-                  v_map.putBoolean(key, (Boolean)v);
-              } else if(v instanceof BigInteger){
-                  v_map.putLong(key, ((BigInteger)v).longValue());
-              }  else if(v instanceof LinkedHashMap) {
-                    ConstraintsMap m = new ConstraintsMap();
-                    for(Map.Entry<String, Object> entry : ((LinkedHashMap<String, Object>)v).entrySet()) {
-                        Object value = entry.getValue();
-                        if(value instanceof String) {
-                            m.putString(entry.getKey(), (String)value);
-                        } else if(value instanceof Integer) {
-                            m.putInt(entry.getKey(), (Integer)value);
-                        } else if(value instanceof Long) {
-                            m.putLong(entry.getKey(), (Long)value);
-                        } else if(value instanceof Double) {
-                            m.putDouble(entry.getKey(), (Double)value);
-                        } else if(value instanceof Boolean) {
-                            m.putBoolean(entry.getKey(), (Boolean)value);
-                        } else if(value instanceof BigInteger) {
-                            m.putLong(entry.getKey(), ((BigInteger)value).longValue());
-                        } else {
-                            Log.d(TAG, "getStats() unknown type: " + value.getClass().getName() + " for [" + entry.getKey() + "] value: " + value);
-                        }
-                    }
-                    v_map.putMap(key, m.toMap());
-              } else {
-                  Log.d(TAG, "getStats() unknown type: " + v.getClass().getName() + " for [" + key + "] value: " + v);
-              }
-          }
-      report_map.putMap("values", v_map.toMap());
-      stats.pushMap(report_map);
-    }
+  RtpSender getRtpSenderById(String id) {
+    return rtpIndex.getSender(id);
+  }
 
-    params.putArray("stats", stats.toArrayList());
-    result.success(params.toMap());
+  List<RtpSender> getRtpSenders() {
+    return rtpIndex.getSenders();
   }
 
-  void getStatsForTrack(String trackId, Result result) {
+  RtpReceiver getRtpReceiverById(String id) {
+    return rtpIndex.getReceiver(id);
+  }
+
+  void handleStatsReport(RTCStatsReport rtcStatsReport, StatsEngine.Query query, String target, Result result) {
+    StatsEngine.getInstance().convert(rtcStatsReport, query, statsSession, target, result);
+  }
+
+  void getStatsForTrack(String trackId, StatsEngine.Query query, Result result) {
     if (trackId == null || trackId.isEmpty()) {
       resultError("peerConnectionGetStats", "MediaStreamTrack not found for id: " + trackId, result);
       return;
@@ -276,30 +233,53 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
 
     RtpSender sender = null;
     RtpReceiver receiver = null;
-    for (RtpSender s : peerConnection.getSenders()) {
+    for (RtpSender s : rtpIndex.getSenders()) {
       if (s.track() != null && trackId.equals(s.track().id())) {
         sender = s;
         break;
       }
     }
-    for (RtpReceiver r : peerConnection.getReceivers()) {
+    for (RtpReceiver r : rtpIndex.getReceivers()) {
       if (r.track() != null && trackId.equals(r.track().id())) {
         receiver = r;
         break;
       }
     }
     if (sender != null) {
-      peerConnection.getStats(sender, rtcStatsReport -> handleStatsReport(rtcStatsReport, result));
+      peerConnection.getStats(sender, rtcStatsReport -> handleStatsReport(rtcStatsReport, query, trackId, result));
     } else if (receiver != null) {
-      peerConnection.getStats(receiver, rtcStatsReport -> handleStatsReport(rtcStatsReport, result));
+      peerConnection.getStats(receiver, rtcStatsReport -> handleStatsReport(rtcStatsReport, query, trackId, result));
     } else {
       resultError("peerConnectionGetStats", "MediaStreamTrack not found for id: " + trackId, result);
     }
   }
 
-  void getStats(final Result result) {
+  void getStats(StatsEngine.Query query, final Result result) {
     peerConnection.getStats(
-        rtcStatsReport -> handleStatsReport(rtcStatsReport, result));
+        rtcStatsReport -> handleStatsReport(rtcStatsReport, query, "", result));
+  }
+
+  /** Starts pushing {@code onStatsSample} events, replacing a running sampler. */
+  void startStatsSampler(StatsSampler.Options options) {
+    stopStatsSampler();
+    statsSampler = new StatsSampler(peerConnection, options, sample -> {
+      ConstraintsMap params = sample.toMap();
+      params.putString("event", "onStatsSample");
+      sendEvent(params);
+    });
+    statsSampler.start();
+  }
+
+  void stopStatsSampler() {
+    if (statsSampler != null) {
+      statsSampler.stop();
+      statsSampler = null;
+    }
+  }
+
+  @Nullable
+  ConstraintsArray getStatsHistory() {
+    return statsSampler != null ? statsSampler.getHistory() : null;
   }
 
   @Override
@@ -388,6 +368,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     if (streamUID == null) {
       streamUID = stateProvider.getNextStreamUUID();
       remoteStreams.put(streamId, mediaStream);
+      stateProvider.getIdIndex().putStream(streamId, id);
     }
 
     ConstraintsMap params = new ConstraintsMap();
@@ -403,6 +384,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
       String trackId = track.id();
 
       remoteTracks.put(trackId, track);
+      stateProvider.getIdIndex().putTrack(trackId, id);
 
       ConstraintsMap trackInfo = new ConstraintsMap();
       trackInfo.putString("id", trackId);
@@ -418,6 +400,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
       String trackId = track.id();
 
       remoteTracks.put(trackId, track);
+      stateProvider.getIdIndex().putTrack(trackId, id);
 
       ConstraintsMap trackInfo = new ConstraintsMap();
       trackInfo.putString("id", trackId);
@@ -435,8 +418,12 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   }
 
   void sendEvent(ConstraintsMap event) {
+    // Counted per event name, the names are a fixed set.
+    PluginMetrics.instance.counter("pc.event." + event.getString("event")).increment();
     if (eventSink != null) {
       eventSink.success(event.toMap());
+    } else {
+      PluginMetrics.instance.counter("pc.event.dropped").increment();
     }
   }
 
@@ -447,9 +434,11 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
 
     for (VideoTrack track : mediaStream.videoTracks) {
       this.remoteTracks.remove(track.id());
+      stateProvider.getIdIndex().removeTrack(track.id());
     }
     for (AudioTrack track : mediaStream.audioTracks) {
       this.remoteTracks.remove(track.id());
+      stateProvider.getIdIndex().removeTrack(track.id());
     }
 
     ConstraintsMap params = new ConstraintsMap();
@@ -465,6 +454,8 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   @Override
   public void onAddTrack(RtpReceiver receiver, MediaStream[] mediaStreams) {
     Log.d(TAG, "onAddTrack");
+    rtpIndex.markDirty();
+    stateProvider.getIdIndex().putTrack(receiver.track().id(), id);
     // for plan-b
     for (MediaStream stream : mediaStreams) {
       String streamId = stream.getId();
@@ -505,14 +496,10 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     params.putMap("receiver", rtpReceiverToMap(receiver));
 
     if (this.configuration.sdpSemantics == PeerConnection.SdpSemantics.UNIFIED_PLAN) {
-      List<RtpTransceiver> transceivers = peerConnection.getTransceivers();
+      List<RtpTransceiver> transceivers = rtpIndex.getTransceivers();
       for (RtpTransceiver transceiver : transceivers) {
         if (transceiver.getReceiver() != null && receiver.id().equals(transceiver.getReceiver().id())) {
-          String transceiverId = transceiver.getMid();
-          if (null == transceiverId) {
-            transceiverId = stateProvider.getNextStreamUUID();
-            this.transceivers.put(transceiverId,transceiver);
-          }
+          String transceiverId = rtpIndex.getTransceiverId(transceiver);
           params.putMap("transceiver", transceiverToMap(transceiverId, transceiver));
         }
       }
@@ -526,6 +513,8 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
 
     MediaStreamTrack track = rtpReceiver.track();
     String trackId = track.id();
+    rtpIndex.markDirty();
+    stateProvider.getIdIndex().removeTrack(trackId);
     ConstraintsMap trackInfo = new ConstraintsMap();
     trackInfo.putString("id", trackId);
     trackInfo.putString("label", track.kind());
@@ -550,21 +539,23 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     params.putString("flutterId", flutterId);
 
     dataChannels.put(flutterId, dataChannel);
-    registerDataChannelObserver(flutterId, dataChannel);
+    registerDataChannelObserver(flutterId, dataChannel, null);
 
     sendEvent(params);
   }
 
-  private void registerDataChannelObserver(String dcId, DataChannel dataChannel) {
+  private void registerDataChannelObserver(String dcId, DataChannel dataChannel, @Nullable ConstraintsMap options) {
     // DataChannel.registerObserver implementation does not allow to
     // unregister, so the observer is registered here and is never
     // unregistered
-    dataChannel.registerObserver(
-        new DataChannelObserver(messenger, id, dcId, dataChannel));
+    DataChannelObserver observer = new DataChannelObserver(messenger, id, dcId, dataChannel, options);
+    dataChannelObservers.put(dcId, observer);
+    dataChannel.registerObserver(observer);
   }
 
   @Override
   public void onRenegotiationNeeded() {
+    rtpIndex.markDirty();
     ConstraintsMap params = new ConstraintsMap();
     params.putString("event", "onRenegotiationNeeded");
     sendEvent(params);
@@ -915,6 +906,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
 
   public void addTrack(MediaStreamTrack track, List<String> streamIds, Result result) {
     RtpSender sender = peerConnection.addTrack(track, streamIds);
+    rtpIndex.putSender(sender);
     result.success(rtpSenderToMap(sender));
   }
 
@@ -925,6 +917,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
       return;
     }
     boolean res = peerConnection.removeTrack(sender);
+    rtpIndex.removeSender(senderId);
     Map<String, Object> params = new HashMap<>();
     params.put("result", res);
     result.success(params);
@@ -937,11 +930,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     } else {
       transceiver = peerConnection.addTransceiver(track);
     }
-    String transceiverId = transceiver.getMid();
-    if (null == transceiverId) {
-      transceiverId = stateProvider.getNextStreamUUID();
-    }
-    transceivers.put(transceiverId, transceiver);
+    String transceiverId = rtpIndex.putTransceiver(transceiver);
     result.success(transceiverToMap(transceiverId, transceiver));
   }
 
@@ -952,11 +941,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     } else {
       transceiver = peerConnection.addTransceiver(stringToMediaType(mediaType));
     }
-    String transceiverId = transceiver.getMid();
-    if (null == transceiverId) {
-      transceiverId = stateProvider.getNextStreamUUID();
-    }
-    transceivers.put(transceiverId, transceiver);
+    String transceiverId = rtpIndex.putTransceiver(transceiver);
     result.success(transceiverToMap(transceiverId, transceiver));
   }
 
@@ -1042,6 +1027,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
       return;
     }
     transceiver.stop();
+    rtpIndex.onTransceiverStopped(transceiver);
     result.success(null);
   }
 
@@ -1079,7 +1065,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   }
 
   public void getSenders(Result result) {
-    List<RtpSender> senders = peerConnection.getSenders();
+    List<RtpSender> senders = rtpIndex.getSenders();
     ConstraintsArray sendersParams = new ConstraintsArray();
     for (RtpSender sender : senders) {
       sendersParams.pushMap(new ConstraintsMap(rtpSenderToMap(sender)));
@@ -1090,7 +1076,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   }
 
   public void getReceivers(Result result) {
-    List<RtpReceiver> receivers = peerConnection.getReceivers();
+    List<RtpReceiver> receivers = rtpIndex.getReceivers();
     ConstraintsArray receiversParams = new ConstraintsArray();
     for (RtpReceiver receiver : receivers) {
       receiversParams.pushMap(new ConstraintsMap(rtpReceiverToMap(receiver)));
@@ -1101,14 +1087,10 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   }
 
   public void getTransceivers(Result result) {
-    List<RtpTransceiver> transceivers = peerConnection.getTransceivers();
+    List<RtpTransceiver> transceivers = rtpIndex.getTransceivers();
     ConstraintsArray transceiversParams = new ConstraintsArray();
     for (RtpTransceiver transceiver : transceivers) {
-      String transceiverId = transceiver.getMid();
-      if (null == transceiverId) {
-        transceiverId = stateProvider.getNextStreamUUID();
-        this.transceivers.put(transceiverId,transceiver);
-      }
+      String transceiverId = rtpIndex.getTransceiverId(transceiver);
       transceiversParams.pushMap(new ConstraintsMap(transceiverToMap(transceiverId, transceiver)));
     }
     ConstraintsMap params = new ConstraintsMap();
@@ -1116,32 +1098,22 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     result.success(params.toMap());
   }
 
-  protected MediaStreamTrack getTransceiversTrack(String trackId) {
-    if (this.configuration.sdpSemantics != PeerConnection.SdpSemantics.UNIFIED_PLAN) {
-      return null;
-    }
-    MediaStreamTrack track = null;
-    List<RtpTransceiver> transceivers = peerConnection.getTransceivers();
-    for (RtpTransceiver transceiver : transceivers) {
-      RtpReceiver receiver = transceiver.getReceiver();
-      if (receiver != null) {
-        if (receiver.track() != null && receiver.track().id().equals(trackId)) {
-          track = receiver.track();
-          break;
-        }
-      }
-    }
-    return track;
+  /** Remote track of a stream or receiver of this connection, without a JNI call if known. */
+  @Nullable
+  MediaStreamTrack getRemoteTrack(String trackId) {
+    MediaStreamTrack track = remoteTracks.get(trackId);
+    return track != null ? track : rtpIndex.getReceiverTrack(trackId);
   }
 
-  public String getNextDataChannelUUID() {
-    String uuid;
-
-    do {
-      uuid = UUID.randomUUID().toString();
-    } while (dataChannels.get(uuid) != null);
+  /** Like {@link #getRemoteTrack} without refreshing the receivers, for callers off the queue. */
+  @Nullable
+  MediaStreamTrack getKnownRemoteTrack(String trackId) {
+    MediaStreamTrack track = remoteTracks.get(trackId);
+    return track != null ? track : rtpIndex.getKnownReceiverTrack(trackId);
+  }
 
-    return uuid;
+  public String getNextDataChannelUUID() {
+    return IdAllocator.nextId();
   }
 
 }
@@ -0,0 +1,240 @@
+package com.cloudwebrtc.webrtc;
+
+import androidx.annotation.Nullable;
+
+import org.webrtc.MediaStreamTrack;
+import org.webrtc.PeerConnection;
+import org.webrtc.RtpReceiver;
+import org.webrtc.RtpSender;
+import org.webrtc.RtpTransceiver;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Senders, receivers, transceivers and receiver tracks of one peer connection by id.
+ *
+ * {@link PeerConnection#getSenders()}, {@code getReceivers()} and {@code getTransceivers()}
+ * are JNI calls that create new wrappers and dispose the ones returned by the previous call,
+ * so they must only be called through {@link #refresh()}, which rebuilds the maps from the new
+ * wrappers. Objects created by {@code addTrack} and {@code addTransceiver} are added as they
+ * are returned. A lookup of an unknown sender, receiver or transceiver id refreshes once, a
+ * receiver track lookup only after {@link #markDirty()} since most track ids asked for belong
+ * to other connections.
+ *
+ * Transceivers without a mid are reported to Dart under a generated id, which is kept per
+ * sender id so it stays stable across refreshes, until the transceiver is stopped or gone.
+ */
+class RtpObjectIndex {
+    interface IdSource {
+        String nextId();
+    }
+
+    private final PeerConnection peerConnection;
+    private final boolean unifiedPlan;
+    private final IdSource idSource;
+
+    private final Map<String, RtpSender> senders = new HashMap<>();
+    private final Map<String, RtpReceiver> receivers = new HashMap<>();
+    private final Map<String, RtpTransceiver> transceivers = new HashMap<>();
+    private final Map<String, MediaStreamTrack> receiverTracks = new HashMap<>();
+    // Sender id -> id handed to Dart for a transceiver that had no mid yet.
+    private final Map<String, String> generatedTransceiverIds = new HashMap<>();
+
+    private List<RtpSender> senderList = Collections.emptyList();
+    private List<RtpReceiver> receiverList = Collections.emptyList();
+    private List<RtpTransceiver> transceiverList = Collections.emptyList();
+    private boolean dirty = true;
+    private long refreshes = 0;
+
+    RtpObjectIndex(PeerConnection peerConnection, boolean unifiedPlan, IdSource idSource) {
+        this.peerConnection = peerConnection;
+        this.unifiedPlan = unifiedPlan;
+        this.idSource = idSource;
+    }
+
+    /** Current senders, replacing all previously returned wrappers. */
+    synchronized List<RtpSender> getSenders() {
+        refresh();
+        return senderList;
+    }
+
+    synchronized List<RtpReceiver> getReceivers() {
+        refresh();
+        return receiverList;
+    }
+
+    synchronized List<RtpTransceiver> getTransceivers() {
+        refresh();
+        return transceiverList;
+    }
+
+    @Nullable
+    synchronized RtpSender getSender(String id) {
+        RtpSender sender = senders.get(id);
+        if (sender == null) {
+            refresh();
+            sender = senders.get(id);
+        }
+        return sender;
+    }
+
+    @Nullable
+    synchronized RtpReceiver getReceiver(String id) {
+        RtpReceiver receiver = receivers.get(id);
+        if (receiver == null) {
+            refresh();
+            receiver = receivers.get(id);
+        }
+        return receiver;
+    }
+
+    @Nullable
+    synchronized RtpTransceiver getTransceiver(String id) {
+        if (!unifiedPlan) {
+            return null;
+        }
+        RtpTransceiver transceiver = transceivers.get(id);
+        if (transceiver == null) {
+            refresh();
+            transceiver = transceivers.get(id);
+        }
+        return transceiver;
+    }
+
+    @Nullable
+    synchronized MediaStreamTrack getReceiverTrack(String trackId) {
+        if (dirty) {
+            refresh();
+        }
+        return receiverTracks.get(trackId);
+    }
+
+    /** Receiver track as of the last refresh. */
+    @Nullable
+    synchronized MediaStreamTrack getKnownReceiverTrack(String trackId) {
+        return receiverTracks.get(trackId);
+    }
+
+    /** The mid of {@code transceiver}, or the id generated for it while it has none. */
+    synchronized String getTransceiverId(RtpTransceiver transceiver) {
+        String mid = transceiver.getMid();
+        if (mid != null) {
+            return mid;
+        }
+        String senderId = transceiver.getSender().id();
+        String id = generatedTransceiverIds.get(senderId);
+        if (id == null) {
+            id = idSource.nextId();
+            generatedTransceiverIds.put(senderId, id);
+            transceivers.put(id, transceiver);
+        }
+        return id;
+    }
+
+    synchronized void putSender(RtpSender sender) {
+        senders.put(sender.id(), sender);
+    }
+
+    /**
+     * Forgets a sender passed to {@code removeTrack}, a later lookup refreshes if it still
+     * exists.
+     */
+    synchronized void removeSender(String id) {
+        senders.remove(id);
+    }
+
+    /** Drops the generated id of a transceiver stopped through {@code stop()}. */
+    synchronized void onTransceiverStopped(RtpTransceiver transceiver) {
+        String generatedId = generatedTransceiverIds.remove(transceiver.getSender().id());
+        if (generatedId != null) {
+            transceivers.remove(generatedId);
+        }
+    }
+
+    /** Adds a transceiver returned by {@code addTransceiver}, returns its id. */
+    synchronized String putTransceiver(RtpTransceiver transceiver) {
+        String id = getTransceiverId(transceiver);
+        transceivers.put(id, transceiver);
+        senders.put(transceiver.getSender().id(), transceiver.getSender());
+        RtpReceiver receiver = transceiver.getReceiver();
+        receivers.put(receiver.id(), receiver);
+        MediaStreamTrack track = receiver.track();
+        if (track != null) {
+            receiverTracks.put(track.id(), track);
+        }
+        return id;
+    }
+
+    /** Receivers or transceivers were added or removed by the native side. */
+    synchronized void markDirty() {
+        dirty = true;
+    }
+
+    synchronized long getRefreshCount() {
+        return refreshes;
+    }
+
+    synchronized void clear() {
+        senders.clear();
+        receivers.clear();
+        transceivers.clear();
+        receiverTracks.clear();
+        senderList = Collections.emptyList();
+        receiverList = Collections.emptyList();
+        transceiverList = Collections.emptyList();
+        dirty = true;
+    }
+
+    private void refresh() {
+        refreshes++;
+        senders.clear();
+        receivers.clear();
+        transceivers.clear();
+        receiverTracks.clear();
+        senderList = peerConnection.getSenders();
+        for (RtpSender sender : senderList) {
+            senders.put(sender.id(), sender);
+        }
+        receiverList = peerConnection.getReceivers();
+        for (RtpReceiver receiver : receiverList) {
+            receivers.put(receiver.id(), receiver);
+            MediaStreamTrack track = receiver.track();
+            if (track != null) {
+                receiverTracks.put(track.id(), track);
+            }
+        }
+        if (unifiedPlan) {
+            transceiverList = peerConnection.getTransceivers();
+            Set<String> liveSenderIds = new HashSet<>();
+            for (RtpTransceiver transceiver : transceiverList) {
+                String mid = transceiver.getMid();
+                if (mid != null) {
+                    transceivers.put(mid, transceiver);
+                }
+                if (transceiver.isStopped()) {
+                    continue;
+                }
+                String senderId = transceiver.getSender().id();
+                liveSenderIds.add(senderId);
+                String generatedId = generatedTransceiverIds.get(senderId);
+                if (generatedId != null) {
+                    transceivers.put(generatedId, transceiver);
+                }
+            }
+            // Stopped by the remote side or removed by negotiation.
+            Iterator<String> senderIds = generatedTransceiverIds.keySet().iterator();
+            while (senderIds.hasNext()) {
+                if (!liveSenderIds.contains(senderIds.next())) {
+                    senderIds.remove();
+                }
+            }
+        }
+        dirty = false;
+    }
+}
@@ -32,6 +32,8 @@ public interface StateProvider {
 
   PeerConnectionObserver getPeerConnectionObserver(String peerConnectionId);
 
+  IdIndex getIdIndex();
+
   @Nullable
   Activity getActivity();
 
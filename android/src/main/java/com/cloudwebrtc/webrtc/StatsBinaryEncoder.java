@@ -0,0 +1,169 @@
+package com.cloudwebrtc.webrtc;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packs converted stats reports into the binary {@code getStats} format.
+ *
+ * Every string, member names, stats types, report ids and string values, is sent once per
+ * {@link StringTable} and referenced by its index afterwards. All numbers are little endian:
+ *
+ * <pre>
+ * u32 report count
+ * per report: u16 id, u16 type, f64 timestamp, u16 member count, members
+ * per member: u16 name, u8 tag, value
+ *   TAG_DOUBLE f64 | TAG_INT i32 | TAG_LONG i64 | TAG_BOOLEAN u8 | TAG_STRING u16
+ *   TAG_STRING_LIST u16 count, u16 per item | TAG_MAP u16 count, members
+ * </pre>
+ *
+ * Not thread safe, used on the stats thread.
+ */
+class StatsBinaryEncoder {
+    static final int TAG_DOUBLE = 0;
+    static final int TAG_INT = 1;
+    static final int TAG_LONG = 2;
+    static final int TAG_BOOLEAN = 3;
+    static final int TAG_STRING = 4;
+    static final int TAG_STRING_LIST = 5;
+    static final int TAG_MAP = 6;
+
+    // Indices are 16 bit, a table this full is started over before the next report.
+    private static final int RESET_STRINGS = 0x8000;
+    private static final int MAX_STRINGS = 0xffff;
+
+    /** Strings the Dart decoder of a peer connection already knows. */
+    static class StringTable {
+        private final Map<String, Integer> indices = new HashMap<>();
+        private boolean resetPending = false;
+
+        /** Starts over after a failed poll, whose new strings never reached Dart. */
+        void invalidate() {
+            indices.clear();
+            resetPending = true;
+        }
+    }
+
+    private final StringTable table;
+    private final List<String> added = new ArrayList<>();
+    private final boolean reset;
+    private ByteBuffer buffer = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+    private int reportCount = 0;
+
+    StatsBinaryEncoder(StringTable table) {
+        this.table = table;
+        reset = table.resetPending || table.indices.size() >= RESET_STRINGS;
+        if (reset) {
+            table.indices.clear();
+            table.resetPending = false;
+        }
+        buffer.putInt(0);
+    }
+
+    /** Whether the decoder has to drop its table before adding {@link #getAddedStrings()}. */
+    boolean isReset() {
+        return reset;
+    }
+
+    /** Strings first used by this encoder, in index order. */
+    List<String> getAddedStrings() {
+        return added;
+    }
+
+    void writeReport(String id, String type, double timestampUs, Map<String, Object> values) {
+        ensureCapacity(16);
+        putString(id);
+        putString(type);
+        buffer.putDouble(timestampUs);
+        writeMembers(values);
+        reportCount++;
+    }
+
+    byte[] finish() {
+        buffer.putInt(0, reportCount);
+        byte[] data = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(data);
+        return data;
+    }
+
+    private void writeMembers(Map<?, ?> values) {
+        ensureCapacity(2);
+        int countPosition = buffer.position();
+        buffer.putShort((short) 0);
+        int count = 0;
+        for (Map.Entry<?, ?> entry : values.entrySet()) {
+            int position = buffer.position();
+            ensureCapacity(3);
+            putString(String.valueOf(entry.getKey()));
+            if (writeValue(entry.getValue())) {
+                count++;
+            } else {
+                buffer.position(position);
+            }
+        }
+        buffer.putShort(countPosition, (short) count);
+    }
+
+    private boolean writeValue(Object value) {
+        ensureCapacity(9);
+        if (value instanceof Double) {
+            buffer.put((byte) TAG_DOUBLE);
+            buffer.putDouble((Double) value);
+        } else if (value instanceof Integer) {
+            buffer.put((byte) TAG_INT);
+            buffer.putInt((Integer) value);
+        } else if (value instanceof Long) {
+            buffer.put((byte) TAG_LONG);
+            buffer.putLong((Long) value);
+        } else if (value instanceof Boolean) {
+            buffer.put((byte) TAG_BOOLEAN);
+            buffer.put((byte) ((Boolean) value ? 1 : 0));
+        } else if (value instanceof String) {
+            buffer.put((byte) TAG_STRING);
+            putString((String) value);
+        } else if (value instanceof List) {
+            List<?> items = (List<?>) value;
+            buffer.put((byte) TAG_STRING_LIST);
+            buffer.putShort((short) items.size());
+            ensureCapacity(2 * items.size());
+            for (Object item : items) {
+                putString(String.valueOf(item));
+            }
+        } else if (value instanceof Map) {
+            buffer.put((byte) TAG_MAP);
+            writeMembers((Map<?, ?>) value);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private void putString(String value) {
+        Integer index = table.indices.get(value);
+        if (index == null) {
+            index = table.indices.size();
+            if (index > MAX_STRINGS) {
+                throw new IllegalStateException("Too many distinct strings in stats report");
+            }
+            table.indices.put(value, index);
+            added.add(value);
+        }
+        buffer.putShort((short) (int) index);
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+}
@@ -0,0 +1,341 @@
+package com.cloudwebrtc.webrtc;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.ConstraintsArray;
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/**
+ * Converts {@link RTCStatsReport}s into the maps returned by {@code getStats} off the signaling
+ * thread.
+ *
+ * The Java type of every member is resolved once per stats type and member name and kept in a
+ * schema, so converting a report is a lookup per member instead of a chain of type checks.
+ * Reports can be filtered by stats type and member name, and a {@link Session} can be passed to
+ * return only the members that changed since the previous poll. Reports can also be packed by
+ * {@link StatsBinaryEncoder} against the string table of the session.
+ */
+class StatsEngine {
+    private static final String TAG = FlutterWebRTCPlugin.TAG;
+
+    private static StatsEngine instance;
+
+    static synchronized StatsEngine getInstance() {
+        if (instance == null) {
+            instance = new StatsEngine();
+        }
+        return instance;
+    }
+
+    static synchronized void releaseInstance() {
+        if (instance != null) {
+            instance.thread.quitSafely();
+            instance = null;
+        }
+    }
+
+    private enum Kind {
+        STRING,
+        STRING_ARRAY,
+        INTEGER,
+        LONG,
+        DOUBLE,
+        BOOLEAN,
+        BIG_INTEGER,
+        MAP,
+        UNKNOWN;
+
+        static Kind of(Object value) {
+            if (value instanceof String) {
+                return STRING;
+            } else if (value instanceof Double) {
+                return DOUBLE;
+            } else if (value instanceof Long) {
+                return LONG;
+            } else if (value instanceof Integer) {
+                return INTEGER;
+            } else if (value instanceof BigInteger) {
+                return BIG_INTEGER;
+            } else if (value instanceof Boolean) {
+                return BOOLEAN;
+            } else if (value instanceof String[]) {
+                return STRING_ARRAY;
+            } else if (value instanceof Map) {
+                return MAP;
+            }
+            return UNKNOWN;
+        }
+
+        boolean matches(Object value) {
+            switch (this) {
+                case STRING:
+                    return value instanceof String;
+                case STRING_ARRAY:
+                    return value instanceof String[];
+                case INTEGER:
+                    return value instanceof Integer;
+                case LONG:
+                    return value instanceof Long;
+                case DOUBLE:
+                    return value instanceof Double;
+                case BOOLEAN:
+                    return value instanceof Boolean;
+                case BIG_INTEGER:
+                    return value instanceof BigInteger;
+                case MAP:
+                    return value instanceof Map;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /** Which reports and members a poll returns. */
+    static class Query {
+        static final Query ALL = new Query(null, null, false, false);
+
+        @Nullable final Set<String> types;
+        @Nullable final Set<String> members;
+        final boolean delta;
+        /** Whether the reports are packed by {@link StatsBinaryEncoder}. */
+        final boolean binary;
+
+        Query(@Nullable Set<String> types, @Nullable Set<String> members, boolean delta, boolean binary) {
+            this.types = types;
+            this.members = members;
+            this.delta = delta;
+            this.binary = binary;
+        }
+
+        /**
+         * Reads the optional {@code types}, {@code members}, {@code delta} and {@code format}
+         * arguments.
+         */
+        static Query fromArguments(@Nullable List<String> types, @Nullable List<String> members,
+                                   @Nullable Boolean delta, @Nullable String format) {
+            boolean binary = "binary".equals(format);
+            if (types == null && members == null && (delta == null || !delta) && !binary) {
+                return ALL;
+            }
+            return new Query(
+                    types != null ? new HashSet<>(types) : null,
+                    members != null ? new HashSet<>(members) : null,
+                    delta != null && delta,
+                    binary);
+        }
+
+        boolean includesType(String type) {
+            return types == null || types.contains(type);
+        }
+
+        boolean includesMember(String member) {
+            return members == null || members.contains(member);
+        }
+    }
+
+    /**
+     * Values returned by the previous delta polls of a peer connection, keyed by the polled
+     * target so polls of different tracks do not reset each other. Only used on the stats
+     * thread.
+     */
+    static class Session {
+        private final Map<String, Map<String, Map<String, Object>>> baselines = new HashMap<>();
+        private final StatsBinaryEncoder.StringTable strings = new StatsBinaryEncoder.StringTable();
+    }
+
+    private final HandlerThread thread;
+    private final Handler handler;
+    // Stats type -> member name -> kind, only used on the stats thread.
+    private final Map<String, Map<String, Kind>> schemas = new HashMap<>();
+
+    private StatsEngine() {
+        thread = new HandlerThread("StatsEngine");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /** Handler of the stats thread, for work that has to run in order with conversions. */
+    Handler getHandler() {
+        return handler;
+    }
+
+    /**
+     * Converts {@code report} on the stats thread and completes {@code result} from there.
+     *
+     * @param session previous values of the peer connection, required for delta queries.
+     * @param target  key of the polled sender or receiver, empty for the whole connection.
+     */
+    void convert(RTCStatsReport report, Query query, @Nullable Session session, String target, Result result) {
+        boolean posted = handler.post(() -> {
+            try {
+                result.success(convertOnThread(report, query, session, target));
+            } catch (RuntimeException e) {
+                Log.e(TAG, "getStats() failed to convert report", e);
+                if (query.binary && session != null) {
+                    session.strings.invalidate();
+                }
+                result.error("getStats", "getStats(): " + e.getMessage(), null);
+            }
+        });
+        if (!posted) {
+            result.error("getStats", "getStats(): stats engine was released", null);
+        }
+    }
+
+    private Map<String, Object> convertOnThread(RTCStatsReport report, Query query,
+                                                @Nullable Session session, String target) {
+        Map<String, Map<String, Object>> baseline = null;
+        Map<String, Map<String, Object>> nextBaseline = null;
+        if (query.delta && session != null) {
+            baseline = session.baselines.get(target);
+            nextBaseline = new HashMap<>();
+        }
+
+        StatsBinaryEncoder encoder = null;
+        if (query.binary) {
+            encoder = new StatsBinaryEncoder(session != null ? session.strings : new StatsBinaryEncoder.StringTable());
+        }
+        ConstraintsArray stats = new ConstraintsArray();
+        for (RTCStats rtcStats : report.getStatsMap().values()) {
+            String type = rtcStats.getType();
+            if (!query.includesType(type)) {
+                continue;
+            }
+            Map<String, Object> values = convertMembers(type, rtcStats.getMembers(), query);
+            Map<String, Object> changed = values;
+            if (nextBaseline != null) {
+                nextBaseline.put(rtcStats.getId(), values);
+                Map<String, Object> previous = baseline != null ? baseline.get(rtcStats.getId()) : null;
+                if (previous != null) {
+                    changed = changedMembers(previous, values);
+                    if (changed.isEmpty()) {
+                        continue;
+                    }
+                }
+            }
+
+            if (encoder != null) {
+                encoder.writeReport(rtcStats.getId(), type, rtcStats.getTimestampUs(), changed);
+                continue;
+            }
+            ConstraintsMap reportMap = new ConstraintsMap();
+            reportMap.putString("id", rtcStats.getId());
+            reportMap.putString("type", type);
+            reportMap.putDouble("timestamp", rtcStats.getTimestampUs());
+            reportMap.putMap("values", changed);
+            stats.pushMap(reportMap);
+        }
+
+        ConstraintsMap params = new ConstraintsMap();
+        if (encoder != null) {
+            params.putString("format", "binary");
+            params.putByte("data", encoder.finish());
+            params.putBoolean("stringsReset", encoder.isReset());
+            params.putArray("strings", new ArrayList<Object>(encoder.getAddedStrings()));
+        } else {
+            params.putArray("stats", stats.toArrayList());
+        }
+        if (nextBaseline != null) {
+            ConstraintsArray removed = new ConstraintsArray();
+            if (baseline != null) {
+                for (String id : baseline.keySet()) {
+                    if (!nextBaseline.containsKey(id)) {
+                        removed.pushString(id);
+                    }
+                }
+            }
+            session.baselines.put(target, nextBaseline);
+            params.putBoolean("delta", true);
+            params.putArray("removed", removed.toArrayList());
+        }
+        return params.toMap();
+    }
+
+    private Map<String, Object> convertMembers(String type, Map<String, Object> members, Query query) {
+        Map<String, Kind> schema = schemas.get(type);
+        if (schema == null) {
+            schema = new HashMap<>();
+            schemas.put(type, schema);
+        }
+        Map<String, Object> values = new HashMap<>();
+        for (Map.Entry<String, Object> entry : members.entrySet()) {
+            String name = entry.getKey();
+            Object value = entry.getValue();
+            if (value == null || !query.includesMember(name)) {
+                continue;
+            }
+            Kind kind = schema.get(name);
+            if (kind == null || (kind != Kind.UNKNOWN && !kind.matches(value))) {
+                kind = Kind.of(value);
+                schema.put(name, kind);
+                if (kind == Kind.UNKNOWN) {
+                    // Logged once per type and member, the schema remembers it.
+                    Log.d(TAG, "getStats() unknown type: " + value.getClass().getName() + " for [" + type + "." + name + "] value: " + value);
+                }
+            }
+            Object converted = convertValue(kind, value);
+            if (converted != null) {
+                values.put(name, converted);
+            }
+        }
+        return values;
+    }
+
+    @Nullable
+    private static Object convertValue(Kind kind, Object value) {
+        switch (kind) {
+            case STRING:
+            case INTEGER:
+            case LONG:
+            case DOUBLE:
+            case BOOLEAN:
+                return value;
+            case BIG_INTEGER:
+                return ((BigInteger) value).longValue();
+            case STRING_ARRAY:
+                return new ArrayList<>(Arrays.asList((String[]) value));
+            case MAP: {
+                Map<String, Object> map = new HashMap<>();
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    Object item = entry.getValue();
+                    Kind itemKind = item != null ? Kind.of(item) : Kind.UNKNOWN;
+                    // Nested maps are not produced by WebRTC, keep the values flat.
+                    if (itemKind != Kind.UNKNOWN && itemKind != Kind.MAP) {
+                        map.put(String.valueOf(entry.getKey()), convertValue(itemKind, item));
+                    }
+                }
+                return map;
+            }
+            default:
+                return null;
+        }
+    }
+
+    private static Map<String, Object> changedMembers(Map<String, Object> previous, Map<String, Object> values) {
+        Map<String, Object> changed = new HashMap<>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+                changed.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,278 @@
+package com.cloudwebrtc.webrtc;
+
+import android.os.Handler;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.ConstraintsArray;
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+
+import org.webrtc.PeerConnection;
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Polls the stats of a peer connection at a fixed interval and reduces every report to a
+ * {@link Sample} of connection wide rates.
+ *
+ * Rates are computed from the counters of consecutive reports on the stats thread. The last
+ * {@code historySize} samples are kept in a ring, and a sample is pushed to Dart only if one of
+ * its values moved by more than the relative threshold, and more than a per value noise floor,
+ * away from the last pushed sample. A poll is skipped while the previous one is still pending.
+ */
+class StatsSampler {
+    interface Listener {
+        /** Called on the stats thread with a sample that passed the threshold. */
+        void onSample(Sample sample);
+    }
+
+    /** Connection wide values derived from one report, rates per second. */
+    static class Sample {
+        long timestampMs;
+        double sendBitrate;
+        double receiveBitrate;
+        double availableOutgoingBitrate;
+        /** Inbound packets lost during the interval, in percent. */
+        double packetLoss;
+        /** Outbound loss reported by the remote side, in percent. */
+        double remotePacketLoss;
+        double roundTripTimeMs;
+        double jitterMs;
+        double sendFps;
+        double receiveFps;
+
+        ConstraintsMap toMap() {
+            ConstraintsMap params = new ConstraintsMap();
+            params.putLong("timestampMs", timestampMs);
+            params.putDouble("sendBitrate", sendBitrate);
+            params.putDouble("receiveBitrate", receiveBitrate);
+            params.putDouble("availableOutgoingBitrate", availableOutgoingBitrate);
+            params.putDouble("packetLoss", packetLoss);
+            params.putDouble("remotePacketLoss", remotePacketLoss);
+            params.putDouble("roundTripTimeMs", roundTripTimeMs);
+            params.putDouble("jitterMs", jitterMs);
+            params.putDouble("sendFps", sendFps);
+            params.putDouble("receiveFps", receiveFps);
+            return params;
+        }
+    }
+
+    static class Options {
+        long intervalMs = 1000;
+        int historySize = 60;
+        /** Relative change of a value that triggers a push. */
+        double threshold = 0.1;
+
+        static Options fromMap(@Nullable ConstraintsMap map) {
+            Options options = new Options();
+            if (map == null) {
+                return options;
+            }
+            if (map.hasKey("intervalMs")) {
+                options.intervalMs = Math.max(100, map.getInt("intervalMs"));
+            }
+            if (map.hasKey("historySize")) {
+                options.historySize = Math.max(1, map.getInt("historySize"));
+            }
+            if (map.hasKey("threshold")) {
+                options.threshold = Math.max(0, ((Number) map.toMap().get("threshold")).doubleValue());
+            }
+            return options;
+        }
+    }
+
+    // Changes below these are noise and never pushed on their own.
+    private static final double BITRATE_FLOOR = 16000;
+    private static final double LOSS_FLOOR = 1;
+    private static final double TIME_FLOOR_MS = 10;
+    private static final double FPS_FLOOR = 2;
+
+    private final PeerConnection peerConnection;
+    private final Options options;
+    private final Listener listener;
+    private final Handler handler;
+    private final Runnable pollRunnable = this::poll;
+
+    // Ring of the last samples, guarded by this.
+    private final Sample[] history;
+    private int historyHead = 0;
+    private int historyCount = 0;
+
+    private boolean running = false;
+    private boolean pending = false;
+    // Only used on the stats thread.
+    private Map<String, RTCStats> previous = Collections.emptyMap();
+    @Nullable private Sample lastPushed;
+
+    StatsSampler(PeerConnection peerConnection, Options options, Listener listener) {
+        this.peerConnection = peerConnection;
+        this.options = options;
+        this.listener = listener;
+        this.handler = StatsEngine.getInstance().getHandler();
+        history = new Sample[options.historySize];
+    }
+
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        handler.post(pollRunnable);
+    }
+
+    /** Stops polling. Safe to call before the peer connection is closed. */
+    synchronized void stop() {
+        running = false;
+        handler.removeCallbacks(pollRunnable);
+    }
+
+    private synchronized void poll() {
+        if (!running) {
+            return;
+        }
+        handler.postDelayed(pollRunnable, options.intervalMs);
+        if (pending) {
+            return;
+        }
+        pending = true;
+        peerConnection.getStats(report -> handler.post(() -> onReport(report)));
+    }
+
+    private void onReport(RTCStatsReport report) {
+        synchronized (this) {
+            pending = false;
+            if (!running) {
+                return;
+            }
+        }
+        Map<String, RTCStats> stats = report.getStatsMap();
+        Sample sample = derive(stats, previous, report.getTimestampUs());
+        previous = stats;
+        synchronized (this) {
+            history[historyHead] = sample;
+            historyHead = (historyHead + 1) % history.length;
+            historyCount = Math.min(historyCount + 1, history.length);
+        }
+        if (lastPushed == null || changed(lastPushed, sample)) {
+            lastPushed = sample;
+            listener.onSample(sample);
+        }
+    }
+
+    /** The kept samples, oldest first. */
+    synchronized ConstraintsArray getHistory() {
+        ConstraintsArray samples = new ConstraintsArray();
+        int start = (historyHead - historyCount + history.length) % history.length;
+        for (int i = 0; i < historyCount; i++) {
+            samples.pushMap(history[(start + i) % history.length].toMap());
+        }
+        return samples;
+    }
+
+    private static Sample derive(Map<String, RTCStats> stats, Map<String, RTCStats> previous, double timestampUs) {
+        Sample sample = new Sample();
+        sample.timestampMs = (long) (timestampUs / 1000);
+        double lost = 0;
+        double received = 0;
+        double pairRoundTripTime = Double.NaN;
+        double remoteRoundTripTime = Double.NaN;
+        for (RTCStats s : stats.values()) {
+            RTCStats prev = previous.get(s.getId());
+            Map<String, Object> members = s.getMembers();
+            boolean video = "video".equals(members.get("kind"));
+            switch (s.getType()) {
+                case "outbound-rtp":
+                    sample.sendBitrate += 8 * rate(s, prev, "bytesSent");
+                    if (video) {
+                        sample.sendFps = Math.max(sample.sendFps, fps(s, prev, "framesEncoded"));
+                    }
+                    break;
+                case "inbound-rtp":
+                    sample.receiveBitrate += 8 * rate(s, prev, "bytesReceived");
+                    lost += Math.max(0, delta(s, prev, "packetsLost"));
+                    received += Math.max(0, delta(s, prev, "packetsReceived"));
+                    sample.jitterMs = Math.max(sample.jitterMs, 1000 * number(members, "jitter", 0));
+                    if (video) {
+                        sample.receiveFps = Math.max(sample.receiveFps, fps(s, prev, "framesDecoded"));
+                    }
+                    break;
+                case "remote-inbound-rtp":
+                    double roundTripTime = number(members, "roundTripTime", Double.NaN);
+                    if (!Double.isNaN(roundTripTime)) {
+                        remoteRoundTripTime = Double.isNaN(remoteRoundTripTime)
+                                ? roundTripTime : Math.max(remoteRoundTripTime, roundTripTime);
+                    }
+                    sample.remotePacketLoss = Math.max(sample.remotePacketLoss,
+                            100 * number(members, "fractionLost", 0));
+                    break;
+                case "candidate-pair":
+                    if (Boolean.TRUE.equals(members.get("nominated")) && "succeeded".equals(members.get("state"))) {
+                        pairRoundTripTime = number(members, "currentRoundTripTime", Double.NaN);
+                        sample.availableOutgoingBitrate = number(members, "availableOutgoingBitrate", 0);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (lost + received > 0) {
+            sample.packetLoss = 100 * lost / (lost + received);
+        }
+        // The transport round trip time is measured continuously, RTCP reports are a fallback.
+        double roundTripTime = !Double.isNaN(pairRoundTripTime) ? pairRoundTripTime : remoteRoundTripTime;
+        sample.roundTripTimeMs = Double.isNaN(roundTripTime) ? 0 : 1000 * roundTripTime;
+        return sample;
+    }
+
+    private static double number(Map<String, Object> members, String name, double fallback) {
+        Object value = members.get(name);
+        return value instanceof Number ? ((Number) value).doubleValue() : fallback;
+    }
+
+    private static double delta(RTCStats stats, @Nullable RTCStats prev, String name) {
+        if (prev == null) {
+            return 0;
+        }
+        double value = number(stats.getMembers(), name, Double.NaN);
+        double previousValue = number(prev.getMembers(), name, Double.NaN);
+        if (Double.isNaN(value) || Double.isNaN(previousValue)) {
+            return 0;
+        }
+        return value - previousValue;
+    }
+
+    /** Per second change of a counter, 0 for the first report or a counter reset. */
+    private static double rate(RTCStats stats, @Nullable RTCStats prev, String name) {
+        if (prev == null) {
+            return 0;
+        }
+        double seconds = (stats.getTimestampUs() - prev.getTimestampUs()) / 1000000;
+        double delta = delta(stats, prev, name);
+        return seconds > 0 && delta > 0 ? delta / seconds : 0;
+    }
+
+    private static double fps(RTCStats stats, @Nullable RTCStats prev, String framesMember) {
+        double fps = number(stats.getMembers(), "framesPerSecond", Double.NaN);
+        return !Double.isNaN(fps) ? fps : rate(stats, prev, framesMember);
+    }
+
+    private boolean changed(Sample last, Sample next) {
+        return changed(last.sendBitrate, next.sendBitrate, BITRATE_FLOOR)
+                || changed(last.receiveBitrate, next.receiveBitrate, BITRATE_FLOOR)
+                || changed(last.availableOutgoingBitrate, next.availableOutgoingBitrate, BITRATE_FLOOR)
+                || changed(last.packetLoss, next.packetLoss, LOSS_FLOOR)
+                || changed(last.remotePacketLoss, next.remotePacketLoss, LOSS_FLOOR)
+                || changed(last.roundTripTimeMs, next.roundTripTimeMs, TIME_FLOOR_MS)
+                || changed(last.jitterMs, next.jitterMs, TIME_FLOOR_MS)
+                || changed(last.sendFps, next.sendFps, FPS_FLOOR)
+                || changed(last.receiveFps, next.receiveFps, FPS_FLOOR);
+    }
+
+    private boolean changed(double last, double next, double floor) {
+        double difference = Math.abs(next - last);
+        return difference > floor && difference > options.threshold * Math.abs(last);
+    }
+}
@@ -1,8 +1,13 @@
 package com.cloudwebrtc.webrtc;
 
 import android.graphics.SurfaceTexture;
+import android.os.SystemClock;
 import android.view.Surface;
 
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.PluginMetrics;
+
 import org.webrtc.EglBase;
 import org.webrtc.EglRenderer;
 import org.webrtc.GlRectDrawer;
@@ -31,6 +36,41 @@ public class SurfaceTextureRenderer extends EglRenderer {
   private int rotatedFrameWidth;
   private int rotatedFrameHeight;
   private int frameRotation;
+  // Frames delivered to all renderers.
+  private static final PluginMetrics.Counter renderedFrames = PluginMetrics.instance.counter("renderer.frames");
+  // Per renderer metrics are named by slot so the names stay bounded, renderers beyond the
+  // slots only count in renderer.frames.
+  private static final int METRIC_SLOTS = 8;
+  // Guarded by itself.
+  private static final SurfaceTextureRenderer[] slotOwners = new SurfaceTextureRenderer[METRIC_SLOTS];
+
+  /**
+   * Frames of one renderer as "renderer.&lt;slot&gt;.frames", its frame rate over a snapshot
+   * interval, the time between two of its frames and the texture id holding the slot.
+   */
+  private static final class FrameMetrics {
+    final int slot;
+    final PluginMetrics.Counter frames;
+    final PluginMetrics.Histogram frameIntervalUs;
+    final PluginMetrics.Gauge textureId;
+
+    FrameMetrics(int slot) {
+      this.slot = slot;
+      String prefix = "renderer." + slot + ".";
+      frames = PluginMetrics.instance.counter(prefix + "frames");
+      frameIntervalUs = PluginMetrics.instance.histogram(prefix + "frameIntervalUs");
+      textureId = PluginMetrics.instance.gauge(prefix + "textureId");
+    }
+  }
+
+  // Guarded by slotOwners, a slot is taken on the first frame after init() until release().
+  private boolean metricsEnabled = false;
+  private long textureId = -1;
+  private volatile FrameMetrics frameMetrics;
+  // Set when all slots were taken, so frames skip the lock until release().
+  private volatile boolean noSlotAvailable = false;
+  // Only used on the thread delivering frames.
+  private long lastFrameNs = 0;
 
   /**
    * In order to render something, you must first call init().
@@ -55,6 +95,9 @@ public class SurfaceTextureRenderer extends EglRenderer {
                    RendererCommon.GlDrawer drawer) {
     ThreadUtils.checkIsOnMainThread();
     this.rendererEvents = rendererEvents;
+    synchronized (slotOwners) {
+      metricsEnabled = true;
+    }
     synchronized (layoutLock) {
       isFirstFrameRendered = false;
       rotatedFrameWidth = 0;
@@ -68,6 +111,54 @@ public class SurfaceTextureRenderer extends EglRenderer {
                    RendererCommon.GlDrawer drawer) {
     init(sharedContext, null /* rendererEvents */, configAttributes, drawer);
   }
+
+  @Override
+  public void release() {
+    synchronized (slotOwners) {
+      metricsEnabled = false;
+      noSlotAvailable = false;
+      FrameMetrics metrics = frameMetrics;
+      if (metrics != null) {
+        slotOwners[metrics.slot] = null;
+        metrics.textureId.set(-1);
+        frameMetrics = null;
+      }
+    }
+    super.release();
+  }
+
+  /** Texture id reported with the frame metrics of this renderer. */
+  public void setTextureId(long textureId) {
+    synchronized (slotOwners) {
+      this.textureId = textureId;
+      FrameMetrics metrics = frameMetrics;
+      if (metrics != null) {
+        metrics.textureId.set(textureId);
+      }
+    }
+  }
+
+  @Nullable
+  private FrameMetrics acquireFrameMetrics() {
+    synchronized (slotOwners) {
+      if (!metricsEnabled || frameMetrics != null) {
+        return frameMetrics;
+      }
+      for (int slot = 0; slot < METRIC_SLOTS; slot++) {
+        if (slotOwners[slot] == null) {
+          slotOwners[slot] = this;
+          FrameMetrics metrics = new FrameMetrics(slot);
+          metrics.frameIntervalUs.reset();
+          metrics.textureId.set(textureId);
+          frameMetrics = metrics;
+          lastFrameNs = 0;
+          return metrics;
+        }
+      }
+      noSlotAvailable = true;
+      return null;
+    }
+  }
   /**
    * Limit render framerate.
    *
@@ -98,6 +189,19 @@ public class SurfaceTextureRenderer extends EglRenderer {
   // VideoSink interface.
   @Override
   public void onFrame(VideoFrame frame) {
+    renderedFrames.increment();
+    FrameMetrics metrics = frameMetrics;
+    if (metrics == null && !noSlotAvailable) {
+      metrics = acquireFrameMetrics();
+    }
+    if (metrics != null) {
+      long nowNs = SystemClock.elapsedRealtimeNanos();
+      if (lastFrameNs != 0) {
+        metrics.frameIntervalUs.record((nowNs - lastFrameNs) / 1000);
+      }
+      lastFrameNs = nowNs;
+      metrics.frames.increment();
+    }
     if(surface == null) {
       producer.setSize(frame.getRotatedWidth(),frame.getRotatedHeight());
       surface = producer.getSurface();
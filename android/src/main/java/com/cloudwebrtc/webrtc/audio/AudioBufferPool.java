@@ -0,0 +1,127 @@
+package com.cloudwebrtc.webrtc.audio;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pool of fixed size audio buffers keyed by frame size in bytes.
+ *
+ * Audio callbacks run every 10 ms on the real-time audio threads; taking buffers from here
+ * instead of allocating keeps the steady state free of garbage. Buffers are only reused for
+ * exactly the same size, which is stable for the lifetime of an audio device.
+ *
+ * The pool never locks: every size has a fixed number of slots that are claimed and filled
+ * with atomic swaps, and the list of sizes, a handful at most, is replaced copy on write when a
+ * new size shows up.
+ */
+public final class AudioBufferPool {
+    public static final AudioBufferPool shared = new AudioBufferPool(8);
+
+    private static final class SizeClass {
+        final int size;
+        final AtomicReferenceArray<byte[]> arrays;
+        final AtomicReferenceArray<ByteBuffer> directBuffers;
+
+        SizeClass(int size, int capacity) {
+            this.size = size;
+            arrays = new AtomicReferenceArray<>(capacity);
+            directBuffers = new AtomicReferenceArray<>(capacity);
+        }
+    }
+
+    private final int maxBuffersPerSize;
+    private final AtomicReference<SizeClass[]> sizeClasses = new AtomicReference<>(new SizeClass[0]);
+    private final AtomicLong allocations = new AtomicLong();
+
+    public AudioBufferPool(int maxBuffersPerSize) {
+        this.maxBuffersPerSize = maxBuffersPerSize;
+    }
+
+    public byte[] acquireArray(int size) {
+        SizeClass sizeClass = find(size);
+        byte[] array = sizeClass != null ? take(sizeClass.arrays) : null;
+        if (array != null) {
+            return array;
+        }
+        allocations.incrementAndGet();
+        return new byte[size];
+    }
+
+    public void releaseArray(byte[] array) {
+        put(sizeClassFor(array.length).arrays, array);
+    }
+
+    /**
+     * Returns a cleared direct buffer in native byte order whose limit is {@code size}.
+     */
+    public ByteBuffer acquireDirect(int size) {
+        SizeClass sizeClass = find(size);
+        ByteBuffer buffer = sizeClass != null ? take(sizeClass.directBuffers) : null;
+        if (buffer != null) {
+            buffer.clear();
+            return buffer;
+        }
+        allocations.incrementAndGet();
+        return ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+    }
+
+    public void releaseDirect(ByteBuffer buffer) {
+        put(sizeClassFor(buffer.capacity()).directBuffers, buffer);
+    }
+
+    /** Number of buffers this pool had to allocate so far. */
+    public long getAllocationCount() {
+        return allocations.get();
+    }
+
+    private static <T> T take(AtomicReferenceArray<T> slots) {
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                T value = slots.getAndSet(i, null);
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Drops {@code value} if every slot is taken. */
+    private static <T> void put(AtomicReferenceArray<T> slots, T value) {
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, value)) {
+                return;
+            }
+        }
+    }
+
+    private SizeClass find(int size) {
+        for (SizeClass sizeClass : sizeClasses.get()) {
+            if (sizeClass.size == size) {
+                return sizeClass;
+            }
+        }
+        return null;
+    }
+
+    private SizeClass sizeClassFor(int size) {
+        while (true) {
+            SizeClass[] current = sizeClasses.get();
+            for (SizeClass sizeClass : current) {
+                if (sizeClass.size == size) {
+                    return sizeClass;
+                }
+            }
+            SizeClass[] grown = new SizeClass[current.length + 1];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            SizeClass created = new SizeClass(size, maxBuffersPerSize);
+            grown[current.length] = created;
+            if (sizeClasses.compareAndSet(current, grown)) {
+                return created;
+            }
+        }
+    }
+}
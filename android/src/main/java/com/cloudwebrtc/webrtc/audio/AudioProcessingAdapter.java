@@ -3,8 +3,6 @@ package com.cloudwebrtc.webrtc.audio;
 import org.webrtc.ExternalAudioProcessingFactory;
 
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
 
 public class AudioProcessingAdapter implements ExternalAudioProcessingFactory.AudioProcessing {
     public interface ExternalAudioFrameProcessing {
@@ -16,44 +14,34 @@ public class AudioProcessingAdapter implements ExternalAudioProcessingFactory.Au
     }
 
     public AudioProcessingAdapter() {}
-    List<ExternalAudioFrameProcessing> audioProcessors = new ArrayList<>();
+    final SnapshotCallbackList<ExternalAudioFrameProcessing> audioProcessors = new SnapshotCallbackList<>(new ExternalAudioFrameProcessing[0]);
 
     public void addProcessor(ExternalAudioFrameProcessing audioProcessor) {
-        synchronized (audioProcessors) {
-            audioProcessors.add(audioProcessor);
-        }
+        audioProcessors.add(audioProcessor);
     }
 
     public void removeProcessor(ExternalAudioFrameProcessing audioProcessor) {
-        synchronized (audioProcessors) {
-            audioProcessors.remove(audioProcessor);
-        }
+        audioProcessors.remove(audioProcessor);
     }
 
     @Override
     public void initialize(int sampleRateHz, int numChannels) {
-        synchronized (audioProcessors) {
-            for (ExternalAudioFrameProcessing audioProcessor : audioProcessors) {
-                audioProcessor.initialize(sampleRateHz, numChannels);
-            }
+        for (ExternalAudioFrameProcessing audioProcessor : audioProcessors.snapshot()) {
+            audioProcessor.initialize(sampleRateHz, numChannels);
         }
     }
 
     @Override
     public void reset(int newRate) {
-        synchronized (audioProcessors) {
-            for (ExternalAudioFrameProcessing audioProcessor : audioProcessors) {
-                audioProcessor.reset(newRate);
-            }
+        for (ExternalAudioFrameProcessing audioProcessor : audioProcessors.snapshot()) {
+            audioProcessor.reset(newRate);
         }
     }
 
     @Override
     public void process(int numBands, int numFrames, ByteBuffer buffer) {
-        synchronized (audioProcessors) {
-            for (ExternalAudioFrameProcessing audioProcessor : audioProcessors) {
-                audioProcessor.process(numBands, numFrames, buffer);
-            }
+        for (ExternalAudioFrameProcessing audioProcessor : audioProcessors.snapshot()) {
+            audioProcessor.process(numBands, numFrames, buffer);
         }
     }
 }
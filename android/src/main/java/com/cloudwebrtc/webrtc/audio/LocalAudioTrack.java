@@ -10,8 +10,6 @@ import org.webrtc.AudioTrackSink;
 import org.webrtc.audio.JavaAudioDeviceModule;
 
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * LocalAudioTrack represents an audio track that is sourced from local audio capture.
@@ -22,24 +20,23 @@ public class LocalAudioTrack
         super(audioTrack);
     }
 
-    final List<AudioTrackSink> sinks = new ArrayList<>();
+    final SnapshotCallbackList<AudioTrackSink> sinks = new SnapshotCallbackList<>(new AudioTrackSink[0]);
+
+    /** Direct copy of the last record buffer, shared by all sinks. Only touched on the audio thread. */
+    private ByteBuffer sinkBuffer;
 
     /**
      * Add a sink to receive audio data from this track.
      */
     public void addSink(AudioTrackSink sink) {
-        synchronized (sinks) {
-            sinks.add(sink);
-        }
+        sinks.add(sink);
     }
 
     /**
      * Remove a sink for this track.
      */
     public void removeSink(AudioTrackSink sink) {
-        synchronized (sinks) {
-            sinks.remove(sink);
-        }
+        sinks.remove(sink);
     }
 
     private int getBytesPerSample(int audioFormat) {
@@ -62,12 +59,24 @@ public class LocalAudioTrack
         int bitsPerSample = getBytesPerSample(audioSamples.getAudioFormat()) * 8;
         int numFrames = audioSamples.getSampleRate() / 100;
         long timestamp = SystemClock.elapsedRealtime();
-        synchronized (sinks) {
-            for (AudioTrackSink sink : sinks) {
-                ByteBuffer byteBuffer = ByteBuffer.wrap(audioSamples.getData());
-                sink.onData(byteBuffer, bitsPerSample, audioSamples.getSampleRate(),
-                        audioSamples.getChannelCount(), numFrames, timestamp);
+        AudioTrackSink[] snapshot = sinks.snapshot();
+        if (snapshot.length == 0) {
+            return;
+        }
+        byte[] data = audioSamples.getData();
+        if (sinkBuffer == null || sinkBuffer.capacity() != data.length) {
+            if (sinkBuffer != null) {
+                AudioBufferPool.shared.releaseDirect(sinkBuffer);
             }
+            sinkBuffer = AudioBufferPool.shared.acquireDirect(data.length);
+        }
+        sinkBuffer.clear();
+        sinkBuffer.put(data);
+        for (AudioTrackSink sink : snapshot) {
+            sinkBuffer.flip();
+            sink.onData(sinkBuffer, bitsPerSample, audioSamples.getSampleRate(),
+                    audioSamples.getChannelCount(), numFrames, timestamp);
+            sinkBuffer.position(sinkBuffer.limit());
         }
     }
 }
@@ -2,30 +2,23 @@ package com.cloudwebrtc.webrtc.audio;
 
 import org.webrtc.audio.JavaAudioDeviceModule;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class PlaybackSamplesReadyCallbackAdapter
         implements JavaAudioDeviceModule.PlaybackSamplesReadyCallback {
     public PlaybackSamplesReadyCallbackAdapter() {}
 
-    List<JavaAudioDeviceModule.PlaybackSamplesReadyCallback> callbacks = new ArrayList<>();
+    final SnapshotCallbackList<JavaAudioDeviceModule.PlaybackSamplesReadyCallback> callbacks = new SnapshotCallbackList<>(new JavaAudioDeviceModule.PlaybackSamplesReadyCallback[0]);
 
     public void addCallback(JavaAudioDeviceModule.PlaybackSamplesReadyCallback callback) {
-        synchronized (callbacks) {
-            callbacks.add(callback);
-        }
+        callbacks.add(callback);
     }
 
     public void removeCallback(JavaAudioDeviceModule.PlaybackSamplesReadyCallback callback) {
-        synchronized (callbacks) {
-            callbacks.remove(callback);
-        }
+        callbacks.remove(callback);
     }
 
     @Override
     public void onWebRtcAudioTrackSamplesReady(JavaAudioDeviceModule.AudioSamples audioSamples) {
-        for (JavaAudioDeviceModule.PlaybackSamplesReadyCallback callback : callbacks) {
+        for (JavaAudioDeviceModule.PlaybackSamplesReadyCallback callback : callbacks.snapshot()) {
             callback.onWebRtcAudioTrackSamplesReady(audioSamples);
         }
     }
@@ -2,33 +2,24 @@ package com.cloudwebrtc.webrtc.audio;
 
 import org.webrtc.audio.JavaAudioDeviceModule;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class RecordSamplesReadyCallbackAdapter
         implements JavaAudioDeviceModule.SamplesReadyCallback {
     public RecordSamplesReadyCallbackAdapter() {}
 
-    List<JavaAudioDeviceModule.SamplesReadyCallback> callbacks = new ArrayList<>();
+    final SnapshotCallbackList<JavaAudioDeviceModule.SamplesReadyCallback> callbacks = new SnapshotCallbackList<>(new JavaAudioDeviceModule.SamplesReadyCallback[0]);
 
     public void addCallback(JavaAudioDeviceModule.SamplesReadyCallback callback) {
-        synchronized (callbacks) {
-            callbacks.add(callback);
-        }
+        callbacks.add(callback);
     }
 
     public void removeCallback(JavaAudioDeviceModule.SamplesReadyCallback callback) {
-        synchronized (callbacks) {
-            callbacks.remove(callback);
-        }
+        callbacks.remove(callback);
     }
 
     @Override
     public void onWebRtcAudioRecordSamplesReady(JavaAudioDeviceModule.AudioSamples audioSamples) {
-        synchronized (callbacks) {
-            for (JavaAudioDeviceModule.SamplesReadyCallback callback : callbacks) {
-                callback.onWebRtcAudioRecordSamplesReady(audioSamples);
-            }
+        for (JavaAudioDeviceModule.SamplesReadyCallback callback : callbacks.snapshot()) {
+            callback.onWebRtcAudioRecordSamplesReady(audioSamples);
         }
     }
 }
@@ -0,0 +1,59 @@
+package com.cloudwebrtc.webrtc.audio;
+
+import java.util.Arrays;
+
+/**
+ * Callback list for the real-time audio paths.
+ *
+ * Writers copy the backing array and publish the new snapshot through a volatile field,
+ * readers simply iterate the snapshot they loaded. Dispatch therefore never takes a lock and
+ * never allocates, and adding or removing a callback from another thread cannot block or
+ * break an in-flight dispatch.
+ */
+public final class SnapshotCallbackList<T> {
+    private final T[] empty;
+    private volatile T[] snapshot;
+
+    /**
+     * @param empty an empty array of the callback type, e.g. {@code new Callback[0]}, which
+     *              gives the snapshots their element type.
+     */
+    public SnapshotCallbackList(T[] empty) {
+        this.empty = Arrays.copyOf(empty, 0);
+        this.snapshot = this.empty;
+    }
+
+    public synchronized void add(T callback) {
+        T[] current = snapshot;
+        T[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = callback;
+        snapshot = next;
+    }
+
+    public synchronized boolean remove(T callback) {
+        T[] current = snapshot;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].equals(callback)) {
+                if (current.length == 1) {
+                    snapshot = empty;
+                    return true;
+                }
+                T[] next = Arrays.copyOf(empty, current.length - 1);
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                snapshot = next;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return snapshot.length == 0;
+    }
+
+    /** Returns the current callbacks. The array is shared and must not be modified. */
+    public T[] snapshot() {
+        return snapshot;
+    }
+}
@@ -0,0 +1,219 @@
+package com.cloudwebrtc.webrtc.record;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.audio.AudioBufferPool;
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+import com.cloudwebrtc.webrtc.utils.PluginMetrics;
+
+import org.webrtc.audio.JavaAudioDeviceModule;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Encodes audio samples to AAC in MP4 or Opus in Ogg without a video track.
+ *
+ * Samples of up to two sources, usually the microphone and the playout, are copied into
+ * pooled buffers on the audio threads and posted to a dedicated encode thread, where an
+ * {@link AudioMixer} aligns, converts and mixes them into the encoder format.
+ */
+class AudioFileRenderer {
+    private static final String TAG = "AudioFileRenderer";
+    private static final long CODEC_TIMEOUT_US = 10000;
+    private static final int MAX_DRAIN_ATTEMPTS = 50;
+    // Bounds the wait for a free encoder input buffer when the recording ends.
+    private static final int MAX_FLUSH_ATTEMPTS = 50;
+    static final int MIXER_JITTER_MS = 60;
+
+    static final int SOURCE_PRIMARY = 0;
+    static final int SOURCE_SECONDARY = 1;
+
+    private final RecorderSettings settings;
+    private final String mimeType;
+    private final boolean mixSources;
+    private final RecordingMuxer muxer;
+    private final HandlerThread encodeThread;
+    private final Handler encodeHandler;
+    private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    private volatile AudioMixer mixer;
+    private short[] mixed;
+
+    private MediaCodec encoder;
+    private volatile int sampleRate;
+    private volatile int channelCount;
+    private int trackIndex = -1;
+    private long writtenFrames = 0;
+    private volatile boolean isRunning = true;
+
+    private final AtomicLong receivedBuffers = new AtomicLong();
+    private final AtomicLong encodedBytes = new AtomicLong();
+    private static final PluginMetrics.Counter encodedBytesMetric = PluginMetrics.instance.counter("recorder.audio.bytesEncoded");
+
+    AudioFileRenderer(String outputFile, RecorderSettings settings, boolean mixSources,
+                      @Nullable RecordingMuxer.Listener segmentListener) throws IOException {
+        this.settings = settings;
+        this.mixSources = mixSources;
+        mimeType = settings.getAudioOnlyMimeType();
+        muxer = new RecordingMuxer(outputFile, settings.getAudioOnlyMuxerFormat(), 1, false,
+                settings, segmentListener);
+        encodeThread = new HandlerThread(TAG + "EncodeThread");
+        encodeThread.start();
+        encodeHandler = new Handler(encodeThread.getLooper());
+    }
+
+    /** Called on the audio thread of {@code source}. */
+    void onSamples(int source, JavaAudioDeviceModule.AudioSamples audioSamples) {
+        if (!isRunning)
+            return;
+        receivedBuffers.incrementAndGet();
+        // Samples are reused by the producer once this callback returns.
+        final byte[] data = AudioBufferPool.shared.acquireArray(audioSamples.getData().length);
+        System.arraycopy(audioSamples.getData(), 0, data, 0, data.length);
+        final int rate = audioSamples.getSampleRate();
+        final int channels = audioSamples.getChannelCount();
+        final int audioFormat = audioSamples.getAudioFormat();
+        final long arrivalNs = System.nanoTime();
+        encodeHandler.post(() -> {
+            try {
+                if (encoder == null) {
+                    initEncoder(rate, channels);
+                }
+                if (encoder != null) {
+                    mixer.write(source, data, data.length, rate, channels, audioFormat, arrivalNs);
+                    encodeQueued(false);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to encode audio", e);
+            } finally {
+                AudioBufferPool.shared.releaseArray(data);
+            }
+        });
+    }
+
+    private void initEncoder(int rate, int channels) throws IOException {
+        sampleRate = rate;
+        // Mixed recordings get the wider layout since playout is usually stereo.
+        channelCount = mixSources ? 2 : channels;
+        MediaFormat format = MediaFormat.createAudioFormat(mimeType, sampleRate, channelCount);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, settings.audioBitrate);
+        if (RecorderSettings.MIME_AAC.equals(mimeType)) {
+            format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+        }
+        encoder = MediaCodec.createEncoderByType(mimeType);
+        encoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+        encoder.start();
+        mixer = new AudioMixer(sampleRate, channelCount, mixSources ? 2 : 1, MIXER_JITTER_MS);
+        // Up to 100 ms per encoder input buffer.
+        mixed = new short[sampleRate / 10 * channelCount];
+    }
+
+    /**
+     * Feeds the encoder with everything the mixer can provide. With {@code flush} set, a
+     * lagging source is not waited for. Otherwise samples that find no free input buffer stay
+     * in the mixer until the next call.
+     */
+    private void encodeQueued(boolean flush) {
+        int attempts = 0;
+        while (mixer.available(flush) > 0) {
+            int index = encoder.dequeueInputBuffer(flush ? CODEC_TIMEOUT_US : 0);
+            if (index < 0) {
+                if (!flush || ++attempts >= MAX_FLUSH_ATTEMPTS)
+                    break;
+                drainEncoder(false);
+                continue;
+            }
+            ByteBuffer buffer = encoder.getInputBuffer(index);
+            buffer.clear();
+            int maxFrames = Math.min(mixed.length, buffer.remaining() / 2) / channelCount;
+            int frames = mixer.read(mixed, maxFrames, flush);
+            buffer.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().put(mixed, 0, frames * channelCount);
+            encoder.queueInputBuffer(index, 0, frames * channelCount * 2, presentationTimeUs(), 0);
+            writtenFrames += frames;
+            if (frames == 0) {
+                break;
+            }
+        }
+        drainEncoder(false);
+    }
+
+    private long presentationTimeUs() {
+        return writtenFrames * 1000000L / sampleRate;
+    }
+
+    private void drainEncoder(boolean endOfStream) {
+        int attempts = 0;
+        while (true) {
+            int status = encoder.dequeueOutputBuffer(bufferInfo, endOfStream ? CODEC_TIMEOUT_US : 0);
+            if (status == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                if (!endOfStream || ++attempts >= MAX_DRAIN_ATTEMPTS)
+                    break;
+            } else if (status == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                trackIndex = muxer.addTrack(encoder.getOutputFormat());
+            } else if (status >= 0) {
+                ByteBuffer encodedData = encoder.getOutputBuffer(status);
+                boolean config = (bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0;
+                if (encodedData != null && !config && bufferInfo.size > 0) {
+                    encodedData.position(bufferInfo.offset);
+                    encodedData.limit(bufferInfo.offset + bufferInfo.size);
+                    muxer.writeSampleData(trackIndex, encodedData, bufferInfo, false);
+                    encodedBytes.addAndGet(bufferInfo.size);
+                    encodedBytesMetric.add(bufferInfo.size);
+                }
+                encoder.releaseOutputBuffer(status, false);
+                if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0)
+                    break;
+            }
+        }
+    }
+
+    ConstraintsMap getStats() {
+        ConstraintsMap params = new ConstraintsMap();
+        params.putLong("receivedBuffers", receivedBuffers.get());
+        params.putLong("encodedBytes", encodedBytes.get());
+        params.putInt("sampleRate", sampleRate);
+        params.putInt("channelCount", channelCount);
+        params.putInt("segmentIndex", muxer.getSegmentIndex());
+        AudioMixer audioMixer = mixer;
+        if (audioMixer != null) {
+            params.putMap("mixer", audioMixer.getStats().toMap());
+        }
+        return params;
+    }
+
+    /**
+     * Encodes the remaining samples, finishes the file and releases all resources.
+     */
+    void release() {
+        isRunning = false;
+        encodeHandler.post(() -> {
+            try {
+                if (encoder != null) {
+                    encodeQueued(true);
+                    int index = encoder.dequeueInputBuffer(CODEC_TIMEOUT_US);
+                    if (index >= 0) {
+                        encoder.queueInputBuffer(index, 0, 0, presentationTimeUs(),
+                                MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                        drainEncoder(true);
+                    }
+                    encoder.stop();
+                    encoder.release();
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to finish audio recording", e);
+            } finally {
+                muxer.release();
+                encodeThread.quit();
+            }
+        });
+    }
+}
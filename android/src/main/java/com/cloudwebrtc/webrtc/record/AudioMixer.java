@@ -0,0 +1,354 @@
+package com.cloudwebrtc.webrtc.record;
+
+import android.media.AudioFormat;
+
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Mixes up to two 16 bit PCM sources, e.g. microphone and playout, into one stream.
+ *
+ * Every source is converted to the output channel count and, with linear interpolation, to the
+ * output sample rate. Buffers are placed on a common timeline by their arrival time: a buffer
+ * arriving more than the jitter window after the end of its source's queue is preceded by
+ * silence, so a muted or paused source stays in sync. Smaller deviations, e.g. from a device
+ * clock running slightly off its nominal rate, are averaged and corrected by inserting or
+ * dropping frames once they exceed {@link #DRIFT_TOLERANCE_MS}. Mixing waits up to the jitter
+ * window for a lagging source before it is treated as silent. The sum is run through a peak
+ * limiter instead of clipping hard.
+ *
+ * Not thread safe, all calls are expected on the encode thread.
+ */
+class AudioMixer {
+    private static final int MAX_BUFFERED_MS = 1000;
+    // Per block recovery of the limiter gain towards 1.
+    private static final float LIMITER_RELEASE = 0.05f;
+    // Kept well below one video frame so audio and video stay in sync.
+    private static final int DRIFT_TOLERANCE_MS = 10;
+    private static final double DRIFT_SMOOTHING = 0.05;
+
+    private final class Source {
+        final short[] samples = new short[maxBufferedFrames * channelCount];
+        int readPos = 0;
+        int size = 0;
+        // Output frame index of the first queued frame.
+        long startFrame = 0;
+        boolean active = false;
+        // Averaged distance in frames between arrival time and queue end, positive if behind.
+        double drift = 0;
+        // Frames still to drop from the next input, for a source ahead whose queue was mixed.
+        long pendingDrop = 0;
+
+        // Resampler state, the previous input frame and the position between it and the next.
+        final short[] previous = new short[channelCount];
+        final short[] current = new short[channelCount];
+        boolean hasPrevious = false;
+        double phase = 0;
+
+        long endFrame() {
+            return startFrame + size / channelCount;
+        }
+
+        void writeFrame(short[] frame) {
+            if (size == samples.length) {
+                // Overrun, drop the oldest frame to keep the most recent audio.
+                readPos = (readPos + channelCount) % samples.length;
+                size -= channelCount;
+                startFrame++;
+                droppedFrames++;
+            }
+            for (int c = 0; c < channelCount; c++) {
+                samples[(readPos + size) % samples.length] = frame[c];
+                size++;
+            }
+        }
+
+        void writeSilence(long frames) {
+            long cancelled = Math.min(frames, pendingDrop);
+            pendingDrop -= cancelled;
+            frames -= cancelled;
+            if (frames == 0) {
+                return;
+            }
+            if (size == 0 || frames >= maxBufferedFrames) {
+                // Writing would only push out everything queued, leave the gap empty instead:
+                // mixing keeps the frames before startFrame silent. This holds a pause of any
+                // length in constant time.
+                long queued = size / channelCount;
+                droppedFrames += queued;
+                startFrame += queued + frames;
+                readPos = 0;
+                size = 0;
+                silenceFrames += frames;
+                return;
+            }
+            for (int c = 0; c < channelCount; c++) {
+                current[c] = 0;
+            }
+            for (long i = 0; i < frames; i++) {
+                writeFrame(current);
+            }
+            silenceFrames += frames;
+        }
+
+        void dropNewest(long frames) {
+            int count = (int) Math.min(frames, size / channelCount);
+            size -= count * channelCount;
+            droppedFrames += count;
+            // Already mixed frames cannot be taken back, drop the rest from the next input.
+            pendingDrop += frames - count;
+        }
+
+        /** Drops the frame if a correction is pending, returns whether it was dropped. */
+        boolean dropPending() {
+            if (pendingDrop == 0) {
+                return false;
+            }
+            pendingDrop--;
+            droppedFrames++;
+            return true;
+        }
+
+        short read() {
+            short value = samples[readPos];
+            readPos = (readPos + 1) % samples.length;
+            size--;
+            return value;
+        }
+    }
+
+    private final int sampleRate;
+    private final int channelCount;
+    private final int maxBufferedFrames;
+    private final int jitterFrames;
+    private final int driftFrames;
+    private final Source[] sources;
+    private long startNs = -1;
+    // Output frame index of the next frame read.
+    private volatile long mixedFrames = 0;
+    private float limiterGain = 1f;
+    private final int[] mixBuffer;
+    private final short[] resampledFrame;
+
+    private volatile long droppedFrames = 0;
+    private volatile long silenceFrames = 0;
+    private volatile long limitedBlocks = 0;
+
+    /**
+     * @param jitterMs how long a late source is waited for, and how much arrival jitter is
+     *                 tolerated before silence is inserted.
+     */
+    AudioMixer(int sampleRate, int channelCount, int sourceCount, int jitterMs) {
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        maxBufferedFrames = sampleRate * MAX_BUFFERED_MS / 1000;
+        jitterFrames = sampleRate * jitterMs / 1000;
+        driftFrames = sampleRate * DRIFT_TOLERANCE_MS / 1000;
+        sources = new Source[sourceCount];
+        for (int i = 0; i < sourceCount; i++) {
+            sources[i] = new Source();
+        }
+        mixBuffer = new int[maxBufferedFrames * channelCount];
+        resampledFrame = new short[channelCount];
+    }
+
+    int getSampleRate() {
+        return sampleRate;
+    }
+
+    int getChannelCount() {
+        return channelCount;
+    }
+
+    /** Index of the next frame returned by {@link #read}. */
+    long getMixedFrames() {
+        return mixedFrames;
+    }
+
+    /** Capture time on {@code System.nanoTime()} of the output frame at {@code frame}. */
+    long getFrameTimeNs(long frame) {
+        return startNs + frame * 1000000000L / sampleRate;
+    }
+
+    /**
+     * Queues little endian PCM samples of {@code source}.
+     *
+     * @param audioFormat one of {@code AudioFormat.ENCODING_PCM_8BIT}, {@code _16BIT} or
+     *                    {@code _FLOAT}.
+     * @param arrivalNs {@code System.nanoTime()} when the buffer was delivered, taken as the
+     *                  time of its last sample.
+     */
+    void write(int source, byte[] data, int length, int rate, int channels, int audioFormat, long arrivalNs) {
+        Source src = sources[source];
+        int inputFrames = length / (channels * RecordingClock.bytesPerSample(audioFormat));
+        if (inputFrames == 0) {
+            return;
+        }
+        long durationNs = RecordingClock.durationNs(length, rate, channels, audioFormat);
+        if (startNs < 0) {
+            startNs = arrivalNs - durationNs;
+        }
+        long frame = (arrivalNs - durationNs - startNs) * sampleRate / 1000000000L;
+        if (!src.active) {
+            src.active = true;
+            src.startFrame = Math.max(frame, mixedFrames);
+        } else {
+            long offset = frame - (src.endFrame() - src.pendingDrop);
+            if (offset > jitterFrames) {
+                // The source paused, e.g. muted or no remote audio, keep its timeline.
+                src.writeSilence(offset);
+                src.drift = 0;
+            } else {
+                src.drift += (offset - src.drift) * DRIFT_SMOOTHING;
+                if (Math.abs(src.drift) > driftFrames) {
+                    long correction = Math.round(src.drift);
+                    if (correction > 0) {
+                        src.writeSilence(correction);
+                    } else {
+                        src.dropNewest(-correction);
+                    }
+                    src.drift = 0;
+                }
+            }
+        }
+
+        ByteBuffer pcm = ByteBuffer.wrap(data, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        double step = (double) rate / sampleRate;
+        for (int i = 0; i < inputFrames; i++) {
+            readFrame(pcm, channels, audioFormat, src.current);
+            if (rate == sampleRate) {
+                if (!src.dropPending()) {
+                    src.writeFrame(src.current);
+                }
+                continue;
+            }
+            if (!src.hasPrevious) {
+                System.arraycopy(src.current, 0, src.previous, 0, channelCount);
+                src.hasPrevious = true;
+            }
+            while (src.phase < 1) {
+                for (int c = 0; c < channelCount; c++) {
+                    resampledFrame[c] = (short) (src.previous[c]
+                            + (src.current[c] - src.previous[c]) * src.phase);
+                }
+                if (!src.dropPending()) {
+                    src.writeFrame(resampledFrame);
+                }
+                src.phase += step;
+            }
+            src.phase -= 1;
+            System.arraycopy(src.current, 0, src.previous, 0, channelCount);
+        }
+    }
+
+    /** Reads one input frame converted to the output channel count. */
+    private void readFrame(ByteBuffer pcm, int channels, int audioFormat, short[] out) {
+        if (channels == channelCount) {
+            for (int c = 0; c < channels; c++) {
+                out[c] = readSample(pcm, audioFormat);
+            }
+            return;
+        }
+        int sum = 0;
+        for (int c = 0; c < channels; c++) {
+            sum += readSample(pcm, audioFormat);
+        }
+        // Mono is duplicated, anything else is down mixed to the average.
+        short value = (short) (sum / channels);
+        for (int c = 0; c < channelCount; c++) {
+            out[c] = value;
+        }
+    }
+
+    private static short readSample(ByteBuffer pcm, int audioFormat) {
+        switch (audioFormat) {
+            case AudioFormat.ENCODING_PCM_8BIT:
+                return (short) (((pcm.get() & 0xff) - 128) << 8);
+            case AudioFormat.ENCODING_PCM_FLOAT:
+                float value = Math.max(-1f, Math.min(1f, pcm.getFloat()));
+                return (short) (value * Short.MAX_VALUE);
+            default:
+                return pcm.getShort();
+        }
+    }
+
+    /**
+     * Number of frames that can be mixed now. Without {@code flush} a lagging source is
+     * waited for until the leading one is more than the jitter window ahead.
+     */
+    int available(boolean flush) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (Source src : sources) {
+            if (!src.active) {
+                continue;
+            }
+            min = Math.min(min, src.endFrame());
+            max = Math.max(max, src.endFrame());
+        }
+        if (max == Long.MIN_VALUE) {
+            return 0;
+        }
+        long end = flush ? max : Math.max(min, max - jitterFrames);
+        return (int) Math.max(0, Math.min(end - mixedFrames, maxBufferedFrames));
+    }
+
+    /**
+     * Mixes up to {@code maxFrames} frames into {@code out} as interleaved samples.
+     *
+     * @return the number of frames written.
+     */
+    int read(short[] out, int maxFrames, boolean flush) {
+        int frames = Math.min(available(flush), maxFrames);
+        if (frames == 0) {
+            return 0;
+        }
+        int count = frames * channelCount;
+        int peak = 0;
+        for (int i = 0; i < count; i++) {
+            mixBuffer[i] = 0;
+        }
+        for (Source src : sources) {
+            if (!src.active) {
+                continue;
+            }
+            // Frames before the source started or after it ran dry stay silent.
+            long skip = src.startFrame - mixedFrames;
+            if (skip >= frames) {
+                continue;
+            }
+            int offset = (int) Math.max(0, skip);
+            int readFrames = Math.min(frames - offset, src.size / channelCount);
+            for (int i = offset * channelCount; i < (offset + readFrames) * channelCount; i++) {
+                mixBuffer[i] += src.read();
+            }
+            src.startFrame = src.size > 0 ? mixedFrames + offset + readFrames : mixedFrames + frames;
+        }
+        for (int i = 0; i < count; i++) {
+            peak = Math.max(peak, Math.abs(mixBuffer[i]));
+        }
+        if (peak * limiterGain > Short.MAX_VALUE) {
+            limiterGain = (float) Short.MAX_VALUE / peak;
+            limitedBlocks++;
+        } else {
+            limiterGain = Math.min(1f, limiterGain + (1f - limiterGain) * LIMITER_RELEASE);
+        }
+        for (int i = 0; i < count; i++) {
+            int value = Math.round(mixBuffer[i] * limiterGain);
+            out[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+        }
+        mixedFrames += frames;
+        return frames;
+    }
+
+    ConstraintsMap getStats() {
+        ConstraintsMap params = new ConstraintsMap();
+        params.putLong("mixedFrames", mixedFrames);
+        params.putLong("droppedFrames", droppedFrames);
+        params.putLong("silenceFrames", silenceFrames);
+        params.putLong("limitedBlocks", limitedBlocks);
+        return params;
+    }
+}
@@ -6,6 +6,8 @@ import android.media.AudioManager;
 import android.media.AudioTrack;
 import android.os.Build;
 
+import com.cloudwebrtc.webrtc.audio.AudioBufferPool;
+
 import org.webrtc.audio.JavaAudioDeviceModule.AudioSamples;
 import org.webrtc.audio.JavaAudioDeviceModule.SamplesReadyCallback;
 
@@ -16,10 +18,16 @@ import androidx.annotation.NonNull;
 /**
  * Wrapper around audio track
  * Intercepts write calls and passes it to callback
+ * The samples handed to the callback are reused for the next write, callbacks must copy
+ * the data if they need it after returning.
  * **/
 public final class AudioTrackInterceptor extends AudioTrack {
     final public AudioTrack originalTrack;
     final private SamplesReadyCallback callback;
+    private byte[] scratch;
+    private AudioSamples scratchSamples;
+    private byte[] lastArray;
+    private AudioSamples lastArraySamples;
 
     public AudioTrackInterceptor(@NonNull AudioTrack originalTrack, @NonNull SamplesReadyCallback callback) {
         // That just random params, we don't care about object that will be created
@@ -37,31 +45,48 @@ public final class AudioTrackInterceptor extends AudioTrack {
 
     @Override
     public int write(@NonNull byte[] audioData, int offsetInBytes, int sizeInBytes) {
-        callback.onWebRtcAudioRecordSamplesReady(new AudioSamples(
-            originalTrack.getAudioFormat(),
-            originalTrack.getChannelCount(),
-            originalTrack.getSampleRate(),
-            audioData
-        ));
+        if (audioData != lastArray || !matchesTrack(lastArraySamples)) {
+            lastArray = audioData;
+            lastArraySamples = new AudioSamples(
+                originalTrack.getAudioFormat(),
+                originalTrack.getChannelCount(),
+                originalTrack.getSampleRate(),
+                audioData
+            );
+        }
+        callback.onWebRtcAudioRecordSamplesReady(lastArraySamples);
         return originalTrack.write(audioData, offsetInBytes, sizeInBytes);
     }
 
     @TargetApi(Build.VERSION_CODES.LOLLIPOP)
     @Override
     public int write(@NonNull ByteBuffer audioData, int sizeInBytes, int writeMode) {
-        byte[] trimmed = new byte[sizeInBytes];
+        if (scratch == null || scratch.length != sizeInBytes || !matchesTrack(scratchSamples)) {
+            if (scratch != null) {
+                AudioBufferPool.shared.releaseArray(scratch);
+            }
+            scratch = AudioBufferPool.shared.acquireArray(sizeInBytes);
+            scratchSamples = new AudioSamples(
+                originalTrack.getAudioFormat(),
+                originalTrack.getChannelCount(),
+                originalTrack.getSampleRate(),
+                scratch
+            );
+        }
         int position = audioData.position();
-        audioData.get(trimmed, 0, sizeInBytes);
+        audioData.get(scratch, 0, sizeInBytes);
         audioData.position(position);
-        callback.onWebRtcAudioRecordSamplesReady(new AudioSamples(
-            originalTrack.getAudioFormat(),
-            originalTrack.getChannelCount(),
-            originalTrack.getSampleRate(),
-            trimmed
-        ));
+        callback.onWebRtcAudioRecordSamplesReady(scratchSamples);
         return originalTrack.write(audioData, sizeInBytes, writeMode);
     }
 
+    private boolean matchesTrack(AudioSamples samples) {
+        return samples != null
+            && samples.getAudioFormat() == originalTrack.getAudioFormat()
+            && samples.getChannelCount() == originalTrack.getChannelCount()
+            && samples.getSampleRate() == originalTrack.getSampleRate();
+    }
+
     /**
      * Override all required calls to mimic original track
      * https://webrtc.googlesource.com/src/+/master/sdk/android/src/java/org/webrtc/audio/WebRtcAudioTrack.java
@@ -102,6 +127,11 @@ public final class AudioTrackInterceptor extends AudioTrack {
 
     @Override
     public void release() {
+        if (scratch != null) {
+            AudioBufferPool.shared.releaseArray(scratch);
+            scratch = null;
+            scratchSamples = null;
+        }
         originalTrack.release();
     }
 
@@ -0,0 +1,141 @@
+package com.cloudwebrtc.webrtc.record;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.AnyThreadSink;
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoSink;
+import org.webrtc.VideoTrack;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.flutter.plugin.common.BinaryMessenger;
+import io.flutter.plugin.common.EventChannel;
+
+/**
+ * Periodically encodes frames of a track and streams them to Dart.
+ *
+ * Frames are picked by interval or every n-th frame and encoded by the shared
+ * {@link FrameSnapshotRenderer}. At most one frame per session is in flight; frames arriving
+ * while it is still being encoded, or while the renderer is backed up, are dropped instead of
+ * queued. Encoded frames are sent on "FlutterWebRTC/frameCapture" + id.
+ */
+public class FrameCaptureSession implements VideoSink, EventChannel.StreamHandler {
+    private static final int MAX_RENDERER_BACKLOG = 4;
+
+    private final int id;
+    private final VideoTrack videoTrack;
+    private final long intervalMs;
+    private final int everyNthFrame;
+    private final FrameSnapshotRenderer.Options options;
+    private final EventChannel eventChannel;
+    private final AtomicBoolean inFlight = new AtomicBoolean(false);
+    private volatile EventChannel.EventSink eventSink;
+    private volatile boolean running = false;
+
+    private long frameCount = 0;
+    private long lastCaptureMs = 0;
+    private final AtomicLong capturedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+
+    public FrameCaptureSession(BinaryMessenger messenger, int id, VideoTrack videoTrack, long intervalMs,
+                               int everyNthFrame, FrameSnapshotRenderer.Options options) {
+        this.id = id;
+        this.videoTrack = videoTrack;
+        this.intervalMs = intervalMs;
+        this.everyNthFrame = everyNthFrame;
+        this.options = options;
+        eventChannel = new EventChannel(messenger, "FlutterWebRTC/frameCapture" + id);
+        eventChannel.setStreamHandler(this);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void start() {
+        running = true;
+        videoTrack.addSink(this);
+    }
+
+    /** Must be called on the main thread. */
+    public void stop() {
+        running = false;
+        videoTrack.removeSink(this);
+        eventChannel.setStreamHandler(null);
+        eventSink = null;
+    }
+
+    public ConstraintsMap getStats() {
+        ConstraintsMap params = new ConstraintsMap();
+        params.putLong("capturedFrames", capturedFrames.get());
+        params.putLong("droppedFrames", droppedFrames.get());
+        return params;
+    }
+
+    @Override
+    public void onListen(Object o, EventChannel.EventSink sink) {
+        eventSink = new AnyThreadSink(sink);
+    }
+
+    @Override
+    public void onCancel(Object o) {
+        eventSink = null;
+    }
+
+    @Override
+    public void onFrame(VideoFrame frame) {
+        if (!running || eventSink == null) {
+            return;
+        }
+        frameCount++;
+        if (everyNthFrame > 1 && frameCount % everyNthFrame != 0) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        if (intervalMs > 0 && lastCaptureMs != 0 && now - lastCaptureMs < intervalMs) {
+            return;
+        }
+        FrameSnapshotRenderer renderer = FrameSnapshotRenderer.getInstance();
+        if (renderer.getPendingCount() >= MAX_RENDERER_BACKLOG || !inFlight.compareAndSet(false, true)) {
+            droppedFrames.incrementAndGet();
+            return;
+        }
+        lastCaptureMs = now;
+        final long timestampNs = frame.getTimestampNs();
+        frame.retain();
+        renderer.snapshot(frame, options, null, new FrameSnapshotRenderer.Callback() {
+            @Override
+            public void onSnapshot(@Nullable byte[] data, int width, int height) {
+                inFlight.set(false);
+                capturedFrames.incrementAndGet();
+                EventChannel.EventSink sink = eventSink;
+                if (sink == null) {
+                    return;
+                }
+                ConstraintsMap params = new ConstraintsMap();
+                params.putString("event", "frame");
+                params.putByte("data", data);
+                params.putInt("width", width);
+                params.putInt("height", height);
+                params.putLong("timestampUs", timestampNs / 1000);
+                sink.success(params.toMap());
+            }
+
+            @Override
+            public void onError(String code, String message) {
+                inFlight.set(false);
+                droppedFrames.incrementAndGet();
+                EventChannel.EventSink sink = eventSink;
+                if (sink != null) {
+                    sink.error(code, message, null);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,249 @@
+package com.cloudwebrtc.webrtc.record;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.opengl.GLES20;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.EglUtils;
+
+import org.webrtc.EglBase;
+import org.webrtc.GlRectDrawer;
+import org.webrtc.GlTextureFrameBuffer;
+import org.webrtc.GlUtil;
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoFrameDrawer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Turns video frames into encoded images.
+ *
+ * Frames are drawn with GL on a dedicated thread, which applies the frame rotation and the
+ * requested downscale in a single pass for texture and I420 buffers alike. The pixels are read
+ * back into a reused buffer and bitmap and encoded once on the same thread, so the frame
+ * thread only retains the frame and posts it.
+ */
+public class FrameSnapshotRenderer {
+    private static final String TAG = "FrameSnapshotRenderer";
+
+    private static FrameSnapshotRenderer instance;
+
+    public static synchronized FrameSnapshotRenderer getInstance() {
+        if (instance == null) {
+            instance = new FrameSnapshotRenderer(EglUtils.getRootEglBaseContext());
+        }
+        return instance;
+    }
+
+    public static synchronized void releaseInstance() {
+        if (instance != null) {
+            instance.release();
+            instance = null;
+        }
+    }
+
+    public static class Options {
+        public Bitmap.CompressFormat format = Bitmap.CompressFormat.JPEG;
+        public int quality = 100;
+        /** Upper bound of the output size after rotation, 0 means unbounded. */
+        public int maxWidth = 0;
+        public int maxHeight = 0;
+
+        /**
+         * @param format "jpeg" (default), "png" or "webp".
+         */
+        public static Options from(@Nullable String format, @Nullable Integer quality,
+                                   @Nullable Integer maxWidth, @Nullable Integer maxHeight) {
+            Options options = new Options();
+            if ("png".equalsIgnoreCase(format)) {
+                options.format = Bitmap.CompressFormat.PNG;
+            } else if ("webp".equalsIgnoreCase(format)) {
+                options.format = Bitmap.CompressFormat.WEBP;
+            }
+            if (quality != null) {
+                options.quality = Math.max(0, Math.min(100, quality));
+            }
+            if (maxWidth != null) {
+                options.maxWidth = maxWidth;
+            }
+            if (maxHeight != null) {
+                options.maxHeight = maxHeight;
+            }
+            return options;
+        }
+    }
+
+    public interface Callback {
+        /**
+         * Called on the snapshot thread.
+         *
+         * @param data the encoded image, or null if it was written to a file.
+         */
+        void onSnapshot(@Nullable byte[] data, int width, int height);
+
+        void onError(String code, String message);
+    }
+
+    private final EglBase.Context sharedContext;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Matrix drawMatrix = new Matrix();
+
+    private EglBase eglBase;
+    private GlRectDrawer drawer;
+    private VideoFrameDrawer frameDrawer;
+    private GlTextureFrameBuffer frameBuffer;
+    private ByteBuffer pixels;
+    private Bitmap bitmap;
+    private final ByteArrayOutputStream bytesStream = new ByteArrayOutputStream();
+
+    FrameSnapshotRenderer(EglBase.Context sharedContext) {
+        this.sharedContext = sharedContext;
+        thread = new HandlerThread(TAG);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        // glReadPixels returns the rows bottom up, draw upside down so they end up top down.
+        drawMatrix.preTranslate(0.5f, 0.5f);
+        drawMatrix.preScale(1f, -1f);
+        drawMatrix.preTranslate(-0.5f, -0.5f);
+    }
+
+    /** Number of frames posted but not encoded yet. */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Encodes {@code frame} off the calling thread. The caller must have retained the frame,
+     * it is released once it has been drawn.
+     *
+     * @param file target file, or null to deliver the encoded bytes to the callback.
+     */
+    public void snapshot(VideoFrame frame, Options options, @Nullable File file, Callback callback) {
+        pending.incrementAndGet();
+        boolean posted = handler.post(() -> {
+            try {
+                snapshotOnThread(frame, options, file, callback);
+            } finally {
+                pending.decrementAndGet();
+            }
+        });
+        if (!posted) {
+            pending.decrementAndGet();
+            frame.release();
+            callback.onError("captureFrame", "Snapshot renderer was released");
+        }
+    }
+
+    private void snapshotOnThread(VideoFrame frame, Options options, @Nullable File file, Callback callback) {
+        int frameWidth = frame.getRotatedWidth();
+        int frameHeight = frame.getRotatedHeight();
+        float scale = 1f;
+        if (options.maxWidth > 0) {
+            scale = Math.min(scale, (float) options.maxWidth / frameWidth);
+        }
+        if (options.maxHeight > 0) {
+            scale = Math.min(scale, (float) options.maxHeight / frameHeight);
+        }
+        int width = Math.max(1, Math.round(frameWidth * scale));
+        int height = Math.max(1, Math.round(frameHeight * scale));
+
+        try {
+            render(frame, width, height);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to render frame", e);
+            callback.onError("captureFrame", "Failed to render frame: " + e.getMessage());
+            return;
+        } finally {
+            frame.release();
+        }
+
+        if (bitmap == null || bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        }
+        pixels.rewind();
+        bitmap.copyPixelsFromBuffer(pixels);
+
+        if (file == null) {
+            bytesStream.reset();
+            bitmap.compress(options.format, options.quality, bytesStream);
+            callback.onSnapshot(bytesStream.toByteArray(), width, height);
+            return;
+        }
+        try {
+            if (!file.exists()) {
+                //noinspection ResultOfMethodCallIgnored
+                file.getParentFile().mkdirs();
+            }
+            try (OutputStream outputStream = new FileOutputStream(file)) {
+                bitmap.compress(options.format, options.quality, outputStream);
+            }
+            callback.onSnapshot(null, width, height);
+        } catch (IOException io) {
+            callback.onError("IOException", io.getLocalizedMessage());
+        }
+    }
+
+    private void render(VideoFrame frame, int width, int height) {
+        if (eglBase == null) {
+            eglBase = EglBase.create(sharedContext, EglBase.CONFIG_PIXEL_BUFFER);
+            eglBase.createDummyPbufferSurface();
+            eglBase.makeCurrent();
+            drawer = new GlRectDrawer();
+            frameDrawer = new VideoFrameDrawer();
+            frameBuffer = new GlTextureFrameBuffer(GLES20.GL_RGBA);
+        }
+        frameBuffer.setSize(width, height);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, frameBuffer.getFrameBufferId());
+        GLES20.glFramebufferTexture2D(GLES20.GL_FRAMEBUFFER, GLES20.GL_COLOR_ATTACHMENT0,
+                GLES20.GL_TEXTURE_2D, frameBuffer.getTextureId(), 0);
+        GLES20.glClearColor(0, 0, 0, 0);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        frameDrawer.drawFrame(frame, drawer, drawMatrix, 0, 0, width, height);
+
+        int size = width * height * 4;
+        if (pixels == null || pixels.capacity() < size) {
+            pixels = ByteBuffer.allocateDirect(size);
+        }
+        pixels.clear();
+        pixels.limit(size);
+        GLES20.glViewport(0, 0, width, height);
+        GLES20.glReadPixels(0, 0, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, pixels);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        GlUtil.checkNoGLES2Error("FrameSnapshotRenderer.render");
+    }
+
+    private void release() {
+        handler.post(() -> {
+            if (frameDrawer != null) {
+                frameDrawer.release();
+                drawer.release();
+                frameBuffer.release();
+                eglBase.release();
+                frameDrawer = null;
+                eglBase = null;
+            }
+            if (bitmap != null) {
+                bitmap.recycle();
+                bitmap = null;
+            }
+            pixels = null;
+        });
+        thread.quitSafely();
+    }
+}
@@ -1,8 +1,10 @@
 package com.cloudwebrtc.webrtc.record;
 
 import androidx.annotation.Nullable;
+import android.os.Build;
 import android.util.Log;
 
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
 import com.cloudwebrtc.webrtc.utils.EglUtils;
 
 import org.webrtc.VideoTrack;
@@ -11,23 +13,56 @@ import java.io.File;
 
 public class MediaRecorderImpl {
 
+    public interface SegmentListener {
+        /** Called on an encode thread when a segment file has been finished. */
+        void onSegmentClosed(Integer recorderId, String path, int index, long durationUs, long sizeBytes);
+    }
+
     private final Integer id;
     private final VideoTrack videoTrack;
     private final AudioSamplesInterceptor audioInterceptor;
+    @Nullable private final AudioSamplesInterceptor mixedAudioInterceptor;
+    private final RecorderSettings settings;
     private VideoFileRenderer videoFileRenderer;
+    private AudioFileRenderer audioFileRenderer;
     private boolean isRunning = false;
     private File recordFile;
+    @Nullable private SegmentListener segmentListener;
 
     public MediaRecorderImpl(Integer id, @Nullable VideoTrack videoTrack, @Nullable AudioSamplesInterceptor audioInterceptor) {
+        this(id, videoTrack, audioInterceptor, null, new RecorderSettings());
+    }
+
+    /**
+     * @param mixedAudioInterceptor second audio source mixed into the track of
+     *                              {@code audioInterceptor}.
+     */
+    public MediaRecorderImpl(Integer id, @Nullable VideoTrack videoTrack, @Nullable AudioSamplesInterceptor audioInterceptor,
+                             @Nullable AudioSamplesInterceptor mixedAudioInterceptor, RecorderSettings settings) {
         this.id = id;
         this.videoTrack = videoTrack;
         this.audioInterceptor = audioInterceptor;
+        this.mixedAudioInterceptor = mixedAudioInterceptor;
+        this.settings = settings;
+    }
+
+    public void setSegmentListener(@Nullable SegmentListener listener) {
+        segmentListener = listener;
     }
 
     public void startRecording(File file) throws Exception {
         recordFile = file;
         if (isRunning)
             return;
+        if (audioInterceptor != null && Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            // There is no Opus encoder and no Ogg muxer before Android 10.
+            if (videoTrack != null && RecorderSettings.MIME_OPUS.equals(settings.getAudioMimeType())) {
+                throw new Exception("VP8 recording with audio requires Android 10");
+            }
+            if (videoTrack == null && RecorderSettings.MIME_OPUS.equals(settings.getAudioOnlyMimeType())) {
+                throw new Exception("Opus recording requires Android 10");
+            }
+        }
         isRunning = true;
         //noinspection ResultOfMethodCallIgnored
         file.getParentFile().mkdirs();
@@ -35,26 +70,78 @@ public class MediaRecorderImpl {
             videoFileRenderer = new VideoFileRenderer(
                 file.getAbsolutePath(),
                 EglUtils.getRootEglBaseContext(),
-                audioInterceptor != null
+                audioInterceptor != null,
+                audioInterceptor != null && mixedAudioInterceptor != null,
+                settings,
+                this::onSegmentClosed
             );
-            videoTrack.addSink(videoFileRenderer);
-            if (audioInterceptor != null)
-                audioInterceptor.attachCallback(id, videoFileRenderer);
-        } else {
-            Log.e(TAG, "Video track is null");
+            final VideoFileRenderer renderer = videoFileRenderer;
+            videoTrack.addSink(renderer);
             if (audioInterceptor != null) {
-                //TODO(rostopira): audio only recording
-                throw new Exception("Audio-only recording not implemented yet");
+                audioInterceptor.attachCallback(id, renderer);
+                if (mixedAudioInterceptor != null)
+                    mixedAudioInterceptor.attachCallback(id,
+                        samples -> renderer.onAudioSamples(AudioFileRenderer.SOURCE_SECONDARY, samples));
             }
+        } else if (audioInterceptor != null) {
+            final AudioFileRenderer renderer = new AudioFileRenderer(
+                file.getAbsolutePath(),
+                settings,
+                mixedAudioInterceptor != null,
+                this::onSegmentClosed
+            );
+            audioFileRenderer = renderer;
+            audioInterceptor.attachCallback(id,
+                samples -> renderer.onSamples(AudioFileRenderer.SOURCE_PRIMARY, samples));
+            if (mixedAudioInterceptor != null)
+                mixedAudioInterceptor.attachCallback(id,
+                    samples -> renderer.onSamples(AudioFileRenderer.SOURCE_SECONDARY, samples));
+        } else {
+            Log.e(TAG, "Video track is null");
         }
     }
 
     public File getRecordFile() { return recordFile; }
 
+    /** True if the recording has a video track, audio-only otherwise. */
+    public boolean hasVideo() { return videoTrack != null; }
+
+    /** True if the output is split into segment files instead of {@link #getRecordFile()}. */
+    public boolean isSegmented() { return settings.isSegmented(); }
+
+    public String getMimeType() { return settings.getContainerMimeType(hasVideo()); }
+
+    private void onSegmentClosed(String path, int index, long durationUs, long sizeBytes) {
+        SegmentListener listener = segmentListener;
+        if (listener != null) {
+            listener.onSegmentClosed(id, path, index, durationUs, sizeBytes);
+        }
+    }
+
+    public ConstraintsMap getStats() {
+        ConstraintsMap params = new ConstraintsMap();
+        params.putBoolean("recording", isRunning);
+        VideoFileRenderer renderer = videoFileRenderer;
+        if (renderer != null) {
+            params.putMap("video", renderer.getStats().toMap());
+        }
+        AudioFileRenderer audioRenderer = audioFileRenderer;
+        if (audioRenderer != null) {
+            params.putMap("audio", audioRenderer.getStats().toMap());
+        }
+        return params;
+    }
+
     public void stopRecording() {
         isRunning = false;
         if (audioInterceptor != null)
             audioInterceptor.detachCallback(id);
+        if (mixedAudioInterceptor != null)
+            mixedAudioInterceptor.detachCallback(id);
+        if (audioFileRenderer != null) {
+            audioFileRenderer.release();
+            audioFileRenderer = null;
+        }
         if (videoTrack != null && videoFileRenderer != null) {
             videoTrack.removeSink(videoFileRenderer);
             videoFileRenderer.release();
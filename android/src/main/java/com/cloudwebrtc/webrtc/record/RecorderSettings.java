@@ -0,0 +1,289 @@
+package com.cloudwebrtc.webrtc.record;
+
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaMuxer;
+import android.os.Build;
+import android.util.Log;
+import android.util.Range;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+
+/**
+ * Encoder settings of a recording, as passed in the "options" of {@code startRecordToFile}.
+ */
+public class RecorderSettings {
+    private static final String TAG = "RecorderSettings";
+
+    static final String MIME_AVC = "video/avc";
+    static final String MIME_HEVC = "video/hevc";
+    static final String MIME_VP8 = "video/x-vnd.on2.vp8";
+    static final String MIME_AAC = "audio/mp4a-latm";
+    static final String MIME_OPUS = "audio/opus";
+    // MediaMuxer.OutputFormat.MUXER_OUTPUT_OGG, added in API 29.
+    private static final int MUXER_OUTPUT_OGG = 2;
+
+    public enum FrameDropPolicy {
+        /** Replace the oldest queued frame, keeping the recording close to live. */
+        DROP_OLDEST,
+        /** Discard the incoming frame, keeping already queued frames. */
+        DROP_NEWEST
+    }
+
+    /** Bits per pixel used to derive the bitrate from the output size if none is given. */
+    private static final double DEFAULT_BITS_PER_PIXEL = 0.1;
+
+    public String videoMimeType = MIME_AVC;
+    /** Target bitrate in bps, 0 derives it from the output size and frame rate. */
+    public int videoBitrate = 0;
+    /** One of {@code MediaCodecInfo.EncoderCapabilities.BITRATE_MODE_*}, -1 for the encoder default. */
+    public int bitrateMode = -1;
+    /**
+     * Quality in percent of the encoder's quality range in {@code BITRATE_MODE_CQ}, -1 for the
+     * middle of the range.
+     */
+    public int videoQuality = -1;
+    public int keyFrameIntervalSec = 5;
+    /** Upper bound of the encoded size, 0 means the size of the first frame. */
+    public int maxWidth = 0;
+    public int maxHeight = 0;
+    public int maxFrameRate = 30;
+    /** Frames waiting for the encoder before {@link #frameDropPolicy} applies. */
+    public int maxQueuedFrames = 3;
+    public FrameDropPolicy frameDropPolicy = FrameDropPolicy.DROP_OLDEST;
+    /** Codec of audio-only recordings, "aac" (MP4) or "opus" (Ogg). */
+    public String audioCodec = "aac";
+    public int audioBitrate = 64 * 1024;
+    /** Records microphone and playout mixed into one track. */
+    public boolean mixAudioChannels = false;
+    /** Rotates the output file after this many seconds, 0 disables. */
+    public int segmentDurationSec = 0;
+    /** Rotates the output file after this many bytes, 0 disables. */
+    public long segmentMaxBytes = 0;
+    /** Closed segments kept on disk, older ones are deleted. 0 keeps all. */
+    public int maxSegments = 0;
+
+    public static RecorderSettings fromMap(@Nullable ConstraintsMap options) {
+        RecorderSettings settings = new RecorderSettings();
+        if (options == null) {
+            return settings;
+        }
+        if (options.hasKey("videoCodec")) {
+            String codec = options.getString("videoCodec").toLowerCase();
+            switch (codec) {
+                case "hevc":
+                case "h265":
+                    settings.videoMimeType = MIME_HEVC;
+                    break;
+                case "vp8":
+                    settings.videoMimeType = MIME_VP8;
+                    break;
+                default:
+                    settings.videoMimeType = MIME_AVC;
+                    break;
+            }
+        }
+        if (options.hasKey("videoBitrate")) {
+            settings.videoBitrate = options.getInt("videoBitrate");
+        }
+        if (options.hasKey("bitrateMode")) {
+            String mode = options.getString("bitrateMode").toLowerCase();
+            switch (mode) {
+                case "cbr":
+                    settings.bitrateMode = MediaCodecInfo.EncoderCapabilities.BITRATE_MODE_CBR;
+                    break;
+                case "vbr":
+                    settings.bitrateMode = MediaCodecInfo.EncoderCapabilities.BITRATE_MODE_VBR;
+                    break;
+                case "cq":
+                    settings.bitrateMode = MediaCodecInfo.EncoderCapabilities.BITRATE_MODE_CQ;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (options.hasKey("videoQuality")) {
+            settings.videoQuality = Math.max(0, Math.min(100, options.getInt("videoQuality")));
+        }
+        if (options.hasKey("keyFrameInterval")) {
+            settings.keyFrameIntervalSec = options.getInt("keyFrameInterval");
+        }
+        if (options.hasKey("maxWidth")) {
+            settings.maxWidth = options.getInt("maxWidth");
+        }
+        if (options.hasKey("maxHeight")) {
+            settings.maxHeight = options.getInt("maxHeight");
+        }
+        if (options.hasKey("maxFrameRate")) {
+            settings.maxFrameRate = Math.max(1, options.getInt("maxFrameRate"));
+        }
+        if (options.hasKey("maxQueuedFrames")) {
+            settings.maxQueuedFrames = Math.max(1, options.getInt("maxQueuedFrames"));
+        }
+        if (options.hasKey("frameDropPolicy")) {
+            settings.frameDropPolicy = "dropNewest".equals(options.getString("frameDropPolicy"))
+                    ? FrameDropPolicy.DROP_NEWEST
+                    : FrameDropPolicy.DROP_OLDEST;
+        }
+        if (options.hasKey("audioCodec")) {
+            settings.audioCodec = options.getString("audioCodec").toLowerCase();
+        }
+        if (options.hasKey("audioBitrate")) {
+            settings.audioBitrate = options.getInt("audioBitrate");
+        }
+        if (options.hasKey("mixAudioChannels")) {
+            settings.mixAudioChannels = options.getBoolean("mixAudioChannels");
+        }
+        if (options.hasKey("segmentDuration")) {
+            settings.segmentDurationSec = options.getInt("segmentDuration");
+        }
+        if (options.hasKey("segmentMaxBytes")) {
+            settings.segmentMaxBytes = ((Number) options.toMap().get("segmentMaxBytes")).longValue();
+        }
+        if (options.hasKey("maxSegments")) {
+            settings.maxSegments = options.getInt("maxSegments");
+        }
+        return settings;
+    }
+
+    int getMuxerFormat() {
+        return MIME_VP8.equals(videoMimeType)
+                ? MediaMuxer.OutputFormat.MUXER_OUTPUT_WEBM
+                : MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4;
+    }
+
+    /** WebM only carries Vorbis or Opus, MP4 gets AAC. */
+    String getAudioMimeType() {
+        return getMuxerFormat() == MediaMuxer.OutputFormat.MUXER_OUTPUT_WEBM ? MIME_OPUS : MIME_AAC;
+    }
+
+    String getAudioOnlyMimeType() {
+        return "opus".equals(audioCodec) ? MIME_OPUS : MIME_AAC;
+    }
+
+    int getAudioOnlyMuxerFormat() {
+        return MIME_OPUS.equals(getAudioOnlyMimeType())
+                ? MUXER_OUTPUT_OGG
+                : MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4;
+    }
+
+    boolean isSegmented() {
+        return segmentDurationSec > 0 || segmentMaxBytes > 0;
+    }
+
+    /** MIME type of the output file, as registered in the media store. */
+    String getContainerMimeType(boolean hasVideo) {
+        if (hasVideo) {
+            return getMuxerFormat() == MediaMuxer.OutputFormat.MUXER_OUTPUT_WEBM ? "video/webm" : "video/mp4";
+        }
+        return getAudioOnlyMuxerFormat() == MUXER_OUTPUT_OGG ? "audio/ogg" : "audio/mp4";
+    }
+
+    /**
+     * Fits the frame size into the configured bounds keeping the aspect ratio. Sizes are
+     * rounded down to even values as required by most encoders.
+     */
+    int[] getOutputSize(int frameWidth, int frameHeight) {
+        double scale = 1;
+        if (maxWidth > 0 && frameWidth > maxWidth) {
+            scale = Math.min(scale, (double) maxWidth / frameWidth);
+        }
+        if (maxHeight > 0 && frameHeight > maxHeight) {
+            scale = Math.min(scale, (double) maxHeight / frameHeight);
+        }
+        int width = Math.max(2, (int) (frameWidth * scale) & ~1);
+        int height = Math.max(2, (int) (frameHeight * scale) & ~1);
+        return new int[] {width, height};
+    }
+
+    int getVideoBitrate(int width, int height, @Nullable MediaCodecInfo codecInfo) {
+        int bitrate = videoBitrate > 0
+                ? videoBitrate
+                : (int) (width * height * maxFrameRate * DEFAULT_BITS_PER_PIXEL);
+        if (codecInfo != null) {
+            Range<Integer> range = codecInfo.getCapabilitiesForType(videoMimeType)
+                    .getVideoCapabilities().getBitrateRange();
+            bitrate = range.clamp(bitrate);
+        }
+        return bitrate;
+    }
+
+    /**
+     * Picks the encoder for {@link #videoMimeType} that supports the output size, preferring
+     * hardware encoders and encoders supporting the requested bitrate mode.
+     *
+     * @return null if no encoder matched, callers then fall back to
+     *         {@code MediaCodec.createEncoderByType}.
+     */
+    @Nullable
+    MediaCodecInfo selectVideoEncoder(int width, int height) {
+        MediaCodecInfo best = null;
+        int bestScore = -1;
+        for (MediaCodecInfo info : new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos()) {
+            if (!info.isEncoder() || !supportsType(info, videoMimeType)) {
+                continue;
+            }
+            MediaCodecInfo.CodecCapabilities caps = info.getCapabilitiesForType(videoMimeType);
+            MediaCodecInfo.VideoCapabilities videoCaps = caps.getVideoCapabilities();
+            if (videoCaps == null || !videoCaps.isSizeSupported(width, height)) {
+                continue;
+            }
+            int score = 0;
+            if (isHardware(info)) {
+                score += 2;
+            }
+            if (bitrateMode >= 0 && caps.getEncoderCapabilities().isBitrateModeSupported(bitrateMode)) {
+                score += 1;
+            }
+            if (score > bestScore) {
+                best = info;
+                bestScore = score;
+            }
+        }
+        Log.d(TAG, "Selected encoder " + (best != null ? best.getName() : "<default>") + " for " + videoMimeType);
+        return best;
+    }
+
+    /**
+     * Whether the encoder runs in {@code BITRATE_MODE_CQ}, configured by {@code KEY_QUALITY}
+     * instead of a bitrate.
+     */
+    boolean usesConstantQuality(@Nullable MediaCodecInfo codecInfo) {
+        return bitrateMode == MediaCodecInfo.EncoderCapabilities.BITRATE_MODE_CQ
+                && supportsBitrateMode(codecInfo);
+    }
+
+    /** The {@code KEY_QUALITY} for {@link #videoQuality} within the encoder's quality range. */
+    @RequiresApi(api = Build.VERSION_CODES.P)
+    int getVideoQuality(MediaCodecInfo codecInfo) {
+        Range<Integer> range = codecInfo.getCapabilitiesForType(videoMimeType)
+                .getEncoderCapabilities().getQualityRange();
+        int percent = videoQuality >= 0 ? videoQuality : 50;
+        return range.getLower() + Math.round((range.getUpper() - range.getLower()) * percent / 100f);
+    }
+
+    boolean supportsBitrateMode(@Nullable MediaCodecInfo codecInfo) {
+        return bitrateMode >= 0 && codecInfo != null
+                && codecInfo.getCapabilitiesForType(videoMimeType).getEncoderCapabilities().isBitrateModeSupported(bitrateMode);
+    }
+
+    private static boolean supportsType(MediaCodecInfo info, String mimeType) {
+        for (String type : info.getSupportedTypes()) {
+            if (type.equalsIgnoreCase(mimeType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isHardware(MediaCodecInfo info) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return info.isHardwareAccelerated();
+        }
+        String name = info.getName().toLowerCase();
+        return !name.startsWith("omx.google.") && !name.startsWith("c2.android.");
+    }
+}
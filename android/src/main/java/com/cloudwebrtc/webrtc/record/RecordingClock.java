@@ -0,0 +1,80 @@
+package com.cloudwebrtc.webrtc.record;
+
+import android.media.AudioFormat;
+
+/**
+ * Common time base of the audio and video track of a recording.
+ *
+ * Presentation times are measured from the start of the recording on {@code System.nanoTime()}.
+ * Video frames keep their own timestamps, shifted by the offset between timestamp and delivery
+ * time of the first frame, so sources using a different time base still line up and dropped
+ * frames simply leave a gap. Audio times come from the position in the mixed stream, which
+ * {@link AudioMixer} keeps aligned to the arrival of the samples.
+ */
+class RecordingClock {
+    private final long startNs;
+    private volatile long videoOffsetNs;
+    private volatile boolean hasVideoOffset = false;
+    private long lastVideoTimeNs = -1;
+    private long lastAudioTimeUs = -1;
+
+    RecordingClock() {
+        this(System.nanoTime());
+    }
+
+    RecordingClock(long startNs) {
+        this.startNs = startNs;
+    }
+
+    /** Called on the frame thread when a frame is delivered. */
+    void onVideoFrame(long frameTimestampNs, long arrivalNs) {
+        if (!hasVideoOffset) {
+            videoOffsetNs = arrivalNs - frameTimestampNs;
+            hasVideoOffset = true;
+        }
+    }
+
+    /**
+     * Presentation time of a frame in nanoseconds, increasing strictly. Called on the render
+     * thread after {@link #onVideoFrame}.
+     */
+    long getVideoPresentationTimeNs(long frameTimestampNs) {
+        long timeNs = Math.max(0, frameTimestampNs + videoOffsetNs - startNs);
+        if (timeNs <= lastVideoTimeNs) {
+            timeNs = lastVideoTimeNs + 1000;
+        }
+        lastVideoTimeNs = timeNs;
+        return timeNs;
+    }
+
+    /**
+     * Presentation time in microseconds of audio captured at {@code sampleTimeNs}, increasing
+     * strictly. Called on the audio encode thread.
+     */
+    long getAudioPresentationTimeUs(long sampleTimeNs) {
+        long timeUs = Math.max(0, (sampleTimeNs - startNs) / 1000);
+        if (timeUs <= lastAudioTimeUs) {
+            timeUs = lastAudioTimeUs + 1;
+        }
+        lastAudioTimeUs = timeUs;
+        return timeUs;
+    }
+
+    /** Size of one sample in bytes for an {@code AudioFormat.ENCODING_PCM_*} constant. */
+    static int bytesPerSample(int audioFormat) {
+        switch (audioFormat) {
+            case AudioFormat.ENCODING_PCM_8BIT:
+                return 1;
+            case AudioFormat.ENCODING_PCM_FLOAT:
+                return 4;
+            default:
+                return 2;
+        }
+    }
+
+    /** Duration in nanoseconds of {@code bytes} of interleaved PCM. */
+    static long durationNs(int bytes, int sampleRate, int channelCount, int audioFormat) {
+        long frames = bytes / (channelCount * bytesPerSample(audioFormat));
+        return frames * 1000000000L / sampleRate;
+    }
+}
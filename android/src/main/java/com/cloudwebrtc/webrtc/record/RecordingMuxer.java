@@ -0,0 +1,215 @@
+package com.cloudwebrtc.webrtc.record;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * {@link MediaMuxer} shared by the encoders of a recording, optionally rotating the output.
+ *
+ * The muxer is started once every track has been added. In segmented mode a new file is
+ * started on the first sync sample, a video key frame or any audio sample of audio-only
+ * recordings, after the configured duration or size was reached; the encoders keep running
+ * and the track formats are re-added to the new file. Every segment starts at time zero. Only
+ * the last {@link RecorderSettings#maxSegments} closed segments are kept on disk.
+ *
+ * All methods are synchronized, samples arrive from the video and the audio encode thread.
+ */
+class RecordingMuxer {
+    private static final String TAG = "RecordingMuxer";
+
+    interface Listener {
+        /** Called on the thread that closed the segment. */
+        void onSegmentClosed(String path, int index, long durationUs, long sizeBytes);
+    }
+
+    private final String outputFile;
+    private final int outputFormat;
+    private final int trackCount;
+    private final boolean hasVideo;
+    private final RecorderSettings settings;
+    @Nullable private final Listener listener;
+    private final MediaFormat[] formats;
+    private final ArrayDeque<String> closedSegments = new ArrayDeque<>();
+
+    private MediaMuxer muxer;
+    private int addedTracks = 0;
+    private boolean started = false;
+    private int segmentIndex = 0;
+    private String segmentPath;
+    private long segmentStartUs = -1;
+    private long segmentEndUs = 0;
+    private long segmentBytes = 0;
+    private boolean keyFrameRequested = false;
+    private long droppedSamples = 0;
+
+    RecordingMuxer(String outputFile, int outputFormat, int trackCount, boolean hasVideo,
+                   RecorderSettings settings, @Nullable Listener listener) throws IOException {
+        this.outputFile = outputFile;
+        this.outputFormat = outputFormat;
+        this.trackCount = trackCount;
+        this.hasVideo = hasVideo;
+        this.settings = settings;
+        this.listener = listener;
+        formats = new MediaFormat[trackCount];
+        segmentPath = pathFor(0);
+        muxer = new MediaMuxer(segmentPath, outputFormat);
+    }
+
+    private boolean isSegmented() {
+        return settings.isSegmented();
+    }
+
+    /** "call.mp4" becomes "call_0000.mp4", "call_0001.mp4", ... in segmented mode. */
+    private String pathFor(int index) {
+        if (!isSegmented()) {
+            return outputFile;
+        }
+        String suffix = String.format(Locale.US, "_%04d", index);
+        int dot = outputFile.lastIndexOf('.');
+        int slash = outputFile.lastIndexOf(File.separatorChar);
+        return dot > slash
+                ? outputFile.substring(0, dot) + suffix + outputFile.substring(dot)
+                : outputFile + suffix;
+    }
+
+    /**
+     * Adds the output format of an encoder and starts the muxer once all tracks are known.
+     *
+     * @return the track index to pass to {@link #writeSampleData}.
+     */
+    synchronized int addTrack(MediaFormat format) {
+        int index = addedTracks++;
+        formats[index] = format;
+        muxer.addTrack(format);
+        if (addedTracks == trackCount) {
+            muxer.start();
+            started = true;
+        }
+        return index;
+    }
+
+    synchronized boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Writes an encoded sample, dropping it while the muxer waits for the other tracks.
+     *
+     * @return true if the video encoder should produce a key frame so the segment can be
+     *         rotated, the caller is expected to request one.
+     */
+    synchronized boolean writeSampleData(int track, ByteBuffer data, MediaCodec.BufferInfo info, boolean isVideo) {
+        if (!started) {
+            return false;
+        }
+        boolean segmented = isSegmented();
+        long timeUs = info.presentationTimeUs;
+        if (segmented) {
+            boolean syncSample = hasVideo
+                    ? isVideo && (info.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0
+                    : (info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0;
+            if (syncSample && segmentStartUs >= 0 && isSegmentFull(timeUs) && !rotate(timeUs)) {
+                return false;
+            }
+            if (segmentStartUs < 0) {
+                segmentStartUs = timeUs;
+            }
+            if (timeUs < segmentStartUs) {
+                // Audio from before the key frame the segment starts with.
+                droppedSamples++;
+                return false;
+            }
+            info.presentationTimeUs = timeUs - segmentStartUs;
+        }
+        try {
+            muxer.writeSampleData(track, data, info);
+        } finally {
+            info.presentationTimeUs = timeUs;
+        }
+        segmentBytes += info.size;
+        segmentEndUs = Math.max(segmentEndUs, timeUs);
+        if (segmented && hasVideo && !keyFrameRequested && isSegmentFull(timeUs)) {
+            keyFrameRequested = true;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isSegmentFull(long timeUs) {
+        return (settings.segmentDurationSec > 0 && timeUs - segmentStartUs >= settings.segmentDurationSec * 1000000L)
+                || (settings.segmentMaxBytes > 0 && segmentBytes >= settings.segmentMaxBytes);
+    }
+
+    private boolean rotate(long timeUs) {
+        closeSegment();
+        segmentIndex++;
+        segmentPath = pathFor(segmentIndex);
+        try {
+            muxer = new MediaMuxer(segmentPath, outputFormat);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open segment " + segmentPath, e);
+            started = false;
+            muxer = null;
+            return false;
+        }
+        for (MediaFormat format : formats) {
+            muxer.addTrack(format);
+        }
+        muxer.start();
+        segmentStartUs = timeUs;
+        segmentEndUs = timeUs;
+        segmentBytes = 0;
+        keyFrameRequested = false;
+        return true;
+    }
+
+    private void closeSegment() {
+        try {
+            muxer.stop();
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Failed to finish " + segmentPath, e);
+        }
+        muxer.release();
+        if (!isSegmented()) {
+            return;
+        }
+        closedSegments.add(segmentPath);
+        while (settings.maxSegments > 0 && closedSegments.size() > settings.maxSegments) {
+            //noinspection ResultOfMethodCallIgnored
+            new File(closedSegments.poll()).delete();
+        }
+        if (listener != null) {
+            listener.onSegmentClosed(segmentPath, segmentIndex,
+                    Math.max(0, segmentEndUs - segmentStartUs), segmentBytes);
+        }
+    }
+
+    synchronized long getDroppedSamples() {
+        return droppedSamples;
+    }
+
+    synchronized int getSegmentIndex() {
+        return segmentIndex;
+    }
+
+    /** Finishes the current file. */
+    synchronized void release() {
+        if (started) {
+            started = false;
+            closeSegment();
+        } else if (muxer != null) {
+            muxer.release();
+        }
+        muxer = null;
+    }
+}
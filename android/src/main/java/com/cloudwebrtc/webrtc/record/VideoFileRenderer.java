@@ -3,12 +3,20 @@ package com.cloudwebrtc.webrtc.record;
 import android.media.MediaCodec;
 import android.media.MediaCodecInfo;
 import android.media.MediaFormat;
-import android.media.MediaMuxer;
+import android.os.Build;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.Surface;
 
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.audio.AudioBufferPool;
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+import com.cloudwebrtc.webrtc.utils.PluginMetrics;
+
 import org.webrtc.EglBase;
 import org.webrtc.GlRectDrawer;
 import org.webrtc.VideoFrame;
@@ -19,9 +27,18 @@ import org.webrtc.audio.JavaAudioDeviceModule.SamplesReadyCallback;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
     private static final String TAG = "VideoFileRenderer";
+    private static final long CODEC_TIMEOUT_US = 10000;
+    // Bounds the wait for the audio encoder when the recording ends.
+    private static final int MAX_FLUSH_ATTEMPTS = 50;
+    private static final long AUDIO_RELEASE_TIMEOUT_MS = 2000;
     private final HandlerThread renderThread;
     private final Handler renderThreadHandler;
     private final HandlerThread audioThread;
@@ -29,29 +46,54 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
     private int outputFileWidth = -1;
     private int outputFileHeight = -1;
     private ByteBuffer[] encoderOutputBuffers;
-    private ByteBuffer[] audioInputBuffers;
     private ByteBuffer[] audioOutputBuffers;
     private EglBase eglBase;
     private final EglBase.Context sharedContext;
     private VideoFrameDrawer frameDrawer;
+    private final RecorderSettings settings;
+    private final long minFrameIntervalNs;
+    private long nextFrameTimestampNs = 0;
 
-    // TODO: these ought to be configurable as well
-    private static final String MIME_TYPE = "video/avc";    // H.264 Advanced Video Coding
-    private static final int FRAME_RATE = 30;               // 30fps
-    private static final int IFRAME_INTERVAL = 5;           // 5 seconds between I-frames
+    // Frames waiting for the render thread, bounded by settings.maxQueuedFrames.
+    private final ArrayDeque<VideoFrame> frameQueue = new ArrayDeque<>();
+    private boolean renderScheduled = false;
+    private int maxQueueDepth = 0;
+    private final AtomicLong receivedFrames = new AtomicLong();
+    private final AtomicLong rateLimitedFrames = new AtomicLong();
+    private final AtomicLong queueDroppedFrames = new AtomicLong();
+    private final AtomicLong renderedFrames = new AtomicLong();
+    private final AtomicLong encodedFrames = new AtomicLong();
+    // Totals over all recorders, the per recording counts above are reset with each recorder.
+    private static final PluginMetrics.Counter droppedFramesMetric = PluginMetrics.instance.counter("recorder.video.framesDropped");
+    private static final PluginMetrics.Counter encodedFramesMetric = PluginMetrics.instance.counter("recorder.video.framesEncoded");
+    private static final PluginMetrics.Histogram renderUsMetric = PluginMetrics.instance.histogram("recorder.video.renderUs");
 
-    private final MediaMuxer mediaMuxer;
+    private final RecordingMuxer muxer;
     private MediaCodec encoder;
     private final MediaCodec.BufferInfo bufferInfo;
     private MediaCodec.BufferInfo audioBufferInfo;
     private int trackIndex = -1;
-    private int audioTrackIndex;
-    private boolean isRunning = true;
+    private int audioTrackIndex = -1;
+    private volatile boolean isRunning = true;
     private GlRectDrawer drawer;
     private Surface surface;
     private MediaCodec audioEncoder;
+    private final boolean mixAudio;
+    private volatile AudioMixer audioMixer;
+    private short[] mixedAudio;
+    // Set on the audio thread once the audio track ended, later samples are ignored.
+    private boolean audioFinished = false;
+    private final CountDownLatch audioReleased = new CountDownLatch(1);
+    // Shared by both tracks so audio and video stay in sync.
+    private final RecordingClock clock = new RecordingClock();
 
-    VideoFileRenderer(String outputFile, final EglBase.Context sharedContext, boolean withAudio) throws IOException {
+    /**
+     * @param mixAudio whether samples of two sources are passed to {@link #onAudioSamples}
+     *                 and mixed into the audio track.
+     */
+    VideoFileRenderer(String outputFile, final EglBase.Context sharedContext, boolean withAudio,
+                      boolean mixAudio, RecorderSettings settings,
+                      @Nullable RecordingMuxer.Listener segmentListener) throws IOException {
         renderThread = new HandlerThread(TAG + "RenderThread");
         renderThread.start();
         renderThreadHandler = new Handler(renderThread.getLooper());
@@ -65,31 +107,44 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
         }
         bufferInfo = new MediaCodec.BufferInfo();
         this.sharedContext = sharedContext;
+        this.settings = settings;
+        this.mixAudio = mixAudio;
+        minFrameIntervalNs = 1000000000L / settings.maxFrameRate;
 
         // Create a MediaMuxer.  We can't add the video track and start() the muxer here,
         // because our MediaFormat doesn't have the Magic Goodies.  These can only be
         // obtained from the encoder after it has started processing data.
-        mediaMuxer = new MediaMuxer(outputFile,
-                MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
-
-        audioTrackIndex = withAudio ? -1 : 0;
+        muxer = new RecordingMuxer(outputFile, settings.getMuxerFormat(), withAudio ? 2 : 1, true,
+                settings, segmentListener);
     }
 
     private void initVideoEncoder() {
-        MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE, outputFileWidth, outputFileHeight);
+        MediaCodecInfo codecInfo = settings.selectVideoEncoder(outputFileWidth, outputFileHeight);
+        MediaFormat format = MediaFormat.createVideoFormat(settings.videoMimeType, outputFileWidth, outputFileHeight);
 
         // Set some properties.  Failing to specify some of these can cause the MediaCodec
         // configure() call to throw an unhelpful exception.
         format.setInteger(MediaFormat.KEY_COLOR_FORMAT,
                 MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
-        format.setInteger(MediaFormat.KEY_BIT_RATE, 6000000);
-        format.setInteger(MediaFormat.KEY_FRAME_RATE, FRAME_RATE);
-        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, IFRAME_INTERVAL);
+        // The quality range is only known from Android 9 on, CQ falls back to a bitrate before.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P && settings.usesConstantQuality(codecInfo)) {
+            format.setInteger(MediaFormat.KEY_QUALITY, settings.getVideoQuality(codecInfo));
+        } else {
+            format.setInteger(MediaFormat.KEY_BIT_RATE,
+                    settings.getVideoBitrate(outputFileWidth, outputFileHeight, codecInfo));
+        }
+        format.setInteger(MediaFormat.KEY_FRAME_RATE, settings.maxFrameRate);
+        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, settings.keyFrameIntervalSec);
+        if (settings.supportsBitrateMode(codecInfo)) {
+            format.setInteger(MediaFormat.KEY_BITRATE_MODE, settings.bitrateMode);
+        }
 
         // Create a MediaCodec encoder, and configure it with our format.  Get a Surface
         // we can use for input and wrap it with a class that handles the EGL work.
         try {
-            encoder = MediaCodec.createEncoderByType(MIME_TYPE);
+            encoder = codecInfo != null
+                    ? MediaCodec.createByCodecName(codecInfo.getName())
+                    : MediaCodec.createEncoderByType(settings.videoMimeType);
             encoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
             renderThreadHandler.post(() -> {
                 eglBase = EglBase.create(sharedContext, EglBase.CONFIG_RECORDABLE);
@@ -105,23 +160,99 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
 
     @Override
     public void onFrame(VideoFrame frame) {
-        frame.retain();
+        if (!isRunning) {
+            return;
+        }
+        receivedFrames.incrementAndGet();
+        // Frames are paced on a grid of the capped frame rate, a quarter interval of jitter is
+        // tolerated so a source running at the cap does not lose frames.
+        long timestampNs = frame.getTimestampNs();
+        if (nextFrameTimestampNs != 0 && timestampNs < nextFrameTimestampNs - minFrameIntervalNs / 4) {
+            rateLimitedFrames.incrementAndGet();
+            return;
+        }
+        nextFrameTimestampNs = nextFrameTimestampNs == 0 || timestampNs - nextFrameTimestampNs > minFrameIntervalNs
+                ? timestampNs + minFrameIntervalNs
+                : nextFrameTimestampNs + minFrameIntervalNs;
+        clock.onVideoFrame(timestampNs, System.nanoTime());
         if (outputFileWidth == -1) {
-            outputFileWidth = frame.getRotatedWidth();
-            outputFileHeight = frame.getRotatedHeight();
+            // Frames larger than the configured bounds are scaled down by the GL draw.
+            int[] size = settings.getOutputSize(frame.getRotatedWidth(), frame.getRotatedHeight());
+            outputFileWidth = size[0];
+            outputFileHeight = size[1];
             initVideoEncoder();
         }
-        renderThreadHandler.post(() -> renderFrameOnRenderThread(frame));
+        VideoFrame dropped = null;
+        synchronized (frameQueue) {
+            if (frameQueue.size() >= settings.maxQueuedFrames) {
+                queueDroppedFrames.incrementAndGet();
+                droppedFramesMetric.increment();
+                if (settings.frameDropPolicy == RecorderSettings.FrameDropPolicy.DROP_NEWEST) {
+                    return;
+                }
+                dropped = frameQueue.poll();
+            }
+            frame.retain();
+            frameQueue.add(frame);
+            maxQueueDepth = Math.max(maxQueueDepth, frameQueue.size());
+            if (!renderScheduled) {
+                renderScheduled = true;
+                renderThreadHandler.post(this::renderQueuedFrames);
+            }
+        }
+        if (dropped != null) {
+            dropped.release();
+        }
+    }
+
+    private void renderQueuedFrames() {
+        while (true) {
+            VideoFrame frame;
+            synchronized (frameQueue) {
+                frame = frameQueue.poll();
+                if (frame == null) {
+                    renderScheduled = false;
+                    return;
+                }
+            }
+            renderFrameOnRenderThread(frame);
+        }
     }
 
     private void renderFrameOnRenderThread(VideoFrame frame) {
         if (frameDrawer == null) {
             frameDrawer = new VideoFrameDrawer();
         }
+        long startNs = SystemClock.elapsedRealtimeNanos();
         frameDrawer.drawFrame(frame, drawer, null, 0, 0, outputFileWidth, outputFileHeight);
+        long presentationTimeNs = clock.getVideoPresentationTimeNs(frame.getTimestampNs());
         frame.release();
+        renderedFrames.incrementAndGet();
         drainEncoder();
-        eglBase.swapBuffers();
+        eglBase.swapBuffers(presentationTimeNs);
+        renderUsMetric.record((SystemClock.elapsedRealtimeNanos() - startNs) / 1000);
+    }
+
+    ConstraintsMap getStats() {
+        ConstraintsMap params = new ConstraintsMap();
+        params.putLong("receivedFrames", receivedFrames.get());
+        params.putLong("rateLimitedFrames", rateLimitedFrames.get());
+        params.putLong("queueDroppedFrames", queueDroppedFrames.get());
+        params.putLong("renderedFrames", renderedFrames.get());
+        params.putLong("encodedFrames", encodedFrames.get());
+        synchronized (frameQueue) {
+            params.putInt("queueDepth", frameQueue.size());
+            params.putInt("maxQueueDepth", maxQueueDepth);
+        }
+        params.putInt("width", outputFileWidth);
+        params.putInt("height", outputFileHeight);
+        params.putInt("segmentIndex", muxer.getSegmentIndex());
+        params.putLong("droppedSamples", muxer.getDroppedSamples());
+        AudioMixer mixer = audioMixer;
+        if (mixer != null) {
+            params.putMap("audioMixer", mixer.getStats().toMap());
+        }
+        return params;
     }
 
     /**
@@ -129,29 +260,47 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
      */
     void release() {
         isRunning = false;
-        if (audioThreadHandler != null)
+        if (audioThreadHandler != null) {
             audioThreadHandler.post(() -> {
-                if (audioEncoder != null) {
-                    audioEncoder.stop();
-                    audioEncoder.release();
+                try {
+                    finishAudio();
+                } catch (Exception e) {
+                    Log.e(TAG, "Failed to finish audio track", e);
+                } finally {
+                    audioReleased.countDown();
+                    audioThread.quit();
                 }
-                audioThread.quit();
             });
+        } else {
+            audioReleased.countDown();
+        }
         renderThreadHandler.post(() -> {
+            // Frames queued after the last render pass are not encoded anymore.
+            synchronized (frameQueue) {
+                for (VideoFrame frame : frameQueue) {
+                    frame.release();
+                }
+                frameQueue.clear();
+            }
             if (encoder != null) {
                 encoder.stop();
                 encoder.release();
             }
             eglBase.release();
-            mediaMuxer.stop();
-            mediaMuxer.release();
+            try {
+                // The audio track writes its last samples before the file is closed.
+                if (!audioReleased.await(AUDIO_RELEASE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    Log.w(TAG, "Audio track did not finish in time");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            muxer.release();
             renderThread.quit();
         });
     }
 
     private boolean encoderStarted = false;
-    private volatile boolean muxerStarted = false;
-    private long videoFrameStart = 0;
 
     private void drainEncoder() {
         if (!encoderStarted) {
@@ -173,12 +322,8 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
                 MediaFormat newFormat = encoder.getOutputFormat();
 
                 Log.e(TAG, "encoder output format changed: " + newFormat);
-                trackIndex = mediaMuxer.addTrack(newFormat);
-                if (audioTrackIndex != -1 && !muxerStarted) {
-                    mediaMuxer.start();
-                    muxerStarted = true;
-                }
-                if (!muxerStarted)
+                trackIndex = muxer.addTrack(newFormat);
+                if (!muxer.isStarted())
                     break;
             } else if (encoderStatus < 0) {
                 Log.e(TAG, "unexpected result fr om encoder.dequeueOutputBuffer: " + encoderStatus);
@@ -192,12 +337,18 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
                     // It's usually necessary to adjust the ByteBuffer values to match BufferInfo.
                     encodedData.position(bufferInfo.offset);
                     encodedData.limit(bufferInfo.offset + bufferInfo.size);
-                    if (videoFrameStart == 0 && bufferInfo.presentationTimeUs != 0) {
-                        videoFrameStart = bufferInfo.presentationTimeUs;
+                    if (muxer.isStarted()) {
+                        if (muxer.writeSampleData(trackIndex, encodedData, bufferInfo, true)) {
+                            // A segment is full, it is closed on the next key frame.
+                            Bundle params = new Bundle();
+                            params.putInt(MediaCodec.PARAMETER_KEY_REQUEST_SYNC_FRAME, 0);
+                            encoder.setParameters(params);
+                        }
+                        if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0) {
+                            encodedFrames.incrementAndGet();
+                            encodedFramesMetric.increment();
+                        }
                     }
-                    bufferInfo.presentationTimeUs -= videoFrameStart;
-                    if (muxerStarted)
-                        mediaMuxer.writeSampleData(trackIndex, encodedData, bufferInfo);
                     isRunning = isRunning && (bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) == 0;
                     encoder.releaseOutputBuffer(encoderStatus, false);
                     if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
@@ -211,9 +362,12 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
         }
     }
 
-    private long presTime = 0L;
-
-    private void drainAudio() {
+    /**
+     * Writes the encoded audio to the muxer.
+     *
+     * @return true once the end of stream was written.
+     */
+    private boolean drainAudio() {
         if (audioBufferInfo == null)
             audioBufferInfo = new MediaCodec.BufferInfo();
         while (true) {
@@ -229,12 +383,8 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
                 MediaFormat newFormat = audioEncoder.getOutputFormat();
 
                 Log.w(TAG, "encoder output format changed: " + newFormat);
-                audioTrackIndex = mediaMuxer.addTrack(newFormat);
-                if (trackIndex != -1 && !muxerStarted) {
-                    mediaMuxer.start();
-                    muxerStarted = true;
-                }
-                if (!muxerStarted)
+                audioTrackIndex = muxer.addTrack(newFormat);
+                if (!muxer.isStarted())
                     break;
             } else if (encoderStatus < 0) {
                 Log.e(TAG, "unexpected result fr om encoder.dequeueOutputBuffer: " + encoderStatus);
@@ -248,12 +398,13 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
                     // It's usually necessary to adjust the ByteBuffer values to match BufferInfo.
                     encodedData.position(audioBufferInfo.offset);
                     encodedData.limit(audioBufferInfo.offset + audioBufferInfo.size);
-                    if (muxerStarted)
-                        mediaMuxer.writeSampleData(audioTrackIndex, encodedData, audioBufferInfo);
+                    if (audioBufferInfo.size > 0) {
+                        muxer.writeSampleData(audioTrackIndex, encodedData, audioBufferInfo, false);
+                    }
                     isRunning = isRunning && (audioBufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) == 0;
                     audioEncoder.releaseOutputBuffer(encoderStatus, false);
                     if ((audioBufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
-                        break;
+                        return true;
                     }
                 } catch (Exception e) {
                     Log.wtf(TAG, e);
@@ -261,39 +412,117 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
                 }
             }
         }
+        return false;
     }
 
     @Override
     public void onWebRtcAudioRecordSamplesReady(JavaAudioDeviceModule.AudioSamples audioSamples) {
+        onAudioSamples(AudioFileRenderer.SOURCE_PRIMARY, audioSamples);
+    }
+
+    /** Called on the audio thread of {@code source}. */
+    void onAudioSamples(int source, JavaAudioDeviceModule.AudioSamples audioSamples) {
         if (!isRunning)
             return;
+        // Samples are reused by the producer once this callback returns, so copy them into a
+        // pooled buffer before handing them to the audio thread.
+        final byte[] data = AudioBufferPool.shared.acquireArray(audioSamples.getData().length);
+        System.arraycopy(audioSamples.getData(), 0, data, 0, data.length);
+        final int rate = audioSamples.getSampleRate();
+        final int channels = audioSamples.getChannelCount();
+        final int audioFormat = audioSamples.getAudioFormat();
+        final long arrivalNs = System.nanoTime();
         audioThreadHandler.post(() -> {
+            if (audioFinished) {
+                AudioBufferPool.shared.releaseArray(data);
+                return;
+            }
             if (audioEncoder == null) try {
-                audioEncoder = MediaCodec.createEncoderByType("audio/mp4a-latm");
+                String audioMimeType = settings.getAudioMimeType();
+                // Mixed recordings get the wider layout since playout is usually stereo.
+                int channelCount = mixAudio ? 2 : channels;
+                audioEncoder = MediaCodec.createEncoderByType(audioMimeType);
                 MediaFormat format = new MediaFormat();
-                format.setString(MediaFormat.KEY_MIME, "audio/mp4a-latm");
-                format.setInteger(MediaFormat.KEY_CHANNEL_COUNT, audioSamples.getChannelCount());
-                format.setInteger(MediaFormat.KEY_SAMPLE_RATE, audioSamples.getSampleRate());
-                format.setInteger(MediaFormat.KEY_BIT_RATE, 64 * 1024);
-                format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+                format.setString(MediaFormat.KEY_MIME, audioMimeType);
+                format.setInteger(MediaFormat.KEY_CHANNEL_COUNT, channelCount);
+                format.setInteger(MediaFormat.KEY_SAMPLE_RATE, rate);
+                format.setInteger(MediaFormat.KEY_BIT_RATE, settings.audioBitrate);
+                if (RecorderSettings.MIME_AAC.equals(audioMimeType)) {
+                    format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+                }
                 audioEncoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
                 audioEncoder.start();
-                audioInputBuffers = audioEncoder.getInputBuffers();
                 audioOutputBuffers = audioEncoder.getOutputBuffers();
+                audioMixer = new AudioMixer(rate, channelCount, mixAudio ? 2 : 1, AudioFileRenderer.MIXER_JITTER_MS);
+                mixedAudio = new short[rate / 10 * channelCount];
             } catch (IOException exception) {
                 Log.wtf(TAG, exception);
             }
-            int bufferIndex = audioEncoder.dequeueInputBuffer(0);
-            if (bufferIndex >= 0) {
-                ByteBuffer buffer = audioInputBuffers[bufferIndex];
-                buffer.clear();
-                byte[] data = audioSamples.getData();
-                buffer.put(data);
-                audioEncoder.queueInputBuffer(bufferIndex, 0, data.length, presTime, 0);
-                presTime += data.length * 125 / 12; // 1000000 microseconds / 48000hz / 2 bytes
+            if (audioMixer == null) {
+                AudioBufferPool.shared.releaseArray(data);
+                return;
             }
+            audioMixer.write(source, data, data.length, rate, channels, audioFormat, arrivalNs);
+            AudioBufferPool.shared.releaseArray(data);
+            encodeMixedAudio(false);
             drainAudio();
         });
     }
 
+    /**
+     * Feeds the audio encoder with everything the mixer can provide. With {@code flush} set, a
+     * lagging source is not waited for and full encoder input is waited for.
+     */
+    private void encodeMixedAudio(boolean flush) {
+        int channelCount = audioMixer.getChannelCount();
+        int attempts = 0;
+        while (audioMixer.available(flush) > 0) {
+            int bufferIndex = audioEncoder.dequeueInputBuffer(flush ? CODEC_TIMEOUT_US : 0);
+            if (bufferIndex < 0) {
+                if (!flush || ++attempts >= MAX_FLUSH_ATTEMPTS)
+                    break;
+                drainAudio();
+                continue;
+            }
+            ByteBuffer buffer = audioEncoder.getInputBuffer(bufferIndex);
+            buffer.clear();
+            int maxFrames = Math.min(mixedAudio.length, buffer.remaining() / 2) / channelCount;
+            long presTime = clock.getAudioPresentationTimeUs(
+                    audioMixer.getFrameTimeNs(audioMixer.getMixedFrames()));
+            int frames = audioMixer.read(mixedAudio, maxFrames, flush);
+            buffer.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().put(mixedAudio, 0, frames * channelCount);
+            audioEncoder.queueInputBuffer(bufferIndex, 0, frames * channelCount * 2, presTime, 0);
+            if (frames == 0)
+                break;
+        }
+    }
+
+    /**
+     * Encodes the samples still held by the mixer, ends the audio stream and releases the
+     * encoder. Runs on the audio thread.
+     */
+    private void finishAudio() {
+        audioFinished = true;
+        if (audioEncoder == null) {
+            return;
+        }
+        if (audioMixer != null) {
+            encodeMixedAudio(true);
+            int bufferIndex = audioEncoder.dequeueInputBuffer(CODEC_TIMEOUT_US);
+            if (bufferIndex >= 0) {
+                long presTime = clock.getAudioPresentationTimeUs(
+                        audioMixer.getFrameTimeNs(audioMixer.getMixedFrames()));
+                audioEncoder.queueInputBuffer(bufferIndex, 0, 0, presTime,
+                        MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                for (int attempt = 0; attempt < MAX_FLUSH_ATTEMPTS; attempt++) {
+                    if (drainAudio())
+                        break;
+                }
+            }
+        }
+        audioEncoder.stop();
+        audioEncoder.release();
+        audioEncoder = null;
+    }
+
 }
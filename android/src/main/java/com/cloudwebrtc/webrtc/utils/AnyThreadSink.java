@@ -2,12 +2,109 @@ package com.cloudwebrtc.webrtc.utils;
 
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import io.flutter.plugin.common.EventChannel;
 
+/**
+ * Event sink usable from any thread, delivering on the main thread.
+ *
+ * Events sent off the main thread are added to a lock free queue and delivered in batches by a
+ * single main thread runnable instead of one runnable per event. While an event waits, a newer
+ * one of the same kind and id supersedes it:
+ * <ul>
+ *   <li>connection states and video size and rotation changes keep their place among the other
+ *   events but only the latest value is delivered, so e.g. a size change still arrives before
+ *   the first frame event that reads it. Signaling and data channel states are never dropped,
+ *   Dart acts on each of them.</li>
+ *   <li>informational events, stats samples and plugin metrics, are delivered after all other
+ *   pending events, only the latest of each is kept.</li>
+ * </ul>
+ * All other events, errors and the end of the stream are delivered in the order sent, pending
+ * informational events before the end of the stream. Buffered amount changes are never
+ * coalesced: Dart calls onBufferedAmountLow for each one below its threshold.
+ */
 public final class AnyThreadSink implements EventChannel.EventSink {
+    // States superseded by the next one, in the place of the first.
+    private static final Set<String> COALESCED_STATE_EVENTS = new HashSet<>(Arrays.asList(
+            "iceConnectionState",
+            "iceGatheringState",
+            "peerConnectionState",
+            "didTextureChangeVideoSize",
+            "didTextureChangeRotation"));
+
+    private static final Set<String> INFORMATIONAL_EVENTS = new HashSet<>(Arrays.asList(
+            "onStatsSample",
+            "onPluginMetrics"));
+
+    // Events delivered by one runnable, the rest follow in the next one so a burst does not
+    // block the main thread.
+    private static final int MAX_EVENTS_PER_DRAIN = 64;
+
+    // Shared by all sinks: events sent, events not yet delivered, the time an event waited for
+    // the main thread, events superseded before delivery and main thread runnables posted.
+    private static final PluginMetrics.Counter events = PluginMetrics.instance.counter("sink.events");
+    private static final PluginMetrics.Gauge pending = PluginMetrics.instance.gauge("sink.pending");
+    private static final PluginMetrics.Histogram deliveryUs = PluginMetrics.instance.histogram("sink.deliveryUs");
+    private static final PluginMetrics.Counter coalesced = PluginMetrics.instance.counter("sink.coalesced");
+    private static final PluginMetrics.Counter drains = PluginMetrics.instance.counter("sink.drains");
+
+    private static final int SUCCESS = 0;
+    private static final int ERROR = 1;
+    private static final int END_OF_STREAM = 2;
+
+    private static final class Event {
+        final int type;
+        Object payload;
+        final String code;
+        final String message;
+        // Events of the same key supersede each other, null for all others.
+        final String key;
+        final boolean informational;
+        final long sentNs = SystemClock.elapsedRealtimeNanos();
+
+        Event(int type, Object payload, String code, String message) {
+            this.type = type;
+            this.payload = payload;
+            this.code = code;
+            this.message = message;
+            String name = type == SUCCESS && payload instanceof Map ? eventName((Map<?, ?>) payload) : null;
+            informational = name != null && INFORMATIONAL_EVENTS.contains(name);
+            key = name != null && (informational || COALESCED_STATE_EVENTS.contains(name))
+                    ? name + ":" + ((Map<?, ?>) payload).get("id") : null;
+        }
+
+        @Nullable
+        private static String eventName(Map<?, ?> payload) {
+            Object name = payload.get("event");
+            return name instanceof String ? (String) name : null;
+        }
+    }
+
     final private EventChannel.EventSink eventSink;
     final private Handler handler = new Handler(Looper.getMainLooper());
+    private final ConcurrentLinkedQueue<Event> incoming = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    private final Runnable drainRunnable = this::drain;
+
+    // Only used on the main thread.
+    private final ArrayDeque<Event> ordered = new ArrayDeque<>();
+    private final Map<String, Event> pendingStates = new HashMap<>();
+    private final LinkedHashMap<String, Event> pendingInformational = new LinkedHashMap<>();
+    private boolean draining = false;
 
     public AnyThreadSink(EventChannel.EventSink eventSink) {
         this.eventSink = eventSink;
@@ -15,24 +112,114 @@ public final class AnyThreadSink implements EventChannel.EventSink {
 
     @Override
     public void success(Object o) {
-        post(()->eventSink.success(o));
+        post(new Event(SUCCESS, o, null, null));
     }
 
     @Override
     public void error(String s, String s1, Object o) {
-        post(()->eventSink.error(s, s1, o));
+        post(new Event(ERROR, o, s, s1));
     }
 
     @Override
     public void endOfStream() {
-        post(eventSink::endOfStream);
+        post(new Event(END_OF_STREAM, null, null, null));
+    }
+
+    private void post(Event event) {
+        events.increment();
+        pending.add(1);
+        incoming.offer(event);
+        if (Looper.getMainLooper() == Looper.myLooper()) {
+            // Delivered inline as before, after the events still waiting.
+            if (!draining) {
+                drain();
+            }
+        } else if (drainScheduled.compareAndSet(false, true)) {
+            handler.post(drainRunnable);
+        }
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+        drains.increment();
+        draining = true;
+        try {
+            Event event;
+            while ((event = incoming.poll()) != null) {
+                enqueue(event);
+            }
+            int delivered = 0;
+            while (delivered < MAX_EVENTS_PER_DRAIN && (event = nextEvent()) != null) {
+                deliver(event);
+                delivered++;
+            }
+        } finally {
+            draining = false;
+        }
+        boolean remaining = !ordered.isEmpty() || !pendingInformational.isEmpty() || !incoming.isEmpty();
+        if (remaining && drainScheduled.compareAndSet(false, true)) {
+            handler.post(drainRunnable);
+        }
+    }
+
+    private void enqueue(Event event) {
+        if (event.type == END_OF_STREAM) {
+            // Nothing is delivered after the end of the stream.
+            ordered.addAll(pendingInformational.values());
+            pendingInformational.clear();
+        }
+        if (event.key == null) {
+            ordered.add(event);
+            return;
+        }
+        Event previous = event.informational
+                ? pendingInformational.remove(event.key) : pendingStates.get(event.key);
+        if (previous != null) {
+            pending.add(-1);
+            coalesced.increment();
+        }
+        if (event.informational) {
+            pendingInformational.put(event.key, event);
+        } else if (previous != null) {
+            // Keeps the place of the superseded state.
+            previous.payload = event.payload;
+        } else {
+            pendingStates.put(event.key, event);
+            ordered.add(event);
+        }
+    }
+
+    @Nullable
+    private Event nextEvent() {
+        Event event = ordered.poll();
+        if (event != null) {
+            if (event.key != null) {
+                pendingStates.remove(event.key);
+            }
+            return event;
+        }
+        Iterator<Event> it = pendingInformational.values().iterator();
+        if (!it.hasNext()) {
+            return null;
+        }
+        event = it.next();
+        it.remove();
+        return event;
     }
 
-    private void post(Runnable r) {
-        if(Looper.getMainLooper() == Looper.myLooper()){
-            r.run();
-        }else{
-            handler.post(r);
+    private void deliver(Event event) {
+        pending.add(-1);
+        deliveryUs.record((SystemClock.elapsedRealtimeNanos() - event.sentNs) / 1000);
+        switch (event.type) {
+            case SUCCESS:
+                eventSink.success(event.payload);
+                break;
+            case ERROR:
+                eventSink.error(event.code, event.message, event.payload);
+                break;
+            default:
+                eventSink.endOfStream();
+                break;
         }
     }
 }
@@ -0,0 +1,24 @@
+package com.cloudwebrtc.webrtc.utils;
+
+import java.security.SecureRandom;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocates ids for streams, tracks, transceivers, data channels and frame cryptors.
+ *
+ * An id is a random prefix, drawn once per process, followed by a counter. Ids are unique within
+ * the process without checking the existing ones, and the 64 bit prefix keeps them apart from
+ * the ids of other devices, e.g. remote track ids taken from the SDP.
+ */
+public final class IdAllocator {
+  private static final String PREFIX = String.format(Locale.US, "%016x-", new SecureRandom().nextLong());
+  private static final AtomicLong counter = new AtomicLong();
+
+  private IdAllocator() {
+  }
+
+  public static String nextId() {
+    return PREFIX + Long.toHexString(counter.incrementAndGet());
+  }
+}
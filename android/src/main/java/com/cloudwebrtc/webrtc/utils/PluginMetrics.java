@@ -0,0 +1,234 @@
+package com.cloudwebrtc.webrtc.utils;
+
+import android.os.SystemClock;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process wide registry of named counters, gauges and histograms of the plugin.
+ *
+ * Metrics are created on first use and never removed, so names must come from a bounded set,
+ * e.g. method names, and not contain ids. Recording is lock free and safe from any thread.
+ * A {@link #snapshot()} reads every metric on its own and is not atomic across metrics.
+ */
+public final class PluginMetrics {
+    public static final PluginMetrics instance = new PluginMetrics();
+
+    /** Monotonic count, e.g. calls or frames. */
+    public static final class Counter {
+        private final AtomicLong value = new AtomicLong();
+
+        public void increment() {
+            value.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+
+        void reset() {
+            value.set(0);
+        }
+    }
+
+    /** Current level, e.g. a queue depth. */
+    public static final class Gauge {
+        private final AtomicLong value = new AtomicLong();
+
+        public void set(long newValue) {
+            value.set(newValue);
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+
+    /**
+     * Log linear histogram of non negative values with a fixed footprint.
+     *
+     * Values below 16 are counted exactly, larger ones in 16 buckets per power of two, so a
+     * reported quantile is at most 1/16 above the recorded value. Values are clamped to
+     * {@link #MAX_VALUE}, the exact maximum is kept separately.
+     */
+    public static final class Histogram {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int MAX_EXPONENT = 35;
+        /** About 19 hours in microseconds. */
+        public static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+        private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long value) {
+            value = Math.max(0, value);
+            buckets.incrementAndGet(indexOf(Math.min(value, MAX_VALUE)));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            long current;
+            while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+                // Retry, another thread raised the maximum.
+            }
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getMax() {
+            return max.get();
+        }
+
+        public long getMean() {
+            long n = count.get();
+            return n > 0 ? sum.get() / n : 0;
+        }
+
+        /** Upper bound of the bucket holding {@code quantile}, never above the maximum. */
+        public long getQuantile(double quantile) {
+            long target = Math.max(1, (long) Math.ceil(count.get() * quantile));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= target) {
+                    return Math.min(upperBoundOf(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        public void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+
+        public ConstraintsMap toMap() {
+            ConstraintsMap params = new ConstraintsMap();
+            params.putLong("count", getCount());
+            params.putLong("mean", getMean());
+            params.putLong("p50", getQuantile(0.5));
+            params.putLong("p90", getQuantile(0.9));
+            params.putLong("p99", getQuantile(0.99));
+            params.putLong("max", getMax());
+            return params;
+        }
+
+        private static int indexOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int shift = exponent - SUB_BUCKET_BITS;
+            int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+            return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+        }
+
+        private static long upperBoundOf(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+            int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private volatile long resetTimeMs = SystemClock.elapsedRealtime();
+
+    private PluginMetrics() {
+    }
+
+    public Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            Counter created = new Counter();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    public Gauge gauge(String name) {
+        Gauge gauge = gauges.get(name);
+        if (gauge == null) {
+            Gauge created = new Gauge();
+            gauge = gauges.putIfAbsent(name, created);
+            if (gauge == null) {
+                gauge = created;
+            }
+        }
+        return gauge;
+    }
+
+    public Histogram histogram(String name) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            Histogram created = new Histogram();
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * All metrics as {@code counters}, {@code gauges} and {@code histograms} maps by name, and
+     * {@code intervalMs}, the time since the last {@link #reset()}.
+     */
+    public ConstraintsMap snapshot() {
+        ConstraintsMap counterValues = new ConstraintsMap();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            counterValues.putLong(entry.getKey(), entry.getValue().get());
+        }
+        ConstraintsMap gaugeValues = new ConstraintsMap();
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            gaugeValues.putLong(entry.getKey(), entry.getValue().get());
+        }
+        ConstraintsMap histogramValues = new ConstraintsMap();
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            histogramValues.putMap(entry.getKey(), entry.getValue().toMap().toMap());
+        }
+        ConstraintsMap params = new ConstraintsMap();
+        params.putLong("intervalMs", SystemClock.elapsedRealtime() - resetTimeMs);
+        params.putMap("counters", counterValues.toMap());
+        params.putMap("gauges", gaugeValues.toMap());
+        params.putMap("histograms", histogramValues.toMap());
+        return params;
+    }
+
+    /** Zeroes counters and histograms, gauges keep their level. */
+    public void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        resetTimeMs = SystemClock.elapsedRealtime();
+    }
+}
@@ -0,0 +1,304 @@
+package com.cloudwebrtc.webrtc.video.camera;
+
+import android.content.Context;
+import android.hardware.Camera;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.webrtc.Camera1Helper;
+import org.webrtc.Camera2Helper;
+import org.webrtc.CameraEnumerationAndroid.CaptureFormat;
+import org.webrtc.Size;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Process wide cache of camera capabilities.
+ *
+ * Supported formats, camera characteristics and legacy camera infos are queried once per
+ * device and kept until a camera that was not seen before becomes available or a camera goes
+ * away, e.g. when an external camera is plugged in or out.
+ */
+public final class CameraCapabilityIndex {
+  private static final String TAG = "CameraCapabilityIndex";
+
+  public static final CameraCapabilityIndex instance = new CameraCapabilityIndex();
+
+  /** Supported sizes and frame rate ranges of one camera, each sorted for binary search. */
+  public static final class DeviceFormats {
+    private static final DeviceFormats EMPTY = new DeviceFormats(new ArrayList<>());
+
+    // Distinct sizes, sorted by width then height.
+    private final int[] widths;
+    private final int[] heights;
+    // Distinct frame rate ranges, sorted by max then min.
+    private final CaptureFormat.FramerateRange[] framerates;
+
+    DeviceFormats(List<CaptureFormat> formats) {
+      long[] sizes = new long[formats.size()];
+      Set<String> seenRanges = new HashSet<>();
+      List<CaptureFormat.FramerateRange> ranges = new ArrayList<>();
+      for (int i = 0; i < formats.size(); i++) {
+        CaptureFormat format = formats.get(i);
+        sizes[i] = ((long) format.width << 32) | format.height;
+        if (seenRanges.add(format.framerate.min + ":" + format.framerate.max)) {
+          ranges.add(format.framerate);
+        }
+      }
+      Arrays.sort(sizes);
+      int count = 0;
+      for (int i = 0; i < sizes.length; i++) {
+        if (i == 0 || sizes[i] != sizes[i - 1]) {
+          sizes[count++] = sizes[i];
+        }
+      }
+      widths = new int[count];
+      heights = new int[count];
+      for (int i = 0; i < count; i++) {
+        widths[i] = (int) (sizes[i] >>> 32);
+        heights[i] = (int) sizes[i];
+      }
+      framerates = ranges.toArray(new CaptureFormat.FramerateRange[0]);
+      Arrays.sort(framerates, (a, b) -> a.max != b.max ? Integer.compare(a.max, b.max) : Integer.compare(a.min, b.min));
+    }
+
+    public boolean isEmpty() {
+      return widths.length == 0;
+    }
+
+    /**
+     * Returns the supported size with the smallest |dw| + |dh| distance to the requested
+     * one, like {@code CameraEnumerationAndroid.getClosestSupportedSize}, or null if the
+     * camera reported no formats.
+     *
+     * Starts at the binary search position of {@code width} and walks outwards until the
+     * width difference alone exceeds the best distance found.
+     */
+    @Nullable
+    public Size findClosestSize(int width, int height) {
+      int start = lowerBound(widths, width);
+      int best = -1;
+      int bestDiff = Integer.MAX_VALUE;
+      for (int i = start; i < widths.length; i++) {
+        int dw = widths[i] - width;
+        if (dw >= bestDiff) {
+          break;
+        }
+        int diff = dw + Math.abs(heights[i] - height);
+        if (diff < bestDiff) {
+          best = i;
+          bestDiff = diff;
+        }
+      }
+      for (int i = start - 1; i >= 0; i--) {
+        int dw = width - widths[i];
+        if (dw >= bestDiff) {
+          break;
+        }
+        int diff = dw + Math.abs(heights[i] - height);
+        if (diff < bestDiff) {
+          best = i;
+          bestDiff = diff;
+        }
+      }
+      return best < 0 ? null : new Size(widths[best], heights[best]);
+    }
+
+    /**
+     * Returns the frame rate range with the lowest maximum that still reaches {@code fps},
+     * or the fastest range if none does. Ranges are in fps * 1000 as reported by WebRTC.
+     */
+    @Nullable
+    public CaptureFormat.FramerateRange findFramerateRange(int fps) {
+      if (framerates.length == 0) {
+        return null;
+      }
+      int target = fps * 1000;
+      int low = 0;
+      int high = framerates.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (framerates[mid].max < target) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return framerates[Math.min(low, framerates.length - 1)];
+    }
+
+    private static int lowerBound(int[] values, int key) {
+      int low = 0;
+      int high = values.length;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (values[mid] < key) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+  }
+
+  private final Map<String, DeviceFormats> formats = new HashMap<>();
+  private final Map<String, CameraCharacteristics> characteristics = new HashMap<>();
+  private final Set<String> knownCameraIds = new HashSet<>();
+  @Nullable private Camera.CameraInfo[] camera1Infos;
+  private boolean registered = false;
+
+  private CameraCapabilityIndex() {}
+
+  /**
+   * Starts listening for camera availability so the index is dropped when a camera shows up or
+   * goes away. Safe to call more than once.
+   */
+  public synchronized void register(Context context) {
+    if (registered) {
+      return;
+    }
+    CameraManager cameraManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+    if (cameraManager == null) {
+      return;
+    }
+    registered = true;
+    cameraManager.registerAvailabilityCallback(
+        new CameraManager.AvailabilityCallback() {
+          @Override
+          public void onCameraAvailable(@NonNull String cameraId) {
+            // Also fires every time a known camera is closed, only new cameras matter.
+            boolean added;
+            synchronized (CameraCapabilityIndex.this) {
+              added = knownCameraIds.add(cameraId);
+            }
+            if (added) {
+              invalidate();
+            }
+          }
+
+          @Override
+          public void onCameraUnavailable(@NonNull String cameraId) {
+            // Also fires every time a camera is opened, only cameras that went away matter.
+            if (isConnected(cameraManager, cameraId)) {
+              return;
+            }
+            synchronized (CameraCapabilityIndex.this) {
+              knownCameraIds.remove(cameraId);
+            }
+            invalidate();
+          }
+        },
+        new Handler(Looper.getMainLooper()));
+  }
+
+  private static boolean isConnected(CameraManager cameraManager, String cameraId) {
+    try {
+      return Arrays.asList(cameraManager.getCameraIdList()).contains(cameraId);
+    } catch (CameraAccessException e) {
+      Log.w(TAG, "getCameraIdList failed", e);
+      return false;
+    }
+  }
+
+  public synchronized void invalidate() {
+    formats.clear();
+    characteristics.clear();
+    camera1Infos = null;
+  }
+
+  @NonNull
+  public DeviceFormats getCamera1Formats(int cameraId) {
+    String key = "camera1:" + cameraId;
+    synchronized (this) {
+      DeviceFormats cached = formats.get(key);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    List<CaptureFormat> supported = Camera1Helper.getSupportedFormats(cameraId);
+    return putFormats(key, supported);
+  }
+
+  @NonNull
+  public DeviceFormats getCamera2Formats(CameraManager cameraManager, @Nullable String cameraId) {
+    String key = "camera2:" + cameraId;
+    synchronized (this) {
+      DeviceFormats cached = formats.get(key);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    List<CaptureFormat> supported = Camera2Helper.getSupportedFormats(cameraManager, cameraId);
+    return putFormats(key, supported);
+  }
+
+  public CameraCharacteristics getCharacteristics(CameraManager cameraManager, String cameraId)
+      throws CameraAccessException {
+    synchronized (this) {
+      CameraCharacteristics cached = characteristics.get(cameraId);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    CameraCharacteristics result = cameraManager.getCameraCharacteristics(cameraId);
+    synchronized (this) {
+      characteristics.put(cameraId, result);
+    }
+    return result;
+  }
+
+  public int getCamera1Count() {
+    return getCamera1Infos().length;
+  }
+
+  /** Returns the legacy camera info at {@code index}, or null if it could not be queried. */
+  @Nullable
+  public Camera.CameraInfo getCamera1Info(int index) {
+    Camera.CameraInfo[] infos = getCamera1Infos();
+    return index >= 0 && index < infos.length ? infos[index] : null;
+  }
+
+  private synchronized Camera.CameraInfo[] getCamera1Infos() {
+    if (camera1Infos == null) {
+      int count = Camera.getNumberOfCameras();
+      Camera.CameraInfo[] infos = new Camera.CameraInfo[count];
+      for (int i = 0; i < count; i++) {
+        Camera.CameraInfo info = new Camera.CameraInfo();
+        try {
+          Camera.getCameraInfo(i, info);
+          infos[i] = info;
+        } catch (Exception e) {
+          Log.e(TAG, "getCameraInfo failed on index " + i, e);
+        }
+      }
+      camera1Infos = infos;
+    }
+    return camera1Infos;
+  }
+
+  private DeviceFormats putFormats(String key, @Nullable List<CaptureFormat> supported) {
+    if (supported == null || supported.isEmpty()) {
+      // Not cached, the camera may just be busy or not enumerated yet.
+      return DeviceFormats.EMPTY;
+    }
+    DeviceFormats deviceFormats = new DeviceFormats(supported);
+    synchronized (this) {
+      formats.put(key, deviceFormats);
+    }
+    return deviceFormats;
+  }
+}
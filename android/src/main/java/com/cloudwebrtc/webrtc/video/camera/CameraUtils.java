@@ -210,7 +210,7 @@ public class CameraUtils {
       }
 
       try {
-        final CameraCharacteristics cameraCharacteristics = manager.getCameraCharacteristics(cameraDevice.getId());
+        final CameraCharacteristics cameraCharacteristics = CameraCapabilityIndex.instance.getCharacteristics(manager, cameraDevice.getId());
         final CaptureRequest.Builder captureRequestBuilder =
                 cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_RECORD);
         MeteringRectangle focusRectangle = null;
@@ -304,7 +304,7 @@ public class CameraUtils {
       }
 
       try {
-        final CameraCharacteristics cameraCharacteristics = manager.getCameraCharacteristics(cameraDevice.getId());
+        final CameraCharacteristics cameraCharacteristics = CameraCapabilityIndex.instance.getCharacteristics(manager, cameraDevice.getId());
         final CaptureRequest.Builder captureRequestBuilder =
                 cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_RECORD);
 
@@ -389,7 +389,7 @@ public class CameraUtils {
       boolean flashIsAvailable;
       try {
         CameraCharacteristics characteristics =
-                manager.getCameraCharacteristics(cameraDevice.getId());
+                CameraCapabilityIndex.instance.getCharacteristics(manager, cameraDevice.getId());
         flashIsAvailable = characteristics.get(CameraCharacteristics.FLASH_INFO_AVAILABLE);
       } catch (CameraAccessException e) {
         // Should never happen since we are already accessing the camera
@@ -470,7 +470,7 @@ public class CameraUtils {
         final CaptureRequest.Builder captureRequestBuilder =
                 cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_RECORD);
 
-        final CameraCharacteristics cameraCharacteristics = manager.getCameraCharacteristics(cameraDevice.getId());
+        final CameraCharacteristics cameraCharacteristics = CameraCapabilityIndex.instance.getCharacteristics(manager, cameraDevice.getId());
         final Rect rect = cameraCharacteristics.get(CameraCharacteristics.SENSOR_INFO_ACTIVE_ARRAY_SIZE);
         final double maxZoomLevel = cameraCharacteristics.get(CameraCharacteristics.SCALER_AVAILABLE_MAX_DIGITAL_ZOOM);
 
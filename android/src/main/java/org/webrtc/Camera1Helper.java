@@ -18,7 +18,8 @@ package org.webrtc;
 
 import androidx.annotation.Nullable;
 
-import java.util.ArrayList;
+import com.cloudwebrtc.webrtc.video.camera.CameraCapabilityIndex;
+
 import java.util.List;
 
 /**
@@ -40,16 +41,13 @@ public class Camera1Helper {
         return Camera1Enumerator.getSupportedFormats(cameraId);
     }
 
+    @Nullable
     public static Size findClosestCaptureFormat(int cameraId, int width, int height) {
-        List<CameraEnumerationAndroid.CaptureFormat> formats = getSupportedFormats(cameraId);
-
-        List<Size> sizes = new ArrayList<>();
-        if (formats != null) {
-            for (CameraEnumerationAndroid.CaptureFormat format : formats) {
-                sizes.add(new Size(format.width, format.height));
-            }
-        }
+        return CameraCapabilityIndex.instance.getCamera1Formats(cameraId).findClosestSize(width, height);
+    }
 
-        return CameraEnumerationAndroid.getClosestSupportedSize(sizes, width, height);
+    @Nullable
+    public static CameraEnumerationAndroid.CaptureFormat.FramerateRange findClosestFramerateRange(int cameraId, int fps) {
+        return CameraCapabilityIndex.instance.getCamera1Formats(cameraId).findFramerateRange(fps);
     }
 }
@@ -20,7 +20,8 @@ import android.hardware.camera2.CameraManager;
 
 import androidx.annotation.Nullable;
 
-import java.util.ArrayList;
+import com.cloudwebrtc.webrtc.video.camera.CameraCapabilityIndex;
+
 import java.util.List;
 
 /**
@@ -36,16 +37,13 @@ public class Camera2Helper {
         return Camera2Enumerator.getSupportedFormats(cameraManager, cameraId);
     }
 
+    @Nullable
     public static Size findClosestCaptureFormat(CameraManager cameraManager, @Nullable String cameraId, int width, int height) {
-        List<CameraEnumerationAndroid.CaptureFormat> formats = getSupportedFormats(cameraManager, cameraId);
-
-        List<Size> sizes = new ArrayList<>();
-        if (formats != null) {
-            for (CameraEnumerationAndroid.CaptureFormat format : formats) {
-                sizes.add(new Size(format.width, format.height));
-            }
-        }
+        return CameraCapabilityIndex.instance.getCamera2Formats(cameraManager, cameraId).findClosestSize(width, height);
+    }
 
-        return CameraEnumerationAndroid.getClosestSupportedSize(sizes, width, height);
+    @Nullable
+    public static CameraEnumerationAndroid.CaptureFormat.FramerateRange findClosestFramerateRange(CameraManager cameraManager, @Nullable String cameraId, int fps) {
+        return CameraCapabilityIndex.instance.getCamera2Formats(cameraManager, cameraId).findFramerateRange(fps);
     }
 }
@@ -0,0 +1,35 @@
+package com.cloudwebrtc.webrtc;
+
+import java.util.Locale;
+
+/**
+ * Minimal timing loop for the JVM benchmarks of the unit tests.
+ *
+ * Results are printed, not asserted, since the timing depends on the host. Run a single
+ * benchmark with {@code ./gradlew testDebugUnitTest --tests '*BenchmarkTest' -i} to see them.
+ */
+public final class Benchmark {
+    public interface Body {
+        /** Runs one operation, the result is kept alive so the JIT cannot drop the work. */
+        Object run(int iteration);
+    }
+
+    private static volatile Object sink;
+
+    private Benchmark() {
+    }
+
+    /** Returns the mean nanoseconds per operation after a warm up of the same length. */
+    public static double measure(String name, int iterations, Body body) {
+        for (int i = 0; i < iterations; i++) {
+            sink = body.run(i);
+        }
+        long startNs = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = body.run(i);
+        }
+        double nsPerOp = (double) (System.nanoTime() - startNs) / iterations;
+        System.out.println(String.format(Locale.US, "%s: %.1f ns/op", name, nsPerOp));
+        return nsPerOp;
+    }
+}
@@ -0,0 +1,81 @@
+package com.cloudwebrtc.webrtc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.flutter.plugin.common.StandardMessageCodec;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Payload size and encode time of an incoming data channel message, as a raw frame of
+ * {@link DataChannelBinaryPipe} and as the {@code dataChannelReceiveMessage} event map sent
+ * otherwise. Both are measured up to the bytes handed to the platform channel.
+ */
+public class DataChannelBinaryPipeBenchmarkTest {
+    private static final int ITERATIONS = 20000;
+
+    @Test
+    public void frameVersusMapFormat() {
+        compare("binary 1 KiB", payload(1024), true);
+        compare("binary 16 KiB", payload(16 * 1024), true);
+        compare("text message", "{\"type\":\"cursor\",\"x\":1280,\"y\":720,\"seq\":12345}"
+                .getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    private static void compare(String name, byte[] bytes, boolean binary) {
+        final ByteBuffer data = ByteBuffer.allocateDirect(bytes.length);
+        data.put(bytes).flip();
+        // The pipe recycles its frames, a single buffer stands in for the pool.
+        final ByteBuffer frame = ByteBuffer.allocateDirect(DataChannelBinaryPipe.HEADER_SIZE + bytes.length);
+
+        int frameBytes = encodeFrame(frame, data, binary);
+        int mapBytes = encodeMap(data, binary);
+        System.out.println(String.format(Locale.US,
+                "%s: map %d bytes, frame %d bytes", name, mapBytes, frameBytes));
+
+        Benchmark.measure(name + " frame encode", ITERATIONS, i -> encodeFrame(frame, data, binary));
+        Benchmark.measure(name + " map encode", ITERATIONS, i -> encodeMap(data, binary));
+        assertEquals(DataChannelBinaryPipe.HEADER_SIZE + bytes.length, frameBytes);
+        assertTrue(frameBytes < mapBytes);
+    }
+
+    /** Encodes like {@code DataChannelBinaryPipe.deliver}. */
+    private static int encodeFrame(ByteBuffer frame, ByteBuffer data, boolean binary) {
+        frame.clear();
+        DataChannelBinaryPipe.writeFrame(frame, data.duplicate(), binary);
+        return frame.position();
+    }
+
+    /** Encodes like {@code DataChannelObserver.sendMessage}, the copy out of WebRTC's buffer included. */
+    private static int encodeMap(ByteBuffer data, boolean binary) {
+        ByteBuffer source = data.duplicate();
+        byte[] bytes = new byte[source.remaining()];
+        source.get(bytes);
+        Map<String, Object> params = new HashMap<>();
+        if (binary) {
+            params.put("type", "binary");
+            params.put("data", bytes);
+        } else {
+            params.put("type", "text");
+            params.put("data", new String(bytes, StandardCharsets.UTF_8));
+        }
+        params.put("event", "dataChannelReceiveMessage");
+        params.put("id", 1);
+        return StandardMessageCodec.INSTANCE.encodeMessage(params).position();
+    }
+
+    private static byte[] payload(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,132 @@
+package com.cloudwebrtc.webrtc;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Test;
+import org.webrtc.MediaStreamTrack;
+import org.webrtc.PeerConnection;
+import org.webrtc.RtpReceiver;
+import org.webrtc.RtpSender;
+import org.webrtc.RtpTransceiver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sender lookup by id through the index versus the former scan of {@code getSenders()}, and
+ * remote track lookup without a peer connection id through {@link IdIndex} versus the former
+ * scan of every connection's transceivers, for 1, 10 and 30 connections.
+ *
+ * The wrappers are mocks, whose calls cost more than the JNI calls they stand for, so the
+ * absolute figures only hold on the JVM. What carries over is the work per lookup: a hash
+ * lookup for the index, one {@code getSenders()} creating a wrapper per sender plus up to one
+ * {@code id()} call per sender for the scan, and for a remote track one {@code getTransceivers()}
+ * per connection visited before its owner.
+ */
+public class RtpObjectIndexBenchmarkTest {
+    private static final int SENDERS = 50;
+    private static final int ITERATIONS = 20000;
+    // The track scan calls far more mocks per lookup.
+    private static final int TRACK_ITERATIONS = 2000;
+    private static final int[] PEER_COUNTS = {1, 10, 30};
+    private static final int TRACKS_PER_PEER = 2;
+
+    /** The parts of a {@link PeerConnectionObserver} a remote track lookup uses. */
+    private static final class Peer {
+        final PeerConnection peerConnection = mock(PeerConnection.class, RtpObjects.stubOnly());
+        // Tracks of remote streams, empty under Unified Plan where tracks come with receivers.
+        final Map<String, MediaStreamTrack> remoteTracks = new HashMap<>();
+        final RtpObjectIndex rtpIndex = new RtpObjectIndex(peerConnection, true, () -> "unused");
+    }
+
+    @Test
+    public void indexVersusScan() {
+        final List<RtpSender> senders = new ArrayList<>();
+        for (int i = 0; i < SENDERS; i++) {
+            senders.add(RtpObjects.sender("sender-" + i));
+        }
+        final PeerConnection peerConnection = mock(PeerConnection.class, RtpObjects.stubOnly());
+        when(peerConnection.getSenders()).thenAnswer(invocation -> new ArrayList<>(senders));
+        when(peerConnection.getReceivers()).thenAnswer(invocation -> new ArrayList<>());
+        final RtpObjectIndex index = new RtpObjectIndex(peerConnection, false, () -> "unused");
+
+        Benchmark.measure("RtpObjectIndex.getSender", ITERATIONS,
+                i -> index.getSender("sender-" + i % SENDERS));
+        Benchmark.measure("getSenders() scan", ITERATIONS, i -> {
+            String id = "sender-" + i % SENDERS;
+            for (RtpSender sender : peerConnection.getSenders()) {
+                if (sender.id().equals(id)) {
+                    return sender;
+                }
+            }
+            return null;
+        });
+        assertEquals(1, index.getRefreshCount());
+    }
+
+    @Test
+    public void remoteTrackByOwnerVersusScan() {
+        for (int peerCount : PEER_COUNTS) {
+            compareRemoteTrackLookup(peerCount);
+        }
+    }
+
+    private static void compareRemoteTrackLookup(int peerCount) {
+        final Map<String, Peer> peers = new HashMap<>();
+        final IdIndex idIndex = new IdIndex();
+        for (int p = 0; p < peerCount; p++) {
+            final Peer peer = new Peer();
+            final List<RtpTransceiver> transceivers = new ArrayList<>();
+            final List<RtpReceiver> receivers = new ArrayList<>();
+            for (int t = 0; t < TRACKS_PER_PEER; t++) {
+                RtpReceiver receiver = RtpObjects.receiver("receiver-" + p + "-" + t, trackId(p, t));
+                receivers.add(receiver);
+                transceivers.add(RtpObjects.transceiver(String.valueOf(t),
+                        RtpObjects.sender("sender-" + p + "-" + t), receiver));
+                idIndex.putTrack(trackId(p, t), "pc-" + p);
+            }
+            when(peer.peerConnection.getSenders()).thenAnswer(invocation -> new ArrayList<>());
+            when(peer.peerConnection.getReceivers()).thenAnswer(invocation -> new ArrayList<>(receivers));
+            when(peer.peerConnection.getTransceivers()).thenAnswer(invocation -> new ArrayList<>(transceivers));
+            // The track events mark the index dirty, the next call on the connection's queue refreshes.
+            peer.rtpIndex.getReceiverTrack(trackId(p, 0));
+            peers.put("pc-" + p, peer);
+        }
+        final int tracks = peerCount * TRACKS_PER_PEER;
+
+        Benchmark.measure(peerCount + " peers: IdIndex owner lookup", TRACK_ITERATIONS, i -> {
+            String trackId = trackId(i % tracks / TRACKS_PER_PEER, i % TRACKS_PER_PEER);
+            Peer owner = peers.get(idIndex.getTrackOwner(trackId));
+            MediaStreamTrack track = owner.remoteTracks.get(trackId);
+            return track != null ? track : owner.rtpIndex.getKnownReceiverTrack(trackId);
+        });
+        Benchmark.measure(peerCount + " peers: all-observer transceiver scan", TRACK_ITERATIONS, i -> {
+            String trackId = trackId(i % tracks / TRACKS_PER_PEER, i % TRACKS_PER_PEER);
+            for (Peer peer : peers.values()) {
+                MediaStreamTrack track = peer.remoteTracks.get(trackId);
+                if (track != null) {
+                    return track;
+                }
+                for (RtpTransceiver transceiver : peer.peerConnection.getTransceivers()) {
+                    RtpReceiver receiver = transceiver.getReceiver();
+                    if (receiver != null && receiver.track() != null
+                            && receiver.track().id().equals(trackId)) {
+                        return receiver.track();
+                    }
+                }
+            }
+            return null;
+        });
+        for (Map.Entry<String, Peer> entry : peers.entrySet()) {
+            assertEquals(1, entry.getValue().rtpIndex.getRefreshCount());
+        }
+    }
+
+    private static String trackId(int peer, int track) {
+        return "track-" + peer + "-" + track;
+    }
+}
@@ -0,0 +1,127 @@
+package com.cloudwebrtc.webrtc;
+
+import static com.cloudwebrtc.webrtc.RtpObjects.receiver;
+import static com.cloudwebrtc.webrtc.RtpObjects.sender;
+import static com.cloudwebrtc.webrtc.RtpObjects.transceiver;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.webrtc.PeerConnection;
+import org.webrtc.RtpReceiver;
+import org.webrtc.RtpSender;
+import org.webrtc.RtpTransceiver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class RtpObjectIndexTest {
+    private final List<RtpSender> senders = new ArrayList<>();
+    private final List<RtpReceiver> receivers = new ArrayList<>();
+    private final List<RtpTransceiver> transceivers = new ArrayList<>();
+    private RtpObjectIndex index;
+    private int nextId = 0;
+
+    @Before
+    public void setUp() {
+        PeerConnection peerConnection = mock(PeerConnection.class);
+        when(peerConnection.getSenders()).thenAnswer(invocation -> new ArrayList<>(senders));
+        when(peerConnection.getReceivers()).thenAnswer(invocation -> new ArrayList<>(receivers));
+        when(peerConnection.getTransceivers()).thenAnswer(invocation -> new ArrayList<>(transceivers));
+        index = new RtpObjectIndex(peerConnection, true, () -> "generated-" + nextId++);
+    }
+
+    @Test
+    public void knownIdsDoNotRefresh() {
+        RtpSender sender = sender("s1");
+        senders.add(sender);
+        assertSame(sender, index.getSender("s1"));
+        long refreshes = index.getRefreshCount();
+        assertSame(sender, index.getSender("s1"));
+        assertEquals(refreshes, index.getRefreshCount());
+    }
+
+    @Test
+    public void removedSenderIsLookedUpAgain() {
+        RtpSender sender = sender("s1");
+        index.putSender(sender);
+        index.removeSender("s1");
+        assertNull(index.getSender("s1"));
+        assertEquals(1, index.getRefreshCount());
+    }
+
+    @Test
+    public void generatedIdIsStableUntilTheTransceiverStops() {
+        RtpTransceiver transceiver = addTransceiver(null);
+        String id = index.putTransceiver(transceiver);
+        assertEquals(id, index.getTransceiverId(transceiver));
+        index.getTransceivers();
+        assertSame(transceiver, index.getTransceiver(id));
+
+        index.onTransceiverStopped(transceiver);
+        transceivers.remove(transceiver);
+        assertNull(index.getTransceiver(id));
+        assertNotEquals(id, index.getTransceiverId(transceiver));
+    }
+
+    @Test
+    public void generatedIdsOfRemoteStoppedTransceiversArePruned() {
+        RtpTransceiver stopped = addTransceiver(null);
+        RtpTransceiver live = addTransceiver(null);
+        String stoppedId = index.putTransceiver(stopped);
+        String liveId = index.putTransceiver(live);
+
+        when(stopped.isStopped()).thenReturn(true);
+        index.getTransceivers();
+        assertNull(index.getTransceiver(stoppedId));
+        assertSame(live, index.getTransceiver(liveId));
+    }
+
+    @Test
+    public void transceiversWithAMidUseIt() {
+        RtpTransceiver transceiver = addTransceiver("0");
+        assertEquals("0", index.putTransceiver(transceiver));
+        assertEquals(Collections.singletonList(transceiver), index.getTransceivers());
+        assertSame(transceiver, index.getTransceiver("0"));
+    }
+
+    @Test
+    public void receiverTracksRefreshOnlyWhenDirty() {
+        receivers.add(receiver("r1", "t1"));
+        assertEquals("t1", index.getReceiverTrack("t1").id());
+        long refreshes = index.getRefreshCount();
+        assertNull(index.getReceiverTrack("other"));
+        assertEquals(refreshes, index.getRefreshCount());
+        receivers.add(receiver("r2", "t2"));
+        index.markDirty();
+        assertEquals("t2", index.getReceiverTrack("t2").id());
+    }
+
+    @Test
+    public void knownReceiverTrackNeverRefreshes() {
+        receivers.add(receiver("r1", "t1"));
+        index.markDirty();
+        assertNull(index.getKnownReceiverTrack("t1"));
+        assertEquals(0, index.getRefreshCount());
+        index.getReceivers();
+        assertEquals("t1", index.getKnownReceiverTrack("t1").id());
+        assertEquals(1, index.getRefreshCount());
+    }
+
+    private RtpTransceiver addTransceiver(String mid) {
+        int n = transceivers.size();
+        RtpSender sender = sender("sender" + n);
+        RtpReceiver receiver = receiver("receiver" + n, "track" + n);
+        RtpTransceiver transceiver = transceiver(mid, sender, receiver);
+        senders.add(sender);
+        receivers.add(receiver);
+        transceivers.add(transceiver);
+        return transceiver;
+    }
+}
@@ -0,0 +1,48 @@
+package com.cloudwebrtc.webrtc;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import org.mockito.MockSettings;
+
+import org.webrtc.MediaStreamTrack;
+import org.webrtc.RtpReceiver;
+import org.webrtc.RtpSender;
+import org.webrtc.RtpTransceiver;
+
+/**
+ * Mocked RTP wrappers, the real ones need the native library. They are stub only: the
+ * benchmarks call them in loops and no test verifies their calls.
+ */
+final class RtpObjects {
+    private RtpObjects() {
+    }
+
+    static MockSettings stubOnly() {
+        return withSettings().stubOnly();
+    }
+
+    static RtpSender sender(String id) {
+        RtpSender sender = mock(RtpSender.class, stubOnly());
+        when(sender.id()).thenReturn(id);
+        return sender;
+    }
+
+    static RtpReceiver receiver(String id, String trackId) {
+        MediaStreamTrack track = mock(MediaStreamTrack.class, stubOnly());
+        when(track.id()).thenReturn(trackId);
+        RtpReceiver receiver = mock(RtpReceiver.class, stubOnly());
+        when(receiver.id()).thenReturn(id);
+        when(receiver.track()).thenReturn(track);
+        return receiver;
+    }
+
+    static RtpTransceiver transceiver(String mid, RtpSender sender, RtpReceiver receiver) {
+        RtpTransceiver transceiver = mock(RtpTransceiver.class, stubOnly());
+        when(transceiver.getMid()).thenReturn(mid);
+        when(transceiver.getSender()).thenReturn(sender);
+        when(transceiver.getReceiver()).thenReturn(receiver);
+        return transceiver;
+    }
+}
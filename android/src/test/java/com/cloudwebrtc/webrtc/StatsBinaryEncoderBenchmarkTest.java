@@ -0,0 +1,170 @@
+package com.cloudwebrtc.webrtc;
+
+import static org.junit.Assert.assertTrue;
+
+import io.flutter.plugin.common.StandardMessageCodec;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Payload size and encode time of a 50 stream report, as the binary {@code getStats} format
+ * and as the list of maps sent otherwise. Both are measured up to the bytes handed to the
+ * platform channel.
+ */
+public class StatsBinaryEncoderBenchmarkTest {
+    private static final int STREAMS = 50;
+    private static final int ITERATIONS = 2000;
+
+    private static final class Report {
+        final String id;
+        final String type;
+        final double timestampUs;
+        final Map<String, Object> values;
+
+        Report(String id, String type, double timestampUs, Map<String, Object> values) {
+            this.id = id;
+            this.type = type;
+            this.timestampUs = timestampUs;
+            this.values = values;
+        }
+    }
+
+    @Test
+    public void binaryVersusMapFormat() {
+        final List<Report> reports = fiftyStreamReport(0);
+        final StatsBinaryEncoder.StringTable table = new StatsBinaryEncoder.StringTable();
+
+        int firstBinaryBytes = encodeBinary(reports, table);
+        int binaryBytes = encodeBinary(fiftyStreamReport(1), table);
+        int mapBytes = encodeMap(reports);
+        System.out.println(String.format(Locale.US,
+                "%d reports: map %d bytes, binary %d bytes (%d bytes on the first poll)",
+                reports.size(), mapBytes, binaryBytes, firstBinaryBytes));
+
+        Benchmark.measure("stats binary encode", ITERATIONS, i -> encodeBinary(reports, table));
+        Benchmark.measure("stats map encode", ITERATIONS, i -> encodeMap(reports));
+        assertTrue(binaryBytes < mapBytes);
+    }
+
+    /** Encodes like StatsEngine with the binary query option, strings of the poll included. */
+    private static int encodeBinary(List<Report> reports, StatsBinaryEncoder.StringTable table) {
+        StatsBinaryEncoder encoder = new StatsBinaryEncoder(table);
+        for (Report report : reports) {
+            encoder.writeReport(report.id, report.type, report.timestampUs, report.values);
+        }
+        Map<String, Object> params = new HashMap<>();
+        params.put("format", "binary");
+        params.put("data", encoder.finish());
+        params.put("stringsReset", encoder.isReset());
+        params.put("strings", new ArrayList<Object>(encoder.getAddedStrings()));
+        return StandardMessageCodec.INSTANCE.encodeMessage(params).position();
+    }
+
+    private static int encodeMap(List<Report> reports) {
+        List<Object> stats = new ArrayList<>();
+        for (Report report : reports) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("id", report.id);
+            map.put("type", report.type);
+            map.put("timestamp", report.timestampUs);
+            map.put("values", report.values);
+            stats.add(map);
+        }
+        Map<String, Object> params = new HashMap<>();
+        params.put("stats", stats);
+        return StandardMessageCodec.INSTANCE.encodeMessage(params).position();
+    }
+
+    /** Inbound and outbound RTP with their codecs for each stream, plus the transport. */
+    private static List<Report> fiftyStreamReport(int poll) {
+        List<Report> reports = new ArrayList<>();
+        double timestampUs = 1.7e15 + poll * 1e6;
+        Map<String, Object> transport = new LinkedHashMap<>();
+        transport.put("bytesSent", 123456789L + poll * 1000L);
+        transport.put("bytesReceived", 987654321L + poll * 1000L);
+        transport.put("dtlsState", "connected");
+        transport.put("selectedCandidatePairId", "CPabcdef12_34567890");
+        reports.add(new Report("T01", "transport", timestampUs, transport));
+        for (int s = 0; s < STREAMS; s++) {
+            String kind = s % 2 == 0 ? "video" : "audio";
+            Map<String, Object> inbound = new LinkedHashMap<>();
+            inbound.put("ssrc", 100000L + s);
+            inbound.put("kind", kind);
+            inbound.put("mid", String.valueOf(s));
+            inbound.put("trackIdentifier", "track-" + s);
+            inbound.put("transportId", "T01");
+            inbound.put("codecId", "CIT01_" + (s % 2 == 0 ? 96 : 111));
+            inbound.put("packetsReceived", 50000L + s * 13 + poll * 50);
+            inbound.put("packetsLost", 12 + s);
+            inbound.put("bytesReceived", 42000000L + s * 1000 + poll * 60000);
+            inbound.put("headerBytesReceived", 1200000L + s * 100 + poll * 1200);
+            inbound.put("jitter", 0.004 + s * 0.0001);
+            inbound.put("lastPacketReceivedTimestamp", timestampUs / 1000);
+            inbound.put("jitterBufferDelay", 1234.5 + s + poll);
+            inbound.put("jitterBufferEmittedCount", 30000L + s + poll * 30);
+            inbound.put("nackCount", 3 + s);
+            if (s % 2 == 0) {
+                inbound.put("framesReceived", 30000L + s + poll * 30);
+                inbound.put("framesDecoded", 29990L + s + poll * 30);
+                inbound.put("keyFramesDecoded", 20 + s);
+                inbound.put("framesDropped", 4 + s);
+                inbound.put("frameWidth", 1280);
+                inbound.put("frameHeight", 720);
+                inbound.put("framesPerSecond", 30.0);
+                inbound.put("totalDecodeTime", 123.456 + poll);
+                inbound.put("totalInterFrameDelay", 999.5 + poll);
+                inbound.put("firCount", 0);
+                inbound.put("pliCount", 2);
+                inbound.put("decoderImplementation", "MediaCodecVideoDecoder");
+            } else {
+                inbound.put("totalSamplesReceived", 48000000L + poll * 48000);
+                inbound.put("concealedSamples", 4800L + s);
+                inbound.put("audioLevel", 0.1 + s * 0.001);
+                inbound.put("totalAudioEnergy", 12.5 + poll);
+                inbound.put("totalSamplesDuration", 1000.0 + poll);
+            }
+            reports.add(new Report("IT01" + kind.charAt(0) + (100000 + s), "inbound-rtp", timestampUs, inbound));
+
+            Map<String, Object> outbound = new LinkedHashMap<>();
+            outbound.put("ssrc", 200000L + s);
+            outbound.put("kind", kind);
+            outbound.put("mid", String.valueOf(s));
+            outbound.put("transportId", "T01");
+            outbound.put("codecId", "COT01_" + (s % 2 == 0 ? 96 : 111));
+            outbound.put("packetsSent", 50000L + s * 17 + poll * 50);
+            outbound.put("bytesSent", 40000000L + s * 1000 + poll * 60000);
+            outbound.put("retransmittedPacketsSent", 10L + s);
+            outbound.put("targetBitrate", 1500000.0);
+            outbound.put("totalPacketSendDelay", 12.25 + poll);
+            outbound.put("active", true);
+            if (s % 2 == 0) {
+                outbound.put("framesEncoded", 30000L + s + poll * 30);
+                outbound.put("framesSent", 30000L + s + poll * 30);
+                outbound.put("frameWidth", 1280);
+                outbound.put("frameHeight", 720);
+                outbound.put("framesPerSecond", 30.0);
+                outbound.put("totalEncodeTime", 88.5 + poll);
+                outbound.put("qualityLimitationReason", "none");
+                outbound.put("encoderImplementation", "MediaCodecVideoEncoder");
+            }
+            reports.add(new Report("OT01" + kind.charAt(0) + (200000 + s), "outbound-rtp", timestampUs, outbound));
+        }
+        for (String codec : new String[] {"CIT01_96", "CIT01_111", "COT01_96", "COT01_111"}) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            boolean video = codec.endsWith("96");
+            values.put("payloadType", video ? 96 : 111);
+            values.put("mimeType", video ? "video/VP8" : "audio/opus");
+            values.put("clockRate", video ? 90000 : 48000);
+            values.put("transportId", "T01");
+            reports.add(new Report(codec, "codec", timestampUs, values));
+        }
+        return reports;
+    }
+}
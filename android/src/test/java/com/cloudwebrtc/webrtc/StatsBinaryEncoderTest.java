@@ -0,0 +1,107 @@
+package com.cloudwebrtc.webrtc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The expected bytes are decoded by test/unit/stats_binary_decoder_test.dart, keep both in
+ * sync when the format changes.
+ */
+public class StatsBinaryEncoderTest {
+    @Test
+    public void firstPollSendsEveryString() {
+        StatsBinaryEncoder encoder = new StatsBinaryEncoder(new StatsBinaryEncoder.StringTable());
+        Map<String, Object> inbound = new LinkedHashMap<>();
+        inbound.put("ssrc", 1234L);
+        inbound.put("kind", "video");
+        inbound.put("jitter", 0.25);
+        inbound.put("packetsLost", -3);
+        inbound.put("active", true);
+        inbound.put("rids", Arrays.asList("a", "b"));
+        Map<String, Object> perDscp = new LinkedHashMap<>();
+        perDscp.put("0", 10);
+        inbound.put("perDscp", perDscp);
+        encoder.writeReport("IT01V1234", "inbound-rtp", 1.7e15, inbound);
+        encoder.writeReport("CIT01_96", "codec", 1.7e15,
+                Collections.<String, Object>singletonMap("mimeType", "video/VP8"));
+
+        assertEquals("02000000"
+                + "00000100" + "0000796090281843" + "0700"
+                + "0200" + "02" + "d204000000000000"
+                + "0300" + "04" + "0400"
+                + "0500" + "00" + "000000000000d03f"
+                + "0600" + "01" + "fdffffff"
+                + "0700" + "03" + "01"
+                + "0800" + "05" + "0200" + "0900" + "0a00"
+                + "0b00" + "06" + "0100" + "0c00" + "01" + "0a000000"
+                + "0d000e00" + "0000796090281843" + "0100"
+                + "0f00" + "04" + "1000",
+                hex(encoder.finish()));
+        assertFalse(encoder.isReset());
+        assertEquals(Arrays.asList("IT01V1234", "inbound-rtp", "ssrc", "kind", "video", "jitter",
+                "packetsLost", "active", "rids", "a", "b", "perDscp", "0", "CIT01_96", "codec",
+                "mimeType", "video/VP8"), encoder.getAddedStrings());
+    }
+
+    @Test
+    public void laterPollsOnlySendNewStrings() {
+        StatsBinaryEncoder.StringTable table = new StatsBinaryEncoder.StringTable();
+        StatsBinaryEncoder first = new StatsBinaryEncoder(table);
+        first.writeReport("IT01V1234", "inbound-rtp", 1.7e15,
+                Collections.<String, Object>singletonMap("kind", "video"));
+        first.finish();
+
+        StatsBinaryEncoder second = new StatsBinaryEncoder(table);
+        second.writeReport("IT01V1234", "inbound-rtp", 1.7e15,
+                Collections.<String, Object>singletonMap("framesDecoded", 30L));
+        assertFalse(second.isReset());
+        assertEquals(Collections.singletonList("framesDecoded"), second.getAddedStrings());
+        assertEquals("01000000" + "00000100" + "0000796090281843" + "0100"
+                + "0400" + "02" + "1e00000000000000", hex(second.finish()));
+    }
+
+    @Test
+    public void invalidatedTableStartsOver() {
+        StatsBinaryEncoder.StringTable table = new StatsBinaryEncoder.StringTable();
+        StatsBinaryEncoder first = new StatsBinaryEncoder(table);
+        first.writeReport("IT01V1234", "inbound-rtp", 1.7e15,
+                Collections.<String, Object>singletonMap("kind", "video"));
+        first.finish();
+        table.invalidate();
+
+        StatsBinaryEncoder second = new StatsBinaryEncoder(table);
+        second.writeReport("IT01A5678", "inbound-rtp", 1.7e15 + 2e6,
+                Collections.<String, Object>singletonMap("kind", "audio"));
+        assertTrue(second.isReset());
+        assertEquals(Arrays.asList("IT01A5678", "inbound-rtp", "kind", "audio"), second.getAddedStrings());
+        assertEquals("01000000" + "00000100" + "0012f36090281843" + "0100" + "0200" + "04" + "0300",
+                hex(second.finish()));
+    }
+
+    @Test
+    public void unsupportedValuesAreSkipped() {
+        StatsBinaryEncoder encoder = new StatsBinaryEncoder(new StatsBinaryEncoder.StringTable());
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("unknown", new Object());
+        values.put("kind", "audio");
+        encoder.writeReport("A", "t", 0, values);
+        assertEquals("01000000" + "00000100" + "0000000000000000" + "0100" + "0300" + "04" + "0400",
+                hex(encoder.finish()));
+    }
+
+    private static String hex(byte[] data) {
+        StringBuilder builder = new StringBuilder();
+        for (byte b : data) {
+            builder.append(String.format("%02x", b & 0xff));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,29 @@
+package com.cloudwebrtc.webrtc.audio;
+
+import static org.junit.Assert.assertEquals;
+
+import com.cloudwebrtc.webrtc.Benchmark;
+
+import org.junit.Test;
+
+public class AudioBufferPoolBenchmarkTest {
+    private static final int FRAME_BYTES = 480 * 2 * 2;
+    private static final int ITERATIONS = 200000;
+
+    @Test
+    public void pooledVersusAllocatedArrays() {
+        final AudioBufferPool pool = new AudioBufferPool(8);
+        Benchmark.measure("AudioBufferPool acquire+release", ITERATIONS, i -> {
+            byte[] array = pool.acquireArray(FRAME_BYTES);
+            array[i % FRAME_BYTES] = (byte) i;
+            pool.releaseArray(array);
+            return array;
+        });
+        Benchmark.measure("new byte[]", ITERATIONS, i -> {
+            byte[] array = new byte[FRAME_BYTES];
+            array[i % FRAME_BYTES] = (byte) i;
+            return array;
+        });
+        assertEquals(1, pool.getAllocationCount());
+    }
+}
@@ -0,0 +1,109 @@
+package com.cloudwebrtc.webrtc.audio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class AudioBufferPoolTest {
+    // 10 ms of 48 kHz stereo 16 bit audio.
+    private static final int FRAME_BYTES = 480 * 2 * 2;
+
+    @Test
+    public void steadyStateDoesNotAllocate() {
+        AudioBufferPool pool = new AudioBufferPool(4);
+        for (int i = 0; i < 10000; i++) {
+            byte[] array = pool.acquireArray(FRAME_BYTES);
+            ByteBuffer direct = pool.acquireDirect(FRAME_BYTES);
+            pool.releaseArray(array);
+            pool.releaseDirect(direct);
+        }
+        assertEquals(2, pool.getAllocationCount());
+    }
+
+    @Test
+    public void buffersAreReusedForTheSameSizeOnly() {
+        AudioBufferPool pool = new AudioBufferPool(4);
+        byte[] small = pool.acquireArray(100);
+        pool.releaseArray(small);
+        byte[] large = pool.acquireArray(200);
+        assertEquals(200, large.length);
+        assertSame(small, pool.acquireArray(100));
+        assertEquals(2, pool.getAllocationCount());
+    }
+
+    @Test
+    public void releasedDirectBuffersAreCleared() {
+        AudioBufferPool pool = new AudioBufferPool(4);
+        ByteBuffer buffer = pool.acquireDirect(64);
+        buffer.position(10).limit(20);
+        pool.releaseDirect(buffer);
+        ByteBuffer again = pool.acquireDirect(64);
+        assertSame(buffer, again);
+        assertEquals(0, again.position());
+        assertEquals(64, again.limit());
+    }
+
+    @Test
+    public void buffersBeyondTheLimitAreDropped() {
+        AudioBufferPool pool = new AudioBufferPool(2);
+        byte[] a = pool.acquireArray(8);
+        byte[] b = pool.acquireArray(8);
+        byte[] c = pool.acquireArray(8);
+        pool.releaseArray(a);
+        pool.releaseArray(b);
+        pool.releaseArray(c);
+        pool.acquireArray(8);
+        pool.acquireArray(8);
+        assertEquals(3, pool.getAllocationCount());
+        pool.acquireArray(8);
+        assertEquals(4, pool.getAllocationCount());
+    }
+
+    @Test
+    public void concurrentUseNeverHandsOutABufferTwice() throws InterruptedException {
+        final AudioBufferPool pool = new AudioBufferPool(8);
+        final Set<byte[]> inUse = Collections.synchronizedSet(
+                Collections.newSetFromMap(new IdentityHashMap<byte[], Boolean>()));
+        final AtomicBoolean duplicate = new AtomicBoolean();
+        final int threads = 4;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < 20000; i++) {
+                        byte[] array = pool.acquireArray(FRAME_BYTES);
+                        if (!inUse.add(array)) {
+                            duplicate.set(true);
+                        }
+                        inUse.remove(array);
+                        pool.releaseArray(array);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        start.countDown();
+        done.await();
+        assertFalse(duplicate.get());
+        // At most one buffer per thread was ever outstanding.
+        assertTrue(pool.getAllocationCount() <= threads);
+        byte[] first = pool.acquireArray(FRAME_BYTES);
+        assertNotSame(first, pool.acquireArray(FRAME_BYTES));
+    }
+}
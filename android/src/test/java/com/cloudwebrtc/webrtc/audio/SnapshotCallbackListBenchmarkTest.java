@@ -0,0 +1,92 @@
+package com.cloudwebrtc.webrtc.audio;
+
+import static org.junit.Assert.assertEquals;
+
+import com.cloudwebrtc.webrtc.Benchmark;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Dispatch of one audio frame to four callbacks, through {@link SnapshotCallbackList} and
+ * through the synchronized {@link ArrayList} the audio adapters used before. Measured alone
+ * and while another thread keeps adding and removing a callback, like a sink registered from
+ * the UI thread during capture.
+ */
+public class SnapshotCallbackListBenchmarkTest {
+    private static final int CALLBACKS = 4;
+    private static final int ITERATIONS = 500000;
+
+    private interface Callback {
+        void onFrame(long frame);
+    }
+
+    private static final class Counter implements Callback {
+        long frames;
+
+        @Override
+        public void onFrame(long frame) {
+            frames += frame & 1;
+        }
+    }
+
+    @Test
+    public void snapshotVersusSynchronizedList() throws InterruptedException {
+        final SnapshotCallbackList<Callback> snapshotList = new SnapshotCallbackList<>(new Callback[0]);
+        final List<Callback> lockedList = new ArrayList<>();
+        for (int i = 0; i < CALLBACKS; i++) {
+            snapshotList.add(new Counter());
+            lockedList.add(new Counter());
+        }
+
+        Benchmark.measure("snapshot dispatch", ITERATIONS, i -> dispatchSnapshot(snapshotList, i));
+        Benchmark.measure("synchronized list dispatch", ITERATIONS, i -> dispatchLocked(lockedList, i));
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final Callback extra = new Counter();
+        Thread writer = new Thread(() -> {
+            while (running.get()) {
+                snapshotList.add(extra);
+                snapshotList.remove(extra);
+                synchronized (lockedList) {
+                    lockedList.add(extra);
+                }
+                synchronized (lockedList) {
+                    lockedList.remove(extra);
+                }
+            }
+        });
+        writer.start();
+        try {
+            Benchmark.measure("snapshot dispatch, concurrent writer", ITERATIONS,
+                    i -> dispatchSnapshot(snapshotList, i));
+            Benchmark.measure("synchronized list dispatch, concurrent writer", ITERATIONS,
+                    i -> dispatchLocked(lockedList, i));
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+        assertEquals(CALLBACKS, snapshotList.snapshot().length);
+        assertEquals(CALLBACKS, lockedList.size());
+    }
+
+    private static Object dispatchSnapshot(SnapshotCallbackList<Callback> callbacks, long frame) {
+        for (Callback callback : callbacks.snapshot()) {
+            callback.onFrame(frame);
+        }
+        return callbacks;
+    }
+
+    /** Dispatch as the adapters did before {@link SnapshotCallbackList}. */
+    private static Object dispatchLocked(List<Callback> callbacks, long frame) {
+        synchronized (callbacks) {
+            for (Callback callback : callbacks) {
+                callback.onFrame(frame);
+            }
+        }
+        return callbacks;
+    }
+}
@@ -0,0 +1,101 @@
+package com.cloudwebrtc.webrtc.audio;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SnapshotCallbackListTest {
+    @Test
+    public void addAndRemoveKeepOrder() {
+        SnapshotCallbackList<String> list = new SnapshotCallbackList<>(new String[0]);
+        assertTrue(list.isEmpty());
+        list.add("a");
+        list.add("b");
+        list.add("c");
+        assertTrue(list.remove("b"));
+        assertFalse(list.remove("x"));
+        assertArrayEquals(new String[]{"a", "c"}, list.snapshot());
+        assertTrue(list.remove("a"));
+        assertTrue(list.remove("c"));
+        assertTrue(list.isEmpty());
+    }
+
+    @Test
+    public void snapshotsHaveTheElementType() {
+        SnapshotCallbackList<Runnable> list = new SnapshotCallbackList<>(new Runnable[0]);
+        list.add(() -> { });
+        assertEquals(Runnable[].class, list.snapshot().getClass());
+    }
+
+    @Test
+    public void heldSnapshotIsNotChangedByWriters() {
+        SnapshotCallbackList<String> list = new SnapshotCallbackList<>(new String[0]);
+        list.add("a");
+        String[] held = list.snapshot();
+        list.add("b");
+        list.remove("a");
+        assertArrayEquals(new String[]{"a"}, held);
+    }
+
+    /** Dispatches continuously while other threads add and remove callbacks. */
+    @Test
+    public void concurrentAddRemoveDuringDispatch() throws InterruptedException {
+        final SnapshotCallbackList<Runnable> list = new SnapshotCallbackList<>(new Runnable[0]);
+        final Runnable permanent = () -> { };
+        list.add(permanent);
+        final int writers = 4;
+        final int rounds = 20000;
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(writers);
+
+        Thread dispatcher = new Thread(() -> {
+            try {
+                while (writing.get()) {
+                    boolean sawPermanent = false;
+                    for (Runnable callback : list.snapshot()) {
+                        callback.run();
+                        sawPermanent |= callback == permanent;
+                    }
+                    if (!sawPermanent) {
+                        throw new AssertionError("permanent callback missing from a snapshot");
+                    }
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        });
+        dispatcher.start();
+        for (int w = 0; w < writers; w++) {
+            new Thread(() -> {
+                try {
+                    for (int i = 0; i < rounds; i++) {
+                        Runnable callback = () -> { };
+                        list.add(callback);
+                        if (!list.remove(callback)) {
+                            throw new AssertionError("added callback not found");
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        writing.set(false);
+        dispatcher.join();
+
+        assertNull(failure.get());
+        assertArrayEquals(new Runnable[]{permanent}, list.snapshot());
+    }
+}
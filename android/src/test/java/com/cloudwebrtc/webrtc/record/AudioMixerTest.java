@@ -0,0 +1,153 @@
+package com.cloudwebrtc.webrtc.record;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.media.AudioFormat;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+
+public class AudioMixerTest {
+    private static final int RATE = 48000;
+    // 10 ms at 48 kHz, the buffer size of the WebRTC audio callbacks.
+    private static final int FRAMES = 480;
+    private static final long BUFFER_NS = 10000000L;
+    private static final int JITTER_MS = 40;
+    private static final long T0 = 1000000000L;
+
+    @Test
+    public void singleSourcePassesThrough() {
+        AudioMixer mixer = new AudioMixer(RATE, 1, 1, JITTER_MS);
+        write(mixer, 0, constant(FRAMES, 1, (short) 1234), RATE, 1, T0);
+        short[] out = new short[FRAMES];
+        assertEquals(FRAMES, mixer.read(out, FRAMES, false));
+        for (short sample : out) {
+            assertEquals(1234, sample);
+        }
+        assertEquals(0, mixer.available(true));
+    }
+
+    @Test
+    public void sourcesAreSummed() {
+        AudioMixer mixer = new AudioMixer(RATE, 1, 2, JITTER_MS);
+        write(mixer, 0, constant(FRAMES, 1, (short) 1000), RATE, 1, T0);
+        write(mixer, 1, constant(FRAMES, 1, (short) -3000), RATE, 1, T0);
+        short[] out = new short[FRAMES];
+        assertEquals(FRAMES, mixer.read(out, FRAMES, false));
+        for (short sample : out) {
+            assertEquals(-2000, sample);
+        }
+    }
+
+    @Test
+    public void loudMixIsLimitedInsteadOfClipped() {
+        AudioMixer mixer = new AudioMixer(RATE, 1, 2, JITTER_MS);
+        write(mixer, 0, constant(FRAMES, 1, (short) 30000), RATE, 1, T0);
+        write(mixer, 1, constant(FRAMES, 1, (short) 30000), RATE, 1, T0);
+        short[] out = new short[FRAMES];
+        mixer.read(out, FRAMES, false);
+        for (short sample : out) {
+            assertTrue(Math.abs(sample - Short.MAX_VALUE) <= 1);
+        }
+        assertEquals(1L, stats(mixer).get("limitedBlocks"));
+    }
+
+    @Test
+    public void monoIsDuplicatedToStereo() {
+        AudioMixer mixer = new AudioMixer(RATE, 2, 1, JITTER_MS);
+        short[] mono = new short[FRAMES];
+        for (int i = 0; i < FRAMES; i++) {
+            mono[i] = (short) i;
+        }
+        write(mixer, 0, mono, RATE, 1, T0);
+        short[] out = new short[FRAMES * 2];
+        assertEquals(FRAMES, mixer.read(out, FRAMES, false));
+        for (int i = 0; i < FRAMES; i++) {
+            assertEquals(i, out[2 * i]);
+            assertEquals(i, out[2 * i + 1]);
+        }
+    }
+
+    @Test
+    public void resampledSourceKeepsItsDuration() {
+        AudioMixer mixer = new AudioMixer(RATE, 1, 1, JITTER_MS);
+        for (int i = 0; i < 100; i++) {
+            write(mixer, 0, constant(441, 1, (short) 100), 44100, 1, T0 + i * BUFFER_NS);
+        }
+        // One second of input, the resampler holds back at most one frame.
+        assertTrue(Math.abs(mixer.available(true) - RATE) <= 1);
+    }
+
+    @Test
+    public void lateSourceIsAlignedByArrivalTime() {
+        AudioMixer mixer = new AudioMixer(RATE, 1, 2, JITTER_MS);
+        write(mixer, 0, constant(FRAMES, 1, (short) 1000), RATE, 1, T0);
+        // Starts 20 ms after the first source, the 10 ms in between stay silent.
+        write(mixer, 1, constant(FRAMES, 1, (short) 2000), RATE, 1, T0 + 2 * BUFFER_NS);
+        short[] out = new short[3 * FRAMES];
+        assertEquals(3 * FRAMES, mixer.read(out, out.length, true));
+        assertEquals(1000, out[0]);
+        assertEquals(1000, out[FRAMES - 1]);
+        assertEquals(0, out[FRAMES]);
+        assertEquals(0, out[2 * FRAMES - 1]);
+        assertEquals(2000, out[2 * FRAMES]);
+        assertEquals(2000, out[3 * FRAMES - 1]);
+    }
+
+    @Test
+    public void longPauseKeepsTheTimeline() {
+        AudioMixer mixer = new AudioMixer(RATE, 1, 1, JITTER_MS);
+        write(mixer, 0, constant(FRAMES, 1, (short) 1000), RATE, 1, T0);
+        short[] out = new short[RATE];
+        mixer.read(out, out.length, false);
+        // Resumes after 5 s, far longer than the mixer buffers.
+        long pauseNs = 5000000000L;
+        write(mixer, 0, constant(FRAMES, 1, (short) 2000), RATE, 1, T0 + pauseNs);
+        long silent = 0;
+        int frames;
+        int last = 0;
+        while ((frames = mixer.read(out, out.length, false)) > 0) {
+            for (int i = 0; i < frames; i++) {
+                if (out[i] == 0) {
+                    silent++;
+                }
+            }
+            last = frames;
+        }
+        assertEquals(5 * RATE + FRAMES, mixer.getMixedFrames());
+        assertEquals(5 * RATE - FRAMES, silent);
+        assertEquals(2000, out[last - 1]);
+        assertEquals((long) (5 * RATE - FRAMES), stats(mixer).get("silenceFrames"));
+    }
+
+    @Test
+    public void shortPauseIsFilledWithSilence() {
+        AudioMixer mixer = new AudioMixer(RATE, 1, 1, JITTER_MS);
+        write(mixer, 0, constant(FRAMES, 1, (short) 1000), RATE, 1, T0);
+        // 100 ms gap, more than the jitter window.
+        write(mixer, 0, constant(FRAMES, 1, (short) 1000), RATE, 1, T0 + 11 * BUFFER_NS);
+        assertEquals(12 * FRAMES, mixer.available(true));
+    }
+
+    static short[] constant(int frames, int channels, short value) {
+        short[] samples = new short[frames * channels];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = value;
+        }
+        return samples;
+    }
+
+    static void write(AudioMixer mixer, int source, short[] samples, int rate, int channels, long arrivalNs) {
+        ByteBuffer pcm = ByteBuffer.allocate(samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        pcm.asShortBuffer().put(samples);
+        mixer.write(source, pcm.array(), pcm.capacity(), rate, channels, AudioFormat.ENCODING_PCM_16BIT, arrivalNs);
+    }
+
+    private static Map<String, Object> stats(AudioMixer mixer) {
+        return mixer.getStats().toMap();
+    }
+}
@@ -0,0 +1,71 @@
+package com.cloudwebrtc.webrtc.record;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class RecordingClockTest {
+    private static final int RATE = 48000;
+    private static final int FRAMES = 480;
+    private static final long T0 = 1000000000L;
+    // One video frame at 30 fps, the sync error a viewer starts to notice.
+    private static final long VIDEO_FRAME_US = 33333;
+
+    @Test
+    public void presentationTimesIncreaseStrictly() {
+        RecordingClock clock = new RecordingClock(T0);
+        assertEquals(0, clock.getAudioPresentationTimeUs(T0 - 5000));
+        assertEquals(1, clock.getAudioPresentationTimeUs(T0));
+        assertEquals(10000, clock.getAudioPresentationTimeUs(T0 + 10000000L));
+
+        clock.onVideoFrame(0, T0 + 1000000L);
+        assertEquals(1000000L, clock.getVideoPresentationTimeNs(0));
+        assertEquals(1001000L, clock.getVideoPresentationTimeNs(0));
+        assertEquals(34333333L, clock.getVideoPresentationTimeNs(33333333L));
+    }
+
+    @Test
+    public void fastDeviceClockStaysInSyncWithVideo() {
+        // 500 ppm fast, 300 ms of drift over the run if uncorrected.
+        assertStaysInSync(1.0005);
+    }
+
+    @Test
+    public void slowDeviceClockStaysInSyncWithVideo() {
+        assertStaysInSync(0.9995);
+    }
+
+    /**
+     * Feeds 10 minutes of a device clock running at {@code speed} times the nominal rate with
+     * delivery jitter, and checks that audio presented at any time is within one video frame
+     * of a video frame delivered at the same time.
+     */
+    private static void assertStaysInSync(double speed) {
+        RecordingClock clock = new RecordingClock(T0);
+        AudioMixer mixer = new AudioMixer(RATE, 1, 1, 40);
+        clock.onVideoFrame(0, T0);
+        Random random = new Random(42);
+        short[] samples = AudioMixerTest.constant(FRAMES, 1, (short) 100);
+        short[] out = new short[RATE];
+        // Wall time between two buffers of the device.
+        double periodNs = 10000000.0 / speed;
+        long buffers = (long) (600e9 / periodNs);
+        long maxErrorUs = 0;
+        for (long i = 1; i <= buffers; i++) {
+            long capturedNs = T0 + (long) (i * periodNs);
+            // Delivered up to 3 ms late.
+            long arrivalNs = capturedNs + random.nextInt(3000000);
+            AudioMixerTest.write(mixer, 0, samples, RATE, 1, arrivalNs);
+            while (mixer.read(out, out.length, false) > 0) {
+                // Drain like the encode thread.
+            }
+            long audioUs = clock.getAudioPresentationTimeUs(mixer.getFrameTimeNs(mixer.getMixedFrames()));
+            long videoUs = clock.getVideoPresentationTimeNs(capturedNs - T0) / 1000;
+            maxErrorUs = Math.max(maxErrorUs, Math.abs(audioUs - videoUs));
+        }
+        assertTrue("drift of " + maxErrorUs + " us", maxErrorUs < VIDEO_FRAME_US);
+    }
+}
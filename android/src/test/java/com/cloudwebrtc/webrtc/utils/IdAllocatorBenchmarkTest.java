@@ -0,0 +1,86 @@
+package com.cloudwebrtc.webrtc.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import com.cloudwebrtc.webrtc.Benchmark;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * {@link IdAllocator} versus the former allocation, a random UUID retried while any existing
+ * object already used it. The scan walks 10 peer connections with 20 tracks each, as
+ * {@code getTrackForId} did.
+ */
+public class IdAllocatorBenchmarkTest {
+    private static final int PEER_CONNECTIONS = 10;
+    private static final int TRACKS_PER_CONNECTION = 20;
+    private static final int ITERATIONS = 100000;
+
+    @Test
+    public void allocatorVersusUuidAndScan() {
+        final List<Map<String, Object>> connections = new ArrayList<>();
+        for (int pc = 0; pc < PEER_CONNECTIONS; pc++) {
+            Map<String, Object> tracks = new HashMap<>();
+            for (int t = 0; t < TRACKS_PER_CONNECTION; t++) {
+                tracks.put(UUID.randomUUID().toString(), new Object());
+            }
+            connections.add(tracks);
+        }
+
+        Benchmark.measure("IdAllocator.nextId", ITERATIONS, i -> IdAllocator.nextId());
+        Benchmark.measure("UUID.randomUUID", ITERATIONS, i -> UUID.randomUUID().toString());
+        Benchmark.measure("UUID.randomUUID + scan", ITERATIONS, i -> {
+            String id;
+            do {
+                id = UUID.randomUUID().toString();
+            } while (isUsed(connections, id));
+            return id;
+        });
+    }
+
+    @Test
+    public void idsAreUniqueAcrossThreads() throws InterruptedException {
+        final Set<String> ids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final int threads = 4;
+        final int perThread = 10000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(IdAllocator.nextId());
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        assertEquals(threads * perThread, ids.size());
+        Set<String> prefixes = new HashSet<>();
+        for (String id : ids) {
+            prefixes.add(id.substring(0, id.indexOf('-')));
+        }
+        assertEquals(1, prefixes.size());
+    }
+
+    private static boolean isUsed(List<Map<String, Object>> connections, String id) {
+        // Each connection was asked in turn, by key lookup or by walking its tracks.
+        for (Map<String, Object> tracks : connections) {
+            for (String trackId : tracks.keySet()) {
+                if (trackId.equals(id)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,158 @@
+package com.cloudwebrtc.webrtc.video.camera;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.webrtc.CameraEnumerationAndroid;
+import org.webrtc.CameraEnumerationAndroid.CaptureFormat;
+import org.webrtc.Size;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class CameraCapabilityIndexTest {
+    private static final int ROUNDS = 2000;
+    // Few distinct values, so lists repeat sizes and requests hit equally close sizes.
+    private static final int[] WIDTHS = {176, 320, 352, 640, 720, 960, 1280, 1440, 1920};
+    private static final int[] HEIGHTS = {144, 240, 288, 360, 480, 540, 720, 1080};
+    private static final int[] FPS = {5, 10, 15, 24, 25, 30, 60};
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void closestSizeMatchesWebRtcOnRandomFormats() {
+        for (int round = 0; round < ROUNDS; round++) {
+            List<CaptureFormat> formats = randomFormats(1 + random.nextInt(20));
+            List<Size> sizes = sizesOf(formats);
+            int width = random.nextInt(2000);
+            int height = random.nextInt(1200);
+            if (random.nextBoolean()) {
+                // Exactly between two supported widths, a tie if the heights match.
+                width = (WIDTHS[random.nextInt(WIDTHS.length)] + WIDTHS[random.nextInt(WIDTHS.length)]) / 2;
+                height = HEIGHTS[random.nextInt(HEIGHTS.length)];
+            }
+
+            Size expected = CameraEnumerationAndroid.getClosestSupportedSize(sizes, width, height);
+            Size actual = new CameraCapabilityIndex.DeviceFormats(formats).findClosestSize(width, height);
+
+            String request = width + "x" + height + " in " + sizes;
+            assertTrue(request, sizes.contains(actual));
+            assertEquals(request, distance(expected, width, height), distance(actual, width, height));
+            if (countAtDistance(sizes, width, height, distance(expected, width, height)) == 1) {
+                assertEquals(request, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void tieReturnsAnEquallyCloseSize() {
+        List<CaptureFormat> formats = new ArrayList<>();
+        formats.add(format(640, 480, 30));
+        formats.add(format(660, 460, 30));
+        formats.add(format(1280, 720, 30));
+
+        Size size = new CameraCapabilityIndex.DeviceFormats(formats).findClosestSize(650, 470);
+
+        assertEquals(20, distance(size, 650, 470));
+        assertEquals(20, distance(CameraEnumerationAndroid.getClosestSupportedSize(sizesOf(formats), 650, 470), 650, 470));
+    }
+
+    @Test
+    public void emptyFormatsFindNothing() {
+        CameraCapabilityIndex.DeviceFormats deviceFormats =
+                new CameraCapabilityIndex.DeviceFormats(Collections.<CaptureFormat>emptyList());
+
+        assertTrue(deviceFormats.isEmpty());
+        assertNull(deviceFormats.findClosestSize(1280, 720));
+        assertNull(deviceFormats.findFramerateRange(30));
+    }
+
+    @Test
+    public void framerateRangeMatchesLinearSearchOnRandomFormats() {
+        for (int round = 0; round < ROUNDS; round++) {
+            List<CaptureFormat> formats = randomFormats(1 + random.nextInt(20));
+            int fps = 1 + random.nextInt(70);
+
+            CaptureFormat.FramerateRange expected = linearFramerateRange(formats, fps);
+            CaptureFormat.FramerateRange actual =
+                    new CameraCapabilityIndex.DeviceFormats(formats).findFramerateRange(fps);
+
+            String request = fps + " fps";
+            assertEquals(request, expected.max, actual.max);
+            assertEquals(request, expected.min, actual.min);
+        }
+    }
+
+    @Test
+    public void framerateRangeFallsBackToFastest() {
+        List<CaptureFormat> formats = new ArrayList<>();
+        formats.add(format(640, 480, 15));
+        CaptureFormat fastest = format(640, 480, 30);
+        formats.add(fastest);
+
+        assertSame(fastest.framerate, new CameraCapabilityIndex.DeviceFormats(formats).findFramerateRange(60));
+    }
+
+    /** Lowest max reaching {@code fps}, then lowest min, or the highest range if none does. */
+    private static CaptureFormat.FramerateRange linearFramerateRange(List<CaptureFormat> formats, int fps) {
+        CaptureFormat.FramerateRange best = null;
+        CaptureFormat.FramerateRange fastest = null;
+        for (CaptureFormat format : formats) {
+            CaptureFormat.FramerateRange range = format.framerate;
+            if (range.max >= fps * 1000 && (best == null || compare(range, best) < 0)) {
+                best = range;
+            }
+            if (fastest == null || compare(range, fastest) > 0) {
+                fastest = range;
+            }
+        }
+        return best != null ? best : fastest;
+    }
+
+    private static int compare(CaptureFormat.FramerateRange a, CaptureFormat.FramerateRange b) {
+        return a.max != b.max ? Integer.compare(a.max, b.max) : Integer.compare(a.min, b.min);
+    }
+
+    private List<CaptureFormat> randomFormats(int count) {
+        List<CaptureFormat> formats = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int max = FPS[random.nextInt(FPS.length)];
+            int min = random.nextBoolean() ? max : FPS[random.nextInt(FPS.length)];
+            formats.add(new CaptureFormat(WIDTHS[random.nextInt(WIDTHS.length)],
+                    HEIGHTS[random.nextInt(HEIGHTS.length)],
+                    new CaptureFormat.FramerateRange(Math.min(min, max) * 1000, max * 1000)));
+        }
+        return formats;
+    }
+
+    private static CaptureFormat format(int width, int height, int fps) {
+        return new CaptureFormat(width, height, new CaptureFormat.FramerateRange(fps * 1000, fps * 1000));
+    }
+
+    private static List<Size> sizesOf(List<CaptureFormat> formats) {
+        List<Size> sizes = new ArrayList<>();
+        for (CaptureFormat format : formats) {
+            sizes.add(new Size(format.width, format.height));
+        }
+        return sizes;
+    }
+
+    private static int countAtDistance(List<Size> sizes, int width, int height, int distance) {
+        List<Size> distinct = new ArrayList<>();
+        for (Size size : sizes) {
+            if (distance(size, width, height) == distance && !distinct.contains(size)) {
+                distinct.add(size);
+            }
+        }
+        return distinct.size();
+    }
+
+    private static int distance(Size size, int width, int height) {
+        return Math.abs(size.width - width) + Math.abs(size.height - height);
+    }
+}
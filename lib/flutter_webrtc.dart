@@ -19,6 +19,10 @@ export 'src/native/adapter_type.dart';
 export 'src/native/camera_utils.dart';
 export 'src/native/audio_management.dart';
 export 'src/native/android/audio_configuration.dart';
+export 'src/native/android/data_channel_options.dart';
+export 'src/native/android/frame_capture_session.dart';
+export 'src/native/android/recorder_segment.dart';
+export 'src/native/android/stats_query.dart';
 export 'src/native/ios/audio_configuration.dart';
 export 'src/native/rtc_video_platform_view_controller.dart';
 export 'src/native/rtc_video_platform_view.dart';
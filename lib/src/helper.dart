@@ -3,6 +3,7 @@ import 'dart:math';
 import 'package:flutter/foundation.dart';
 
 import '../flutter_webrtc.dart';
+import 'native/event_channel.dart';
 
 class Helper {
   static Future<List<MediaDeviceInfo>> enumerateDevices(String type) async {
@@ -179,4 +180,62 @@ class Helper {
       throw Exception('requestCapturePermission only support for Android');
     }
   }
+
+  /// Reuse statistics of the pooled camera capturers, Android only.
+  ///
+  /// The result holds `capturerHits`, `capturerMisses`, `helperHits`,
+  /// `helperMisses`, `capturerHitRate`, `helperHitRate`, `timeSavedMs`,
+  /// `idleCapturers` and `idleHelpers`.
+  static Future<Map<String, dynamic>> getCapturerPoolStats() async {
+    final response = await WebRTC.invokeMethod('getCapturerPoolStats');
+    return Map<String, dynamic>.from(response);
+  }
+
+  /// Latency of the native method calls per method name, Android only.
+  ///
+  /// Every entry holds `count`, `meanUs`, `p50Us`, `p90Us`, `p99Us` and
+  /// `maxUs` of the run time, and `meanQueueUs` and `maxQueueUs` of the time
+  /// a call waited for its thread.
+  static Future<Map<String, dynamic>> getMethodLatencies() async {
+    final response = await WebRTC.invokeMethod('getMethodLatencies');
+    return Map<String, dynamic>.from(response);
+  }
+
+  static Future<void> resetMethodLatencies() =>
+      WebRTC.invokeMethod('resetMethodLatencies');
+
+  /// Counters, gauges and histograms of the native plugin, Android only.
+  ///
+  /// The result holds `counters`, `gauges` and `histograms` maps by metric
+  /// name and `intervalMs`, the time since the metrics were last reset. Every
+  /// histogram holds `count`, `mean`, `p50`, `p90`, `p99` and `max`, the unit
+  /// is part of the name, e.g. `method.createOffer.runUs`. With [reset] the
+  /// counters and histograms start over after this read.
+  ///
+  /// Each of the first 8 video renderers receiving frames holds a slot `n`
+  /// with the counter `renderer.n.frames`, its frame rate being the change
+  /// per `intervalMs`, the histogram `renderer.n.frameIntervalUs` and the
+  /// gauge `renderer.n.textureId`, -1 once the slot is free.
+  static Future<Map<String, dynamic>> getPluginMetrics(
+      {bool reset = false}) async {
+    final response = await WebRTC.invokeMethod(
+        'getPluginMetrics', <String, dynamic>{'reset': reset});
+    return Map<String, dynamic>.from(response);
+  }
+
+  /// Sends the metrics of [getPluginMetrics] to [onPluginMetrics] every
+  /// [intervalMs]. With [reset] every event covers one interval.
+  static Future<void> startPluginMetricsEvents(
+          {int intervalMs = 5000, bool reset = false}) =>
+      WebRTC.invokeMethod('startPluginMetricsEvents',
+          <String, dynamic>{'intervalMs': intervalMs, 'reset': reset});
+
+  static Future<void> stopPluginMetricsEvents() =>
+      WebRTC.invokeMethod('stopPluginMetricsEvents');
+
+  static Stream<Map<String, dynamic>> get onPluginMetrics =>
+      FlutterWebRTCEventChannel.instance.handleEvents.stream
+          .where((data) => data.containsKey('onPluginMetrics'))
+          .map((data) => Map<String, dynamic>.from(
+              data['onPluginMetrics']['metrics'] as Map<dynamic, dynamic>));
 }
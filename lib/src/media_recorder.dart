@@ -1,19 +1,45 @@
 import 'package:webrtc_interface/webrtc_interface.dart' as rtc;
 
 import '../flutter_webrtc.dart';
+import 'native/android/native_media_recorder.dart';
 
 class MediaRecorder extends rtc.MediaRecorder {
   MediaRecorder() : _delegate = mediaRecorder();
   final rtc.MediaRecorder _delegate;
 
+  /// [options] configures the encoder on Android, see `MediaRecorderNative.start`.
   @override
   Future<void> start(String path,
-          {MediaStreamTrack? videoTrack, RecorderAudioChannel? audioChannel}) =>
-      _delegate.start(path, videoTrack: videoTrack, audioChannel: audioChannel);
+      {MediaStreamTrack? videoTrack,
+      RecorderAudioChannel? audioChannel,
+      Map<String, dynamic>? options}) {
+    if (options != null && !WebRTC.platformIsWeb) {
+      return (_delegate as NativeMediaRecorder).start(path,
+          videoTrack: videoTrack, audioChannel: audioChannel, options: options);
+    }
+    return _delegate.start(path,
+        videoTrack: videoTrack, audioChannel: audioChannel);
+  }
 
   @override
   Future stop() => _delegate.stop();
 
+  /// Closed segments of a segmented recording, Android only.
+  Stream<RecorderSegment> get onSegment {
+    if (WebRTC.platformIsWeb) {
+      throw UnimplementedError('onSegment is not supported on web');
+    }
+    return (_delegate as NativeMediaRecorder).onSegment;
+  }
+
+  /// Frame counters and queue depth of the running recording, Android only.
+  Future<Map<String, dynamic>> getStats() {
+    if (WebRTC.platformIsWeb) {
+      throw UnimplementedError('getStats is not supported on web');
+    }
+    return (_delegate as NativeMediaRecorder).getStats();
+  }
+
   @override
   void startWeb(
     MediaStream stream, {
@@ -0,0 +1,114 @@
+import 'package:webrtc_interface/webrtc_interface.dart';
+
+/// Native options of a data channel that are not part of
+/// [RTCDataChannelInit], Android only.
+class DataChannelNativeOptions {
+  const DataChannelNativeOptions(
+      {this.batchMaxSize,
+      this.batchMaxLatency,
+      this.sendHighWatermark,
+      this.sendLowWatermark});
+
+  /// Incoming messages are delivered in lists of up to this many messages
+  /// instead of one event each. Batching is off for values below 2.
+  final int? batchMaxSize;
+
+  /// How long the oldest message of an incomplete batch may wait, 16 ms by
+  /// default.
+  final Duration? batchMaxLatency;
+
+  /// Sends are queued natively once the SCTP buffer holds this many bytes,
+  /// 1 MiB by default. A queued send completes once it is handed to SCTP.
+  final int? sendHighWatermark;
+
+  /// Queued sends resume once the SCTP buffer fell to this many bytes,
+  /// 256 KiB by default.
+  final int? sendLowWatermark;
+
+  bool get batching => batchMaxSize != null && batchMaxSize! > 1;
+
+  Map<String, dynamic> toMap() {
+    return <String, dynamic>{
+      if (batchMaxSize != null) 'batchMaxSize': batchMaxSize,
+      if (batchMaxLatency != null)
+        'batchMaxLatencyMs': batchMaxLatency!.inMilliseconds,
+      if (sendHighWatermark != null) 'sendHighWatermark': sendHighWatermark,
+      if (sendLowWatermark != null) 'sendLowWatermark': sendLowWatermark,
+    };
+  }
+}
+
+/// Counters of the native message batching of a data channel.
+class DataChannelBatchStats {
+  DataChannelBatchStats.fromMap(Map<dynamic, dynamic> map)
+      : batches = map['batches'],
+        messages = map['messages'],
+        pending = map['pending'],
+        averageFlushLatencyMs =
+            (map['averageFlushLatencyMs'] as num).toDouble(),
+        maxFlushLatencyMs = map['maxFlushLatencyMs'];
+
+  final int batches;
+  final int messages;
+
+  /// Messages waiting for the next batch.
+  final int pending;
+  final double averageFlushLatencyMs;
+  final int maxFlushLatencyMs;
+}
+
+/// Bytes waiting to be sent by a data channel.
+class DataChannelQueuedAmount {
+  DataChannelQueuedAmount.fromMap(Map<dynamic, dynamic> map)
+      : bufferedAmount = map['bufferedAmount'],
+        queuedAmount = map['queuedAmount'],
+        queuedChunks = map['queuedChunks'];
+
+  /// Bytes in the SCTP buffer.
+  final int bufferedAmount;
+
+  /// Bytes held in the native send queue above the high watermark.
+  final int queuedAmount;
+  final int queuedChunks;
+}
+
+/// Implemented by the native [RTCPeerConnection].
+abstract class DataChannelOptionsPeerConnection {
+  Future<RTCDataChannel> createDataChannelWithOptions(String label,
+      RTCDataChannelInit dataChannelDict, DataChannelNativeOptions options);
+}
+
+extension RTCPeerConnectionDataChannelOptions on RTCPeerConnection {
+  /// [createDataChannel] with [options] for the native side.
+  Future<RTCDataChannel> createDataChannelWithOptions(String label,
+      RTCDataChannelInit dataChannelDict, DataChannelNativeOptions options) {
+    return (this as DataChannelOptionsPeerConnection)
+        .createDataChannelWithOptions(label, dataChannelDict, options);
+  }
+}
+
+/// Implemented by the native [RTCDataChannel].
+abstract class NativeQueueDataChannel {
+  int get queuedAmount;
+
+  Future<DataChannelQueuedAmount> getQueuedAmount();
+}
+
+extension RTCDataChannelNativeQueue on RTCDataChannel {
+  /// Bytes in the native send queue as of the last buffered amount change.
+  int get queuedAmount => (this as NativeQueueDataChannel).queuedAmount;
+
+  Future<DataChannelQueuedAmount> getQueuedAmount() =>
+      (this as NativeQueueDataChannel).getQueuedAmount();
+}
+
+/// Implemented by the native [RTCDataChannel].
+abstract class BatchingDataChannel {
+  Future<DataChannelBatchStats?> getBatchStats();
+}
+
+extension RTCDataChannelBatchStats on RTCDataChannel {
+  /// Batching counters, null if the channel was created without batching.
+  Future<DataChannelBatchStats?> getBatchStats() =>
+      (this as BatchingDataChannel).getBatchStats();
+}
@@ -0,0 +1,97 @@
+import 'dart:async';
+import 'dart:typed_data';
+
+import 'package:flutter/services.dart';
+import 'package:webrtc_interface/webrtc_interface.dart';
+
+import '../utils.dart';
+
+class CapturedFrame {
+  CapturedFrame(this.data, this.width, this.height, this.timestampUs);
+
+  /// The encoded image.
+  final Uint8List data;
+  final int width;
+  final int height;
+  final int timestampUs;
+}
+
+/// Continuous frame capture of a video track, Android only.
+///
+/// Frames are encoded natively every [interval] or every [everyNthFrame]
+/// frames and delivered on [frames]. Frames arriving while the previous one is
+/// still being encoded are dropped.
+class FrameCaptureSession {
+  FrameCaptureSession._(this.sessionId)
+      : frames = EventChannel('FlutterWebRTC/frameCapture$sessionId')
+            .receiveBroadcastStream()
+            .map((event) => CapturedFrame(event['data'], event['width'],
+                event['height'], event['timestampUs']));
+
+  final int sessionId;
+  final Stream<CapturedFrame> frames;
+
+  static Future<FrameCaptureSession> start(
+    MediaStreamTrack track, {
+    String? peerConnectionId,
+    Duration? interval,
+    int? everyNthFrame,
+    int? maxWidth,
+    int? maxHeight,
+    String format = 'jpeg',
+    int quality = 80,
+  }) async {
+    final response = await WebRTC.invokeMethod(
+      'startFrameCapture',
+      <String, dynamic>{
+        'trackId': track.id,
+        'peerConnectionId': peerConnectionId,
+        'intervalMs': interval?.inMilliseconds,
+        'everyNthFrame': everyNthFrame,
+        'maxWidth': maxWidth,
+        'maxHeight': maxHeight,
+        'format': format,
+        'quality': quality,
+      },
+    );
+    return FrameCaptureSession._(response['sessionId']);
+  }
+
+  /// Stops capturing, returns the number of captured and dropped frames.
+  Future<Map<String, dynamic>> stop() async {
+    final response = await WebRTC.invokeMethod(
+      'stopFrameCapture',
+      <String, dynamic>{'sessionId': sessionId},
+    );
+    return Map<String, dynamic>.from(response);
+  }
+}
+
+/// Implemented by the native [MediaStreamTrack].
+abstract class FrameCaptureTrack {
+  Future<ByteBuffer> captureFrameWithOptions({
+    String format = 'jpeg',
+    int quality = 100,
+    int? maxWidth,
+    int? maxHeight,
+  });
+}
+
+/// Single frame capture with encoding options, Android only.
+extension MediaStreamTrackCaptureFrameOptions on MediaStreamTrack {
+  /// Captures the next frame of this video track encoded as [format],
+  /// `'jpeg'`, `'png'` or `'webp'`, with [quality] from 0 to 100. With
+  /// [maxWidth] or [maxHeight] the frame is scaled down to fit, keeping its
+  /// aspect ratio.
+  Future<ByteBuffer> captureFrameWithOptions({
+    String format = 'jpeg',
+    int quality = 100,
+    int? maxWidth,
+    int? maxHeight,
+  }) =>
+      (this as FrameCaptureTrack).captureFrameWithOptions(
+          format: format,
+          quality: quality,
+          maxWidth: maxWidth,
+          maxHeight: maxHeight);
+}
@@ -0,0 +1,16 @@
+import 'package:webrtc_interface/webrtc_interface.dart';
+
+import 'recorder_segment.dart';
+
+/// Implemented by the native [MediaRecorder], backs the Android only members
+/// of the exported MediaRecorder.
+abstract class NativeMediaRecorder {
+  Future<void> start(String path,
+      {MediaStreamTrack? videoTrack,
+      RecorderAudioChannel? audioChannel,
+      Map<String, dynamic>? options});
+
+  Future<Map<String, dynamic>> getStats();
+
+  Stream<RecorderSegment> get onSegment;
+}
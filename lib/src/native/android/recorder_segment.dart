@@ -0,0 +1,18 @@
+/// A finished file of a segmented recording, Android only.
+///
+/// Segments are written when `segmentDuration` or `segmentMaxBytes` is passed
+/// in the recorder options and always end before a key frame.
+class RecorderSegment {
+  RecorderSegment(this.path, this.index, this.durationMs, this.size);
+
+  factory RecorderSegment.fromMap(Map<dynamic, dynamic> map) =>
+      RecorderSegment(
+          map['path'], map['index'], map['durationMs'], map['size']);
+
+  final String path;
+  final int index;
+  final int durationMs;
+
+  /// Size of the file in bytes.
+  final int size;
+}
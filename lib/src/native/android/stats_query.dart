@@ -0,0 +1,224 @@
+import 'dart:typed_data';
+
+import 'package:webrtc_interface/webrtc_interface.dart';
+
+/// Result of [RTCPeerConnectionStatsQuery.getFilteredStats].
+class StatsQueryResult {
+  StatsQueryResult(this.reports, this.removed, this.delta);
+
+  /// Decodes a `getStats` response, [decoder] is required for the binary
+  /// format.
+  factory StatsQueryResult.fromMap(Map<dynamic, dynamic> map,
+      [StatsBinaryDecoder? decoder]) {
+    final reports = map['format'] == 'binary'
+        ? decoder!.decode(map)
+        : (map['stats'] as List<dynamic>)
+            .map((report) => StatsReport(
+                report['id'],
+                report['type'],
+                (report['timestamp'] as num).toDouble(),
+                Map<dynamic, dynamic>.from(report['values'])))
+            .toList();
+    return StatsQueryResult(
+        reports,
+        List<String>.from(map['removed'] ?? const <String>[]),
+        map['delta'] ?? false);
+  }
+
+  /// In delta mode only reports with changed members, holding just those.
+  final List<StatsReport> reports;
+
+  /// Ids of reports returned by the previous delta poll that no longer exist.
+  final List<String> removed;
+  final bool delta;
+}
+
+/// Decodes the binary stats format of one peer connection.
+///
+/// The string table is kept between calls, responses have to be decoded in
+/// the order they were received.
+class StatsBinaryDecoder {
+  static const _tagDouble = 0;
+  static const _tagInt = 1;
+  static const _tagLong = 2;
+  static const _tagBoolean = 3;
+  static const _tagString = 4;
+  static const _tagStringList = 5;
+  static const _tagMap = 6;
+
+  final _strings = <String>[];
+  late ByteData _data;
+  int _offset = 0;
+
+  List<StatsReport> decode(Map<dynamic, dynamic> response) {
+    if (response['stringsReset'] == true) {
+      _strings.clear();
+    }
+    _strings.addAll(List<String>.from(response['strings']));
+    final Uint8List bytes = response['data'];
+    _data = ByteData.sublistView(bytes);
+    _offset = 0;
+    final count = _data.getUint32(0, Endian.little);
+    _offset = 4;
+    final reports = <StatsReport>[];
+    for (var i = 0; i < count; i++) {
+      final id = _string();
+      final type = _string();
+      final timestamp = _data.getFloat64(_offset, Endian.little);
+      _offset += 8;
+      reports.add(StatsReport(id, type, timestamp, _members()));
+    }
+    return reports;
+  }
+
+  String _string() {
+    final value = _strings[_data.getUint16(_offset, Endian.little)];
+    _offset += 2;
+    return value;
+  }
+
+  Map<dynamic, dynamic> _members() {
+    final count = _data.getUint16(_offset, Endian.little);
+    _offset += 2;
+    final values = <dynamic, dynamic>{};
+    for (var i = 0; i < count; i++) {
+      final name = _string();
+      final tag = _data.getUint8(_offset++);
+      values[name] = _value(tag);
+    }
+    return values;
+  }
+
+  dynamic _value(int tag) {
+    switch (tag) {
+      case _tagDouble:
+        _offset += 8;
+        return _data.getFloat64(_offset - 8, Endian.little);
+      case _tagInt:
+        _offset += 4;
+        return _data.getInt32(_offset - 4, Endian.little);
+      case _tagLong:
+        _offset += 8;
+        return _data.getInt64(_offset - 8, Endian.little);
+      case _tagBoolean:
+        return _data.getUint8(_offset++) != 0;
+      case _tagString:
+        return _string();
+      case _tagStringList:
+        final count = _data.getUint16(_offset, Endian.little);
+        _offset += 2;
+        return List<String>.generate(count, (_) => _string());
+      case _tagMap:
+        return _members();
+      default:
+        throw StateError('Unknown stats value tag $tag');
+    }
+  }
+}
+
+/// Connection wide rates derived natively from one stats report.
+class StatsSample {
+  StatsSample.fromMap(Map<dynamic, dynamic> map)
+      : timestampMs = map['timestampMs'],
+        sendBitrate = map['sendBitrate'],
+        receiveBitrate = map['receiveBitrate'],
+        availableOutgoingBitrate = map['availableOutgoingBitrate'],
+        packetLoss = map['packetLoss'],
+        remotePacketLoss = map['remotePacketLoss'],
+        roundTripTimeMs = map['roundTripTimeMs'],
+        jitterMs = map['jitterMs'],
+        sendFps = map['sendFps'],
+        receiveFps = map['receiveFps'];
+
+  final int timestampMs;
+
+  /// Bits per second summed over all RTP streams.
+  final double sendBitrate;
+  final double receiveBitrate;
+  final double availableOutgoingBitrate;
+
+  /// Inbound packets lost during the sampling interval, in percent.
+  final double packetLoss;
+
+  /// Outbound loss reported by the remote peer, in percent.
+  final double remotePacketLoss;
+  final double roundTripTimeMs;
+  final double jitterMs;
+  final double sendFps;
+  final double receiveFps;
+}
+
+/// Implemented by the native [RTCPeerConnection].
+abstract class StatsQueryPeerConnection {
+  Future<StatsQueryResult> getFilteredStats({
+    MediaStreamTrack? track,
+    List<String>? types,
+    List<String>? members,
+    bool deltaOnly = false,
+    bool binary = false,
+  });
+
+  Stream<StatsSample> get onStatsSample;
+
+  Future<void> startStatsSampler({
+    Duration interval = const Duration(seconds: 1),
+    int historySize = 60,
+    double threshold = 0.1,
+  });
+
+  Future<void> stopStatsSampler();
+
+  Future<List<StatsSample>> getStatsHistory();
+}
+
+/// Filtered and incremental stats polling, Android only.
+extension RTCPeerConnectionStatsQuery on RTCPeerConnection {
+  /// Returns the stats of the connection, or of the sender or receiver of
+  /// [track], converted off the signaling thread.
+  ///
+  /// [types] and [members] restrict the result to the given stats types, e.g.
+  /// `inbound-rtp`, and member names. With [deltaOnly] a report is only
+  /// returned if one of its members changed since the previous delta poll of
+  /// the same connection and track, and only with the changed members.
+  ///
+  /// With [binary] the reports are transferred packed, with every string sent
+  /// only once per connection, and decoded on the Dart side.
+  Future<StatsQueryResult> getFilteredStats({
+    MediaStreamTrack? track,
+    List<String>? types,
+    List<String>? members,
+    bool deltaOnly = false,
+    bool binary = false,
+  }) {
+    return (this as StatsQueryPeerConnection).getFilteredStats(
+        track: track,
+        types: types,
+        members: members,
+        deltaOnly: deltaOnly,
+        binary: binary);
+  }
+
+  /// Samples pushed by [startStatsSampler].
+  Stream<StatsSample> get onStatsSample =>
+      (this as StatsQueryPeerConnection).onStatsSample;
+
+  /// Samples the stats natively every [interval] and pushes a [StatsSample]
+  /// on [onStatsSample] whenever a value moved by more than [threshold]
+  /// relative to the last pushed sample. The last [historySize] samples are
+  /// kept, see [getStatsHistory].
+  Future<void> startStatsSampler({
+    Duration interval = const Duration(seconds: 1),
+    int historySize = 60,
+    double threshold = 0.1,
+  }) {
+    return (this as StatsQueryPeerConnection).startStatsSampler(
+        interval: interval, historySize: historySize, threshold: threshold);
+  }
+
+  Future<void> stopStatsSampler() =>
+      (this as StatsQueryPeerConnection).stopStatsSampler();
+
+  /// The kept samples, oldest first, including those that were not pushed.
+  Future<List<StatsSample>> getStatsHistory() =>
+      (this as StatsQueryPeerConnection).getStatsHistory();
+}
@@ -3,18 +3,47 @@ import 'dart:math';
 
 import 'package:webrtc_interface/webrtc_interface.dart';
 
+import 'android/native_media_recorder.dart';
+import 'android/recorder_segment.dart';
+import 'event_channel.dart';
 import 'media_stream_track_impl.dart';
 import 'utils.dart';
 
-class MediaRecorderNative extends MediaRecorder {
+class MediaRecorderNative extends MediaRecorder
+    implements NativeMediaRecorder {
   static final _random = Random();
   final _recorderId = _random.nextInt(0x7FFFFFFF);
 
+  /// [options] configures the encoder on Android:
+  /// * `videoCodec`: `'h264'` (default), `'hevc'` or `'vp8'`. VP8 is written
+  ///   to a WebM file with Opus audio.
+  /// * `videoBitrate`: bits per second, derived from the output size if unset.
+  /// * `bitrateMode`: `'cbr'`, `'vbr'` or `'cq'`, if the encoder supports it.
+  ///   `'cq'` needs Android 9 and ignores `videoBitrate`.
+  /// * `videoQuality`: quality in percent of the encoder's range in `'cq'`
+  ///   mode, 50 by default.
+  /// * `keyFrameInterval`: seconds between key frames, 5 by default.
+  /// * `maxWidth`, `maxHeight`: larger frames are scaled down.
+  /// * `maxFrameRate`: frames above this rate are dropped, 30 by default.
+  /// * `maxQueuedFrames`: frames waiting for the encoder, 3 by default.
+  /// * `frameDropPolicy`: `'dropOldest'` (default) or `'dropNewest'`, applied
+  ///   when the encoder falls behind and the queue is full.
+  /// * `audioCodec`: `'aac'` (default, MP4) or `'opus'` (Ogg, Android 10+)
+  ///   for recordings without [videoTrack].
+  /// * `audioBitrate`: bits per second, 64 kbps by default.
+  /// * `mixAudioChannels`: records both sides of a call, microphone and
+  ///   playout mixed into one track.
+  /// * `segmentDuration`, `segmentMaxBytes`: rotate the output file after this
+  ///   many seconds or bytes, on the next key frame. Segments are named like
+  ///   `path` with a `_0000` style index and reported on [onSegment]. Unlike
+  ///   single file recordings, segments are not added to the media store.
+  /// * `maxSegments`: number of closed segments kept on disk, older ones are
+  ///   deleted. All are kept by default.
   @override
   Future<void> start(String path,
-      {MediaStreamTrack? videoTrack, RecorderAudioChannel? audioChannel
-      // TODO(cloudwebrtc): add codec/quality options
-      }) async {
+      {MediaStreamTrack? videoTrack,
+      RecorderAudioChannel? audioChannel,
+      Map<String, dynamic>? options}) async {
     if (audioChannel == null && videoTrack == null) {
       throw Exception('Neither audio nor video track were provided');
     }
@@ -24,6 +53,7 @@ class MediaRecorderNative extends MediaRecorder {
       if (audioChannel != null) 'audioChannel': audioChannel.index,
       if (videoTrack != null) 'videoTrackId': videoTrack.id,
       'recorderId': _recorderId,
+      if (options != null) 'options': options,
       'peerConnectionId': videoTrack is MediaStreamTrackNative
           ? videoTrack.peerConnectionId
           : null
@@ -38,6 +68,23 @@ class MediaRecorderNative extends MediaRecorder {
     throw 'It\'s for Flutter Web only';
   }
 
+  /// Closed segments of a segmented recording, Android only.
+  @override
+  Stream<RecorderSegment> get onSegment =>
+      FlutterWebRTCEventChannel.instance.handleEvents.stream
+          .where((event) =>
+              event.containsKey('onRecorderSegment') &&
+              event['onRecorderSegment']['recorderId'] == _recorderId)
+          .map((event) => RecorderSegment.fromMap(event['onRecorderSegment']));
+
+  /// Frame counters and queue depth of the running recording, Android only.
+  @override
+  Future<Map<String, dynamic>> getStats() async {
+    final response = await WebRTC.invokeMethod(
+        'getRecorderStats', {'recorderId': _recorderId});
+    return Map<String, dynamic>.from(response);
+  }
+
   @override
   Future<dynamic> stop() async => await WebRTC.invokeMethod(
       'stopRecordToFile', {'recorderId': _recorderId});
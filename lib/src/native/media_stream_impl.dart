@@ -17,6 +17,13 @@ class MediaStreamNative extends MediaStream {
   final _audioTracks = <MediaStreamTrack>[];
   final _videoTracks = <MediaStreamTrack>[];
 
+  /// Per-phase durations in milliseconds reported by getUserMedia on Android,
+  /// empty if the platform does not report them: permissionMs, audioMs,
+  /// capturerCreateMs, cameraStartMs (startCapture until the camera starts
+  /// opening), cameraOpenMs (camera opening until its first frame),
+  /// firstFrameMs (startCapture until the first frame) and totalMs.
+  Map<String, dynamic> timings = {};
+
   void setMediaTracks(List<dynamic> audioTracks, List<dynamic> videoTracks) {
     _audioTracks.clear();
 
@@ -6,9 +6,11 @@ import 'package:path_provider/path_provider.dart';
 import 'package:webrtc_interface/webrtc_interface.dart';
 
 import '../helper.dart';
+import 'android/frame_capture_session.dart';
 import 'utils.dart';
 
-class MediaStreamTrackNative extends MediaStreamTrack {
+class MediaStreamTrackNative extends MediaStreamTrack
+    implements FrameCaptureTrack {
   MediaStreamTrackNative(this._trackId, this._label, this._kind, this._enabled,
       this._peerConnectionId,
       [this.settings_ = const {}]);
@@ -85,6 +87,9 @@ class MediaStreamTrackNative extends MediaStreamTrack {
 
   @override
   Future<ByteBuffer> captureFrame() async {
+    if (WebRTC.platformIsAndroid) {
+      return captureFrameWithOptions();
+    }
     var filePath = await getTemporaryDirectory();
     await WebRTC.invokeMethod(
       'captureFrame',
@@ -99,6 +104,29 @@ class MediaStreamTrackNative extends MediaStreamTrack {
         .then((value) => value.buffer);
   }
 
+  /// Android only, see [MediaStreamTrackCaptureFrameOptions].
+  @override
+  Future<ByteBuffer> captureFrameWithOptions({
+    String format = 'jpeg',
+    int quality = 100,
+    int? maxWidth,
+    int? maxHeight,
+  }) async {
+    // Android encodes in memory, no temporary file round trip.
+    final Uint8List bytes = await WebRTC.invokeMethod(
+      'captureFrame',
+      <String, dynamic>{
+        'trackId': _trackId,
+        'peerConnectionId': _peerConnectionId,
+        'format': format,
+        'quality': quality,
+        'maxWidth': maxWidth,
+        'maxHeight': maxHeight,
+      },
+    );
+    return bytes.buffer;
+  }
+
   @override
   Future<void> applyConstraints([Map<String, dynamic>? constraints]) {
     if (constraints == null) return Future.value();
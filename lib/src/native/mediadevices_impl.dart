@@ -43,6 +43,9 @@ class MediaDeviceNative extends MediaDevices {
       var stream = MediaStreamNative(streamId, 'local');
       stream.setMediaTracks(
           response['audioTracks'] ?? [], response['videoTracks'] ?? []);
+      if (response['timings'] != null) {
+        stream.timings = Map<String, dynamic>.from(response['timings']);
+      }
       return stream;
     } on PlatformException catch (e) {
       throw 'Unable to getUserMedia: ${e.message}';
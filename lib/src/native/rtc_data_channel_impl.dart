@@ -1,9 +1,12 @@
 import 'dart:async';
+import 'dart:convert';
+import 'dart:typed_data';
 
 import 'package:flutter/services.dart';
 
 import 'package:webrtc_interface/webrtc_interface.dart';
 
+import 'android/data_channel_options.dart';
 import 'utils.dart';
 
 final _typeStringToMessageType = <String, MessageType>{
@@ -11,12 +14,18 @@ final _typeStringToMessageType = <String, MessageType>{
   'binary': MessageType.binary
 };
 
+/// Flags of the one byte header used by the raw frame channel on Android.
+const int _kFrameFlagBinary = 0x01;
+const int _kFrameFlagControl = 0x02;
+const int _kFrameFlagError = 0x04;
+
 /// A class that represents a WebRTC datachannel.
 /// Can send and receive text and binary messages.
-class RTCDataChannelNative extends RTCDataChannel {
+class RTCDataChannelNative extends RTCDataChannel
+    implements NativeQueueDataChannel, BatchingDataChannel {
   RTCDataChannelNative(
       this._peerConnectionId, this._label, this._dataChannelId, this._flutterId,
-      {RTCDataChannelState? state}) {
+      {RTCDataChannelState? state, bool receiveFrames = true}) {
     stateChangeStream = _stateChangeController.stream;
     messageStream = _messageController.stream;
     if (state != null) {
@@ -25,10 +34,22 @@ class RTCDataChannelNative extends RTCDataChannel {
     _eventSubscription = _eventChannelFor(_peerConnectionId, _flutterId)
         .receiveBroadcastStream()
         .listen(eventListener, onError: errorListener);
+    if (WebRTC.platformIsAndroid) {
+      _binaryChannel = _binaryChannelFor(_peerConnectionId, _flutterId);
+      if (receiveFrames) {
+        _binaryChannel!.setMessageHandler(_frameListener);
+        _binaryChannel!
+            .send(ByteData(2)
+              ..setUint8(0, _kFrameFlagControl)
+              ..setUint8(1, 1))
+            .catchError((_) => null);
+      }
+    }
   }
   final String _peerConnectionId;
   final String _label;
   int _bufferedAmount = 0;
+  int _queuedAmount = 0;
   @override
   // ignore: overridden_fields
   int? bufferedAmountLowThreshold;
@@ -40,6 +61,9 @@ class RTCDataChannelNative extends RTCDataChannel {
   RTCDataChannelState? _state;
   StreamSubscription<dynamic>? _eventSubscription;
 
+  /// Raw frame channel that bypasses the standard codec, Android only.
+  BasicMessageChannel<ByteData>? _binaryChannel;
+
   @override
   RTCDataChannelState? get state => _state;
 
@@ -53,6 +77,10 @@ class RTCDataChannelNative extends RTCDataChannel {
   @override
   int? get bufferedAmount => _bufferedAmount;
 
+  /// Bytes in the native send queue, Android only.
+  @override
+  int get queuedAmount => _queuedAmount;
+
   final _stateChangeController =
       StreamController<RTCDataChannelState>.broadcast(sync: true);
   final _messageController =
@@ -71,23 +99,18 @@ class RTCDataChannelNative extends RTCDataChannel {
         break;
       case 'dataChannelReceiveMessage':
         _dataChannelId = map['id'];
-
-        var type = _typeStringToMessageType[map['type']];
-        dynamic data = map['data'];
-        RTCDataChannelMessage message;
-        if (type == MessageType.binary) {
-          message = RTCDataChannelMessage.fromBinary(data);
-        } else {
-          message = RTCDataChannelMessage(data);
+        _handleMessage(map);
+        break;
+      case 'dataChannelReceiveMessages':
+        _dataChannelId = map['id'];
+        for (var message in map['messages']) {
+          _handleMessage(message);
         }
-
-        onMessage?.call(message);
-
-        _messageController.add(message);
         break;
 
       case 'dataChannelBufferedAmountChange':
         _bufferedAmount = map['bufferedAmount'];
+        _queuedAmount = map['queuedAmount'] ?? 0;
         if (bufferedAmountLowThreshold != null) {
           if (_bufferedAmount < bufferedAmountLowThreshold!) {
             onBufferedAmountLow?.call(_bufferedAmount);
@@ -98,6 +121,47 @@ class RTCDataChannelNative extends RTCDataChannel {
     }
   }
 
+  void _handleMessage(Map<dynamic, dynamic> map) {
+    var type = _typeStringToMessageType[map['type']];
+    dynamic data = map['data'];
+    RTCDataChannelMessage message;
+    if (type == MessageType.binary) {
+      message = RTCDataChannelMessage.fromBinary(data);
+    } else {
+      message = RTCDataChannelMessage(data);
+    }
+
+    onMessage?.call(message);
+
+    _messageController.add(message);
+  }
+
+  Future<ByteData?> _frameListener(ByteData? frame) async {
+    if (frame == null || frame.lengthInBytes < 1) {
+      return null;
+    }
+    final payload = frame.buffer
+        .asUint8List(frame.offsetInBytes + 1, frame.lengthInBytes - 1);
+    RTCDataChannelMessage message;
+    if (frame.getUint8(0) & _kFrameFlagBinary != 0) {
+      message = RTCDataChannelMessage.fromBinary(Uint8List.fromList(payload));
+    } else {
+      message = RTCDataChannelMessage(utf8.decode(payload));
+    }
+
+    onMessage?.call(message);
+
+    _messageController.add(message);
+    return null;
+  }
+
+  BasicMessageChannel<ByteData> _binaryChannelFor(
+      String peerConnectionId, String flutterId) {
+    return BasicMessageChannel<ByteData>(
+        'FlutterWebRTC/dataChannelBinary$peerConnectionId$flutterId',
+        BinaryCodec());
+  }
+
   EventChannel _eventChannelFor(String peerConnectionId, String flutterId) {
     return EventChannel(
         'FlutterWebRTC/dataChannelEvent$peerConnectionId$flutterId');
@@ -111,6 +175,24 @@ class RTCDataChannelNative extends RTCDataChannel {
 
   @override
   Future<void> send(RTCDataChannelMessage message) async {
+    if (_binaryChannel != null) {
+      final payload =
+          message.isBinary ? message.binary : utf8.encode(message.text);
+      final frame = Uint8List(payload.length + 1);
+      frame[0] = message.isBinary ? _kFrameFlagBinary : 0;
+      frame.setRange(1, frame.length, payload);
+      final reply = await _binaryChannel!.send(ByteData.sublistView(frame));
+      if (reply != null &&
+          reply.lengthInBytes > 0 &&
+          reply.getUint8(0) & _kFrameFlagError != 0) {
+        // Same error as the method channel path.
+        throw PlatformException(
+            code: 'dataChannelSend',
+            message: utf8.decode(reply.buffer.asUint8List(
+                reply.offsetInBytes + 1, reply.lengthInBytes - 1)));
+      }
+      return;
+    }
     await WebRTC.invokeMethod('dataChannelSend', <String, dynamic>{
       'peerConnectionId': _peerConnectionId,
       'dataChannelId': _flutterId,
@@ -119,11 +201,32 @@ class RTCDataChannelNative extends RTCDataChannel {
     });
   }
 
+  @override
+  Future<DataChannelQueuedAmount> getQueuedAmount() async {
+    final response = await WebRTC.invokeMethod(
+        'dataChannelGetQueuedAmount', <String, dynamic>{
+      'peerConnectionId': _peerConnectionId,
+      'dataChannelId': _flutterId
+    });
+    return DataChannelQueuedAmount.fromMap(response);
+  }
+
+  @override
+  Future<DataChannelBatchStats?> getBatchStats() async {
+    final response = await WebRTC.invokeMethod(
+        'dataChannelGetBatchStats', <String, dynamic>{
+      'peerConnectionId': _peerConnectionId,
+      'dataChannelId': _flutterId
+    });
+    return response != null ? DataChannelBatchStats.fromMap(response) : null;
+  }
+
   @override
   Future<void> close() async {
     await _stateChangeController.close();
     await _messageController.close();
     await _eventSubscription?.cancel();
+    _binaryChannel?.setMessageHandler(null);
     await WebRTC.invokeMethod('dataChannelClose', <String, dynamic>{
       'peerConnectionId': _peerConnectionId,
       'dataChannelId': _flutterId
@@ -4,6 +4,8 @@ import 'package:flutter/services.dart';
 
 import 'package:webrtc_interface/webrtc_interface.dart';
 
+import 'android/data_channel_options.dart';
+import 'android/stats_query.dart';
 import 'media_stream_impl.dart';
 import 'media_stream_track_impl.dart';
 import 'rtc_data_channel_impl.dart';
@@ -16,7 +18,8 @@ import 'utils.dart';
 /*
  *  PeerConnection
  */
-class RTCPeerConnectionNative extends RTCPeerConnection {
+class RTCPeerConnectionNative extends RTCPeerConnection
+    implements DataChannelOptionsPeerConnection, StatsQueryPeerConnection {
   RTCPeerConnectionNative(this._peerConnectionId, this._configuration) {
     _eventSubscription = _eventChannelFor(_peerConnectionId)
         .receiveBroadcastStream()
@@ -26,6 +29,8 @@ class RTCPeerConnectionNative extends RTCPeerConnection {
   // private:
   final String _peerConnectionId;
   StreamSubscription<dynamic>? _eventSubscription;
+  final _statsSamples = StreamController<StatsSample>.broadcast();
+  final _statsDecoder = StatsBinaryDecoder();
   final _localStreams = <MediaStream>[];
   final _remoteStreams = <MediaStream>[];
   RTCDataChannelNative? _dataChannel;
@@ -259,6 +264,10 @@ class RTCPeerConnectionNative extends RTCPeerConnection {
             transceiver: transceiver));
         break;
 
+      case 'onStatsSample':
+        _statsSamples.add(StatsSample.fromMap(map));
+        break;
+
       /// Other
       case 'onSelectedCandidatePairChanged':
 
@@ -294,6 +303,7 @@ class RTCPeerConnectionNative extends RTCPeerConnection {
   @override
   Future<void> dispose() async {
     await _eventSubscription?.cancel();
+    await _statsSamples.close();
     await WebRTC.invokeMethod(
       'peerConnectionDispose',
       <String, dynamic>{'peerConnectionId': _peerConnectionId},
@@ -470,6 +480,74 @@ class RTCPeerConnectionNative extends RTCPeerConnection {
     }
   }
 
+  @override
+  Future<StatsQueryResult> getFilteredStats({
+    MediaStreamTrack? track,
+    List<String>? types,
+    List<String>? members,
+    bool deltaOnly = false,
+    bool binary = false,
+  }) async {
+    try {
+      final response = await WebRTC.invokeMethod('getStats', <String, dynamic>{
+        'peerConnectionId': _peerConnectionId,
+        'trackId': track?.id,
+        'types': types,
+        'members': members,
+        'delta': deltaOnly,
+        if (binary) 'format': 'binary',
+      });
+      return StatsQueryResult.fromMap(response, _statsDecoder);
+    } on PlatformException catch (e) {
+      throw 'Unable to RTCPeerConnection::getFilteredStats: ${e.message}';
+    }
+  }
+
+  @override
+  Stream<StatsSample> get onStatsSample => _statsSamples.stream;
+
+  @override
+  Future<void> startStatsSampler({
+    Duration interval = const Duration(seconds: 1),
+    int historySize = 60,
+    double threshold = 0.1,
+  }) async {
+    try {
+      await WebRTC.invokeMethod('startStatsSampler', <String, dynamic>{
+        'peerConnectionId': _peerConnectionId,
+        'options': <String, dynamic>{
+          'intervalMs': interval.inMilliseconds,
+          'historySize': historySize,
+          'threshold': threshold,
+        },
+      });
+    } on PlatformException catch (e) {
+      throw 'Unable to RTCPeerConnection::startStatsSampler: ${e.message}';
+    }
+  }
+
+  @override
+  Future<void> stopStatsSampler() async {
+    await WebRTC.invokeMethod('stopStatsSampler', <String, dynamic>{
+      'peerConnectionId': _peerConnectionId,
+    });
+  }
+
+  @override
+  Future<List<StatsSample>> getStatsHistory() async {
+    try {
+      final response =
+          await WebRTC.invokeMethod('getStatsHistory', <String, dynamic>{
+        'peerConnectionId': _peerConnectionId,
+      });
+      return (response['samples'] as List<dynamic>)
+          .map((sample) => StatsSample.fromMap(sample))
+          .toList();
+    } on PlatformException catch (e) {
+      throw 'Unable to RTCPeerConnection::getStatsHistory: ${e.message}';
+    }
+  }
+
   @override
   List<MediaStream> getLocalStreams() {
     return _localStreams;
@@ -482,17 +560,29 @@ class RTCPeerConnectionNative extends RTCPeerConnection {
 
   @override
   Future<RTCDataChannel> createDataChannel(
-      String label, RTCDataChannelInit dataChannelDict) async {
+          String label, RTCDataChannelInit dataChannelDict) =>
+      createDataChannelWithOptions(
+          label, dataChannelDict, const DataChannelNativeOptions());
+
+  @override
+  Future<RTCDataChannel> createDataChannelWithOptions(
+      String label,
+      RTCDataChannelInit dataChannelDict,
+      DataChannelNativeOptions options) async {
     try {
       final response =
           await WebRTC.invokeMethod('createDataChannel', <String, dynamic>{
         'peerConnectionId': _peerConnectionId,
         'label': label,
-        'dataChannelDict': dataChannelDict.toMap()
+        'dataChannelDict': dataChannelDict.toMap(),
+        'options': options.toMap(),
       });
 
+      // Batched messages come through the event channel, raw frames would
+      // bypass the batching.
       _dataChannel = RTCDataChannelNative(
-          _peerConnectionId, label, response['id'], response['flutterId']);
+          _peerConnectionId, label, response['id'], response['flutterId'],
+          receiveFrames: !options.batching);
       return _dataChannel!;
     } on PlatformException catch (e) {
       throw 'Unable to RTCPeerConnection::createDataChannel: ${e.message}';
@@ -0,0 +1,98 @@
+import 'dart:typed_data';
+
+import 'package:flutter_test/flutter_test.dart';
+
+import 'package:flutter_webrtc/src/native/android/stats_query.dart';
+
+// Written by StatsBinaryEncoder, see StatsBinaryEncoderTest.java.
+const _firstPoll = '02000000'
+    '00000100' '0000796090281843' '0700'
+    '0200' '02' 'd204000000000000'
+    '0300' '04' '0400'
+    '0500' '00' '000000000000d03f'
+    '0600' '01' 'fdffffff'
+    '0700' '03' '01'
+    '0800' '05' '0200' '0900' '0a00'
+    '0b00' '06' '0100' '0c00' '01' '0a000000'
+    '0d000e00' '0000796090281843' '0100'
+    '0f00' '04' '1000';
+const _firstPollStrings = [
+  'IT01V1234', 'inbound-rtp', 'ssrc', 'kind', 'video', 'jitter',
+  'packetsLost', 'active', 'rids', 'a', 'b', 'perDscp', '0', 'CIT01_96',
+  'codec', 'mimeType', 'video/VP8',
+];
+const _secondPoll = '01000000'
+    '00000100' '0000796090281843' '0100'
+    '0400' '02' '1e00000000000000';
+const _resetPoll = '01000000'
+    '00000100' '0012f36090281843' '0100'
+    '0200' '04' '0300';
+
+Uint8List _bytes(String hex) => Uint8List.fromList(List<int>.generate(
+    hex.length ~/ 2,
+    (i) => int.parse(hex.substring(2 * i, 2 * i + 2), radix: 16)));
+
+Map<String, dynamic> _response(String hex, List<String> strings,
+        {bool reset = false}) =>
+    {
+      'format': 'binary',
+      'data': _bytes(hex),
+      'stringsReset': reset,
+      'strings': strings,
+    };
+
+void main() {
+  test('decodes every value type', () {
+    final reports =
+        StatsBinaryDecoder().decode(_response(_firstPoll, _firstPollStrings));
+    expect(reports, hasLength(2));
+    final inbound = reports[0];
+    expect(inbound.id, 'IT01V1234');
+    expect(inbound.type, 'inbound-rtp');
+    expect(inbound.timestamp, 1.7e15);
+    expect(inbound.values, {
+      'ssrc': 1234,
+      'kind': 'video',
+      'jitter': 0.25,
+      'packetsLost': -3,
+      'active': true,
+      'rids': ['a', 'b'],
+      'perDscp': {'0': 10},
+    });
+    expect(reports[1].id, 'CIT01_96');
+    expect(reports[1].type, 'codec');
+    expect(reports[1].values, {'mimeType': 'video/VP8'});
+  });
+
+  test('keeps the string table between polls', () {
+    final decoder = StatsBinaryDecoder();
+    decoder.decode(_response(_firstPoll, _firstPollStrings));
+    final reports = decoder.decode(_response(_secondPoll, ['framesDecoded']));
+    expect(reports.single.id, 'IT01V1234');
+    expect(reports.single.values, {'framesDecoded': 30});
+  });
+
+  test('starts over when the strings are reset', () {
+    final decoder = StatsBinaryDecoder();
+    decoder.decode(_response(_firstPoll, _firstPollStrings));
+    final reports = decoder.decode(_response(
+        _resetPoll, ['IT01A5678', 'inbound-rtp', 'kind', 'audio'],
+        reset: true));
+    expect(reports.single.id, 'IT01A5678');
+    expect(reports.single.timestamp, 1.7e15 + 2e6);
+    expect(reports.single.values, {'kind': 'audio'});
+  });
+
+  test('decodes through StatsQueryResult', () {
+    final result = StatsQueryResult.fromMap(
+        {
+          ..._response(_firstPoll, _firstPollStrings),
+          'delta': true,
+          'removed': ['OT01V1'],
+        },
+        StatsBinaryDecoder());
+    expect(result.delta, isTrue);
+    expect(result.removed, ['OT01V1']);
+    expect(result.reports.map((r) => r.id), ['IT01V1234', 'CIT01_96']);
+  });
+}